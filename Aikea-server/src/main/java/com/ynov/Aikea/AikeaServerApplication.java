@@ -1,16 +1,27 @@
 package com.ynov.Aikea;
 
+import com.ynov.Aikea.config.OpenAIClientConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.Map;
+
 @SpringBootApplication
+@EnableScheduling
 public class AikeaServerApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(AikeaServerApplication.class, args);
+		// Avant tout HttpClient : le JDK ne lit ces propriétés qu'une fois
+		OpenAIClientConfiguration.applyHttpClientDefaults();
+		SpringApplication application = new SpringApplication(AikeaServerApplication.class);
+		// Valeurs par défaut, surchargeables dans application.yml : métriques OpenAI sur /actuator/prometheus
+		application.setDefaultProperties(Map.of(
+				"management.endpoints.web.exposure.include", "health,info,metrics,prometheus"));
+		application.run(args);
 	}
 	@Bean
 	public WebMvcConfigurer corsConfigurer() {
@@ -0,0 +1,259 @@
+package com.ynov.Aikea.atools;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Limiteur de débit adaptatif pour un endpoint OpenAI.
+ * <ul>
+ *     <li>un seau à jetons borne le nombre de requêtes par minute</li>
+ *     <li>une fenêtre de concurrence AIMD : +1/fenêtre à chaque succès, divisée par deux sur un 429</li>
+ *     <li>les en-têtes x-ratelimit-* et retry-after suspendent l'envoi jusqu'au reset annoncé</li>
+ *     <li>les requêtes en trop attendent dans une file bornée, avec un délai d'attente maximum</li>
+ * </ul>
+ */
+public class AdaptiveRateLimiter {
+
+    private final String name;
+    private final ScheduledExecutorService scheduler;
+
+    private final double tokensPerNano;
+    private final double bucketCapacity;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueueSize;
+    private final long maxWaitMillis;
+    private final long throttleCooldownMillis;
+
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+    private double tokens;
+    private long lastRefillNanos;
+    private double limit;
+    private int inFlight;
+    private long pausedUntilNanos;
+    private boolean drainScheduled;
+
+    private final MeterRegistry meterRegistry;
+    private final Timer waitTimer;
+
+    private final class Waiter {
+        private final Runnable start;
+        private final CompletableFuture<?> result;
+        private final long enqueuedAt = System.nanoTime();
+        private ScheduledFuture<?> timeout;
+
+        private Waiter(Runnable start, CompletableFuture<?> result) {
+            this.start = start;
+            this.result = result;
+        }
+    }
+
+    public AdaptiveRateLimiter(String name, int requestsPerMinute, int burst,
+                               int initialConcurrency, int minConcurrency, int maxConcurrency,
+                               int maxQueueSize, long maxWaitMillis, long throttleCooldownMillis,
+                               ScheduledExecutorService scheduler, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.tokensPerNano = requestsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.bucketCapacity = Math.max(1, burst);
+        this.tokens = bucketCapacity;
+        this.lastRefillNanos = System.nanoTime();
+        this.minLimit = Math.max(1, minConcurrency);
+        this.maxLimit = Math.max(this.minLimit, maxConcurrency);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialConcurrency));
+        this.maxQueueSize = maxQueueSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.throttleCooldownMillis = throttleCooldownMillis;
+        this.scheduler = scheduler;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("aikea.openai.limiter.queue.depth", this, AdaptiveRateLimiter::queueDepth)
+                .tag("endpoint", name).register(meterRegistry);
+        Gauge.builder("aikea.openai.limiter.in.flight", this, AdaptiveRateLimiter::inFlight)
+                .tag("endpoint", name).register(meterRegistry);
+        Gauge.builder("aikea.openai.limiter.concurrency.limit", this, AdaptiveRateLimiter::concurrencyLimit)
+                .tag("endpoint", name).register(meterRegistry);
+        Gauge.builder("aikea.openai.limiter.tokens", this, AdaptiveRateLimiter::availableTokens)
+                .tag("endpoint", name).register(meterRegistry);
+        this.waitTimer = Timer.builder("aikea.openai.limiter.wait")
+                .tag("endpoint", name)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Exécute l'appel dès qu'un permis est disponible
+     * @param call L'appel OpenAI, lancé seulement une fois le permis obtenu
+     * @return Le résultat de l'appel, ou un échec RateLimitExceededException si la file est pleine
+     * ou si l'attente dépasse le maximum configuré
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Waiter waiter = new Waiter(() -> start(call, result), result);
+
+        synchronized (this) {
+            if (queue.size() >= maxQueueSize) {
+                countPermit("rejected");
+                return CompletableFuture.failedFuture(new RateLimitExceededException(
+                        "OpenAI " + name + " queue is full (" + maxQueueSize + " waiting requests)"));
+            }
+            queue.addLast(waiter);
+            waiter.timeout = scheduler.schedule(() -> expire(waiter), maxWaitMillis, TimeUnit.MILLISECONDS);
+        }
+        drain();
+        return result;
+    }
+
+    private <T> void start(Supplier<CompletableFuture<T>> call, CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            release(error);
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private void release(Throwable error) {
+        synchronized (this) {
+            inFlight--;
+            if (error != null && OpenAIErrorType.classify(error) == OpenAIErrorType.RATE_LIMIT) {
+                // Décroissance multiplicative et pause de l'envoi
+                limit = Math.max(minLimit, limit / 2);
+                pauseFor(TimeUnit.MILLISECONDS.toNanos(throttleCooldownMillis));
+                countPermit("throttled");
+            } else if (error == null) {
+                // Croissance additive : +1 sur une fenêtre complète de succès
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        }
+        drain();
+    }
+
+    private void expire(Waiter waiter) {
+        boolean removed;
+        synchronized (this) {
+            removed = queue.remove(waiter);
+        }
+        if (removed) {
+            countPermit("expired");
+            waiter.result.completeExceptionally(new RateLimitExceededException(
+                    "Timed out after " + maxWaitMillis + " ms waiting for an OpenAI " + name + " permit"));
+        }
+    }
+
+    private void drain() {
+        List<Waiter> ready = new ArrayList<>();
+        synchronized (this) {
+            refill();
+            long now = System.nanoTime();
+            while (!queue.isEmpty() && inFlight < (int) limit && now >= pausedUntilNanos && tokens >= 1) {
+                Waiter waiter = queue.pollFirst();
+                if (waiter.result.isDone()) {
+                    // Appelant déjà parti (annulation) : on ne consomme pas de permis
+                    waiter.timeout.cancel(false);
+                    continue;
+                }
+                tokens -= 1;
+                inFlight++;
+                waiter.timeout.cancel(false);
+                ready.add(waiter);
+            }
+            scheduleDrainIfBlocked(now);
+        }
+
+        for (Waiter waiter : ready) {
+            countPermit("granted");
+            waitTimer.record(Duration.ofNanos(System.nanoTime() - waiter.enqueuedAt));
+            waiter.start.run();
+        }
+    }
+
+    // Si la file n'est bloquée que par le temps (jetons ou pause), on programme un nouveau passage
+    private void scheduleDrainIfBlocked(long now) {
+        if (queue.isEmpty() || drainScheduled || inFlight >= (int) limit) {
+            return;
+        }
+        long delayNanos = Math.max(pausedUntilNanos - now, 0);
+        if (tokens < 1) {
+            delayNanos = Math.max(delayNanos, (long) Math.ceil((1 - tokens) / tokensPerNano));
+        }
+        drainScheduled = true;
+        scheduler.schedule(() -> {
+            synchronized (this) {
+                drainScheduled = false;
+            }
+            drain();
+        }, Math.max(delayNanos, TimeUnit.MILLISECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(bucketCapacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+
+    private void pauseFor(long nanos) {
+        pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + nanos);
+    }
+
+    /**
+     * Prend en compte les en-têtes x-ratelimit-* renvoyés par OpenAI
+     * @param remainingRequests Valeur de x-ratelimit-remaining-requests (null si absente)
+     * @param resetAfter Délai avant le reset (x-ratelimit-reset-requests ou retry-after, null si absent)
+     */
+    public void onRateLimitHeaders(Integer remainingRequests, Duration resetAfter) {
+        synchronized (this) {
+            refill();
+            if (remainingRequests != null) {
+                // Le fournisseur voit aussi les autres clients de la clé : on ne dépasse jamais son reste
+                tokens = Math.min(tokens, remainingRequests);
+                if (remainingRequests <= 0 && resetAfter != null) {
+                    pauseFor(resetAfter.toNanos());
+                }
+            } else if (resetAfter != null) {
+                pauseFor(resetAfter.toNanos());
+            }
+        }
+        drain();
+    }
+
+    private void countPermit(String outcome) {
+        meterRegistry.counter("aikea.openai.limiter.permits", "endpoint", name, "outcome", outcome).increment();
+    }
+
+    public synchronized int queueDepth() {
+        return queue.size();
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized double concurrencyLimit() {
+        return limit;
+    }
+
+    public synchronized double availableTokens() {
+        refill();
+        return tokens;
+    }
+}
@@ -0,0 +1,78 @@
+package com.ynov.Aikea.atools;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Petites aides pour manipuler les CompletableFuture sans perdre l'exception d'origine
+ */
+public final class AsyncUtils {
+
+    private AsyncUtils() {
+    }
+
+    /**
+     * Retire les enveloppes CompletionException / ExecutionException ajoutées par les futures
+     * @param throwable L'exception reçue
+     * @return L'exception d'origine
+     */
+    public static Throwable unwrap(Throwable throwable) {
+        Throwable current = throwable;
+        while ((current instanceof CompletionException || current instanceof ExecutionException)
+                && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+
+    /**
+     * Enveloppe une exception pour pouvoir la relancer depuis une lambda de future
+     * @param throwable L'exception à propager
+     * @return Une CompletionException (l'originale si c'en est déjà une)
+     */
+    public static CompletionException wrap(Throwable throwable) {
+        if (throwable instanceof CompletionException completionException) {
+            return completionException;
+        }
+        return new CompletionException(throwable);
+    }
+
+    /**
+     * Comme future.thenApplyAsync(fn, executor), mais un refus de l'exécuteur (pool saturé) fait échouer
+     * le résultat avec la RejectedExecutionException, sur le thread qui complète le future d'origine
+     * @return Le résultat de fn, calculé sur l'exécuteur
+     */
+    public static <T, R> CompletableFuture<R> applyAsync(CompletableFuture<T> future,
+                                                         Function<? super T, ? extends R> fn, Executor executor) {
+        return future.thenCompose(value -> {
+            try {
+                return CompletableFuture.<R>supplyAsync(() -> fn.apply(value), executor);
+            } catch (RejectedExecutionException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+    }
+
+    /**
+     * Attend le résultat d'un future en relançant l'exception d'origine,
+     * pour garder le contrat "throws Exception" des méthodes synchrones existantes
+     * @param future Le future à attendre
+     * @return Le résultat du future
+     * @throws Exception L'exception d'origine si le future a échoué
+     */
+    public static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw e;
+        }
+    }
+}
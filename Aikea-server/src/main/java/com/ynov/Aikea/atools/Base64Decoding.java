@@ -0,0 +1,81 @@
+package com.ynov.Aikea.atools;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+
+/**
+ * Décodage Base64 en flux : les caractères sont lus directement depuis la chaîne
+ * reçue (b64_json d'OpenAI), sans la recopier en byte[] comme Base64.Decoder.decode(String).
+ * Seul le tableau final, à la taille exacte de l'image, est alloué.
+ */
+public final class Base64Decoding {
+
+    private Base64Decoding() {
+    }
+
+    public static byte[] decode(CharSequence base64) {
+        byte[] decoded = new byte[decodedLength(base64)];
+        try (InputStream input = stream(base64)) {
+            int offset = 0;
+            while (offset < decoded.length) {
+                int read = input.read(decoded, offset, decoded.length - offset);
+                if (read < 0) {
+                    throw new EOFException("Truncated Base64 content");
+                }
+                offset += read;
+            }
+            return decoded;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Invalid Base64 content", e);
+        }
+    }
+
+    /**
+     * @return Un flux des octets décodés, lus au fur et à mesure depuis la chaîne (pour une écriture directe sur disque)
+     */
+    public static InputStream stream(CharSequence base64) {
+        return Base64.getDecoder().wrap(new CharSequenceInputStream(base64));
+    }
+
+    private static int decodedLength(CharSequence base64) {
+        int length = base64.length();
+        int padding = 0;
+        if (length > 0 && base64.charAt(length - 1) == '=') {
+            padding++;
+            if (length > 1 && base64.charAt(length - 2) == '=') {
+                padding++;
+            }
+        }
+        // Sans padding, les 2 ou 3 derniers caractères donnent 1 ou 2 octets
+        return (int) ((long) length * 3 / 4) - padding;
+    }
+
+    private static final class CharSequenceInputStream extends InputStream {
+        private final CharSequence source;
+        private int position;
+
+        private CharSequenceInputStream(CharSequence source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() {
+            return position < source.length() ? source.charAt(position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position >= source.length()) {
+                return -1;
+            }
+            int count = Math.min(length, source.length() - position);
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = (byte) source.charAt(position++);
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.ynov.Aikea.atools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
+
+/**
+ * Lance des tâches asynchrones avec au plus N tâches en cours à la fois, sans bloquer de thread :
+ * chaque tâche terminée démarre la suivante. Les résultats sont rendus dans l'ordre des entrées.
+ */
+public final class BoundedFanOut {
+
+    private BoundedFanOut() {
+    }
+
+    /**
+     * @param inputs Les entrées à traiter
+     * @param parallelism Nombre maximum de tâches en cours
+     * @param task Reçoit l'index et l'entrée, renvoie le future de son résultat
+     * @return Les résultats dans l'ordre des entrées. Au premier échec, le résultat échoue
+     * et plus aucune tâche n'est lancée (celles en cours vont à leur terme)
+     */
+    public static <I, R> CompletableFuture<List<R>> run(List<I> inputs, int parallelism,
+                                                        BiFunction<Integer, I, CompletableFuture<R>> task) {
+        if (inputs.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        Run<I, R> run = new Run<>(inputs, task);
+        for (int i = 0; i < Math.min(Math.max(1, parallelism), inputs.size()); i++) {
+            run.launchNext();
+        }
+        return run.result;
+    }
+
+    private static final class Run<I, R> {
+        private final List<I> inputs;
+        private final BiFunction<Integer, I, CompletableFuture<R>> task;
+        private final AtomicReferenceArray<R> results;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final CompletableFuture<List<R>> result = new CompletableFuture<>();
+
+        private Run(List<I> inputs, BiFunction<Integer, I, CompletableFuture<R>> task) {
+            this.inputs = inputs;
+            this.task = task;
+            this.results = new AtomicReferenceArray<>(inputs.size());
+            this.remaining = new AtomicInteger(inputs.size());
+        }
+
+        private void launchNext() {
+            if (result.isDone()) {
+                return;
+            }
+            int index = next.getAndIncrement();
+            if (index >= inputs.size()) {
+                return;
+            }
+
+            CompletableFuture<R> future;
+            try {
+                future = task.apply(index, inputs.get(index));
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(AsyncUtils.unwrap(error));
+                    return;
+                }
+                results.set(index, value);
+                if (remaining.decrementAndGet() == 0) {
+                    List<R> ordered = new ArrayList<>(results.length());
+                    for (int i = 0; i < results.length(); i++) {
+                        ordered.add(results.get(i));
+                    }
+                    result.complete(ordered);
+                } else {
+                    launchNext();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.ynov.Aikea.atools;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Disjoncteur sur une fenêtre glissante des N derniers appels.
+ * <ul>
+ *     <li>CLOSED : les appels passent, ouverture si le taux d'échec dépasse le seuil</li>
+ *     <li>OPEN : échec immédiat (CircuitOpenException) pendant la durée d'ouverture</li>
+ *     <li>HALF_OPEN : quelques appels d'essai, refermé s'ils réussissent tous, rouvert au premier échec</li>
+ * </ul>
+ * Seules les erreurs qui traduisent une panne du fournisseur comptent : une requête refusée
+ * (contenu, paramètres) ou limitée en débit, un client parti en cours de flux
+ * ou une erreur non identifiée ne disent rien de sa santé.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final MeterRegistry meterRegistry;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+
+    // Fenêtre circulaire : true = échec
+    private final boolean[] window;
+    private int windowIndex;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAtNanos;
+    private int halfOpenInFlight;
+    private int halfOpenSuccesses;
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                          long openDurationMillis, int halfOpenCalls, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, window.length));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("aikea.openai.circuit.state", this, breaker -> breaker.state().ordinal())
+                .description("0 = CLOSED, 1 = OPEN, 2 = HALF_OPEN")
+                .tag("name", name)
+                .register(meterRegistry);
+        Gauge.builder("aikea.openai.circuit.failure.rate", this, CircuitBreaker::failureRate)
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param call L'appel protégé
+     * @return Le résultat de l'appel, ou un échec CircuitOpenException immédiat si le circuit est ouvert
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> call) {
+        if (!tryAcquire()) {
+            countCall("rejected");
+            return CompletableFuture.failedFuture(new CircuitOpenException(
+                    "OpenAI " + name + " is unavailable (circuit open), please retry later"));
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((value, error) -> onComplete(error));
+    }
+
+    /**
+     * @return true si un appel passerait maintenant (sans consommer d'essai en HALF_OPEN)
+     */
+    public synchronized boolean isCallPermitted() {
+        return switch (state()) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> halfOpenInFlight < halfOpenCalls;
+        };
+    }
+
+    public synchronized State state() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openDurationNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+        return state;
+    }
+
+    public synchronized double failureRate() {
+        return windowCount == 0 ? 0 : (double) windowFailures / windowCount;
+    }
+
+    private synchronized boolean tryAcquire() {
+        switch (state()) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (halfOpenInFlight < halfOpenCalls) {
+                    halfOpenInFlight++;
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private void onComplete(Throwable error) {
+        boolean failure = error != null && countsAsFailure(error);
+        if (error != null && !failure) {
+            countCall("ignored");
+        } else {
+            countCall(failure ? "failure" : "success");
+        }
+
+        synchronized (this) {
+            if (state == State.HALF_OPEN) {
+                halfOpenInFlight = Math.max(0, halfOpenInFlight - 1);
+                if (failure) {
+                    open();
+                } else if (error == null && ++halfOpenSuccesses >= halfOpenCalls) {
+                    resetWindow();
+                    transitionTo(State.CLOSED);
+                }
+                return;
+            }
+            if (state != State.CLOSED || (error != null && !failure)) {
+                return;
+            }
+
+            record(failure);
+            if (windowCount >= minimumCalls && failureRate() >= failureRateThreshold) {
+                open();
+            }
+        }
+    }
+
+    private static boolean countsAsFailure(Throwable error) {
+        return switch (OpenAIErrorType.classify(error)) {
+            case SERVER, TIMEOUT, NETWORK, QUOTA, AUTHENTICATION -> true;
+            default -> false;
+        };
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void resetWindow() {
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+
+    private void open() {
+        openedAtNanos = System.nanoTime();
+        transitionTo(State.OPEN);
+    }
+
+    private void transitionTo(State next) {
+        if (state == next) {
+            return;
+        }
+        meterRegistry.counter("aikea.openai.circuit.transitions",
+                "name", name, "from", state.name(), "to", next.name()).increment();
+        // Ouverture : le modèle ne répond plus, les appels échouent ou passent en mode dégradé
+        if (next == State.OPEN) {
+            log.warn("OpenAI circuit {}: {} -> {}", name, state, next);
+        } else {
+            log.info("OpenAI circuit {}: {} -> {}", name, state, next);
+        }
+        state = next;
+        halfOpenInFlight = 0;
+        halfOpenSuccesses = 0;
+    }
+
+    private void countCall(String outcome) {
+        meterRegistry.counter("aikea.openai.circuit.calls", "name", name, "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,11 @@
+package com.ynov.Aikea.atools;
+
+/**
+ * Levée sans appeler OpenAI quand le disjoncteur du modèle est ouvert
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
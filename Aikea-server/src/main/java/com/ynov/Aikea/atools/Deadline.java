@@ -0,0 +1,108 @@
+package com.ynov.Aikea.atools;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Échéance absolue d'une requête HTTP, propagée jusqu'aux appels OpenAI.
+ * Elle est attachée au thread courant par DeadlineFilter puis recopiée
+ * sur les threads du generationExecutor par son TaskDecorator.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * @return L'échéance attachée au thread courant, ou null si aucune
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @param defaultTimeout Délai utilisé si aucune échéance n'est attachée au thread
+     * @return L'échéance courante ou une nouvelle échéance à partir de maintenant
+     */
+    public static Deadline currentOr(Duration defaultTimeout) {
+        Deadline deadline = CURRENT.get();
+        return deadline != null ? deadline : after(defaultTimeout);
+    }
+
+    public static void set(Deadline deadline) {
+        if (deadline == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Recopie l'échéance du thread appelant dans la tâche, pour les exécuteurs
+     * @param task La tâche à exécuter sur un autre thread
+     * @return La tâche décorée
+     */
+    public static Runnable propagate(Runnable task) {
+        Deadline captured = CURRENT.get();
+        if (captured == null) {
+            return task;
+        }
+        return () -> {
+            Deadline previous = CURRENT.get();
+            CURRENT.set(captured);
+            try {
+                task.run();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+
+    public long remainingNanos() {
+        return Math.max(0, expiresAtNanos - System.nanoTime());
+    }
+
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() == 0;
+    }
+
+    /**
+     * @return La plus proche des deux échéances : celle-ci ou maintenant + timeout
+     */
+    public Deadline atMost(Duration timeout) {
+        long candidate = System.nanoTime() + timeout.toNanos();
+        return candidate - expiresAtNanos < 0 ? new Deadline(candidate) : this;
+    }
+
+    /**
+     * Fait échouer le future avec une TimeoutException si l'échéance est dépassée
+     * @param future Le future à borner
+     * @return Le même future, complété en erreur à l'échéance
+     */
+    public <T> CompletableFuture<T> bound(CompletableFuture<T> future) {
+        if (isExpired()) {
+            future.completeExceptionally(new TimeoutException("Deadline exceeded"));
+            return future;
+        }
+        return future.orTimeout(remainingNanos(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,42 @@
+package com.ynov.Aikea.atools;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Flux d'octets envoyé par morceaux dans un ResponseBodyEmitter : une réponse binaire (archive ZIP) peut
+ * ainsi être écrite depuis n'importe quel thread, avec le délai de l'émetteur plutôt que celui des requêtes MVC.
+ * Chaque write() part tel quel dans la réponse : à placer derrière un BufferedOutputStream.
+ * close() ne termine pas l'émetteur, c'est à l'appelant de le faire (complete ou completeWithError).
+ */
+public class EmitterOutputStream extends OutputStream {
+
+    private final ResponseBodyEmitter emitter;
+
+    public EmitterOutputStream(ResponseBodyEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        try {
+            // Copie : l'émetteur peut garder le morceau en attente tant que la réponse n'est pas prête
+            emitter.send(Arrays.copyOfRange(b, off, off + len), MediaType.APPLICATION_OCTET_STREAM);
+        } catch (IllegalStateException e) {
+            // Émetteur déjà terminé (délai dépassé, client déconnecté)
+            throw new IOException("Response is no longer writable", e);
+        }
+    }
+}
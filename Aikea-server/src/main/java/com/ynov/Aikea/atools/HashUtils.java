@@ -0,0 +1,48 @@
+package com.ynov.Aikea.atools;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Empreintes SHA-256 utilisées comme clés de cache et d'index
+ */
+public final class HashUtils {
+
+    private HashUtils() {
+    }
+
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 est obligatoire sur toutes les JVM
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static String sha256Hex(byte[] content) {
+        return HexFormat.of().formatHex(newSha256().digest(content));
+    }
+
+    /**
+     * Empreinte d'une suite de valeurs. Chaque valeur est préfixée par sa longueur
+     * pour que ("ab", "c") et ("a", "bc") ne donnent pas la même clé.
+     * @param parts Les valeurs à combiner (null est accepté)
+     * @return L'empreinte hexadécimale
+     */
+    public static String sha256Hex(String... parts) {
+        MessageDigest digest = newSha256();
+        for (String part : parts) {
+            if (part == null) {
+                digest.update("-1:".getBytes(StandardCharsets.UTF_8));
+                continue;
+            }
+            byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+            digest.update((bytes.length + ":").getBytes(StandardCharsets.UTF_8));
+            digest.update(bytes);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
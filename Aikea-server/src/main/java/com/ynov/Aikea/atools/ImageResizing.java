@@ -0,0 +1,72 @@
+package com.ynov.Aikea.atools;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Réduction et ré-encodage JPEG des images (préparation vision, miniatures)
+ */
+public final class ImageResizing {
+
+    private ImageResizing() {
+    }
+
+    /**
+     * Redimensionne le plus grand côté à maxDimension (jamais d'agrandissement)
+     * et aplatit la transparence sur fond blanc (JPEG sans alpha)
+     */
+    public static BufferedImage downscale(BufferedImage source, int maxDimension) {
+        return downscale(source, maxDimension, maxDimension);
+    }
+
+    /**
+     * Redimensionne pour que le plus petit côté ne dépasse pas maxShortSide et le plus grand maxLongSide
+     * (jamais d'agrandissement), et aplatit la transparence sur fond blanc (JPEG sans alpha)
+     */
+    public static BufferedImage downscale(BufferedImage source, int maxShortSide, int maxLongSide) {
+        int shortSide = Math.min(source.getWidth(), source.getHeight());
+        int longSide = Math.max(source.getWidth(), source.getHeight());
+        double scale = Math.min(1.0, Math.min((double) maxShortSide / shortSide, (double) maxLongSide / longSide));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * @param quality Qualité JPEG entre 0 et 1
+     */
+    public static void writeJpeg(BufferedImage image, OutputStream output, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream imageOutput = new MemoryCacheImageOutputStream(output)) {
+            writer.setOutput(imageOutput);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.ynov.Aikea.atools;
+
+// Variantes servies pour une image : miniature et aperçu ré-encodés en JPEG, FULL = fichier d'origine
+public enum ImageVariantEnum {
+
+    THUMBNAIL,
+    PREVIEW,
+    FULL;
+
+    /**
+     * @param name Le nom dans l'URL, sans tenir compte de la casse
+     * @return La variante, ou null si le nom est inconnu
+     */
+    public static ImageVariantEnum fromName(String name) {
+        for (ImageVariantEnum variant : values()) {
+            if (variant.name().equalsIgnoreCase(name)) {
+                return variant;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,20 @@
+package com.ynov.Aikea.atools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Fichier écrit en flux sur le disque, avec sa taille et son empreinte SHA-256 calculées pendant l'écriture.
+ * Le contenu n'est chargé en mémoire que si un appelant en a réellement besoin ({@link #readAllBytes()}).
+ */
+public record IngestedFile(Path path, long size, String sha256) {
+
+    public byte[] readAllBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    public IngestedFile withPath(Path newPath) {
+        return new IngestedFile(newPath, size, sha256);
+    }
+}
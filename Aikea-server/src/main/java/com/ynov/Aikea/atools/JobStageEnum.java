@@ -0,0 +1,10 @@
+package com.ynov.Aikea.atools;
+
+// Étapes d'un job de génération PDF, dans l'ordre d'exécution
+public enum JobStageEnum {
+
+    IMAGE,
+    TEXT,
+    PDF,
+    DONE
+}
@@ -0,0 +1,13 @@
+package com.ynov.Aikea.atools;
+
+public enum JobStatusEnum {
+
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == SUCCEEDED || this == FAILED;
+    }
+}
@@ -0,0 +1,45 @@
+package com.ynov.Aikea.atools;
+
+import java.util.Arrays;
+
+/**
+ * Fenêtre glissante des dernières latences observées, pour estimer un percentile
+ * récent (les histogrammes Micrometer cumulent depuis le démarrage)
+ */
+public class LatencyWindow {
+
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    public LatencyWindow(int size) {
+        this.samples = new long[Math.max(1, size)];
+    }
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    /**
+     * @param percentile Entre 0 et 1 (ex: 0.95)
+     * @return Le percentile en nanosecondes, ou -1 si la fenêtre est vide
+     */
+    public long percentile(double percentile) {
+        long[] copy;
+        synchronized (this) {
+            if (count == 0) {
+                return -1;
+            }
+            copy = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(percentile * copy.length) - 1;
+        return copy[Math.min(copy.length - 1, Math.max(0, index))];
+    }
+}
@@ -0,0 +1,88 @@
+package com.ynov.Aikea.atools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Corps de réponse HTTP lu en mémoire avec une taille maximale : au-delà (annoncée par Content-Length
+ * ou réellement reçue), la lecture est annulée et la réponse échoue au lieu de remplir le heap.
+ */
+public final class LimitedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+
+    private final long maxBytes;
+    private final long declaredLength;
+    private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private Flow.Subscription subscription;
+
+    /**
+     * @param declaredLength Valeur de Content-Length, -1 si absente
+     */
+    public LimitedBodySubscriber(long maxBytes, long declaredLength) {
+        this.maxBytes = maxBytes;
+        this.declaredLength = declaredLength;
+    }
+
+    /**
+     * Équivalent borné de BodyHandlers.ofByteArray()
+     */
+    public static HttpResponse.BodyHandler<byte[]> ofByteArray(long maxBytes) {
+        return responseInfo -> new LimitedBodySubscriber(maxBytes,
+                responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1));
+    }
+
+    @Override
+    public CompletionStage<byte[]> getBody() {
+        return body;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (declaredLength > maxBytes) {
+            // Refusé avant de lire le moindre octet
+            tooLarge(declaredLength);
+            return;
+        }
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        if (body.isDone()) {
+            return;
+        }
+        for (ByteBuffer item : items) {
+            long received = (long) buffer.size() + item.remaining();
+            if (received > maxBytes) {
+                tooLarge(received);
+                return;
+            }
+            byte[] chunk = new byte[item.remaining()];
+            item.get(chunk);
+            buffer.writeBytes(chunk);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        body.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        body.complete(buffer.toByteArray());
+    }
+
+    private void tooLarge(long bytes) {
+        subscription.cancel();
+        body.completeExceptionally(new IOException(
+                "Response body too large: " + bytes + " bytes (max " + maxBytes + ")"));
+    }
+}
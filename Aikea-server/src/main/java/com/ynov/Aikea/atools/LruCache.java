@@ -0,0 +1,85 @@
+package com.ynov.Aikea.atools;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Cache LRU en mémoire, borné par un poids total (nombre d'entrées par défaut).
+ * Les accès sont synchronisés : les sections critiques sont très courtes.
+ */
+public class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private long currentWeight;
+
+    /**
+     * @param maxEntries Nombre maximum d'entrées conservées
+     */
+    public LruCache(int maxEntries) {
+        this(maxEntries, value -> 1L);
+    }
+
+    /**
+     * @param maxWeight Poids total maximum (par exemple une taille en octets)
+     * @param weigher Calcule le poids d'une valeur
+     */
+    public LruCache(long maxWeight, ToLongFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Ajoute une valeur puis évince les entrées les moins récemment utilisées
+     * jusqu'à repasser sous le poids maximum. Une valeur plus lourde que le cache entier n'est pas conservée :
+     * l'ancienne valeur de la clé est retirée, sans quoi get renverrait une valeur périmée.
+     */
+    public synchronized void put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        if (weight > maxWeight) {
+            remove(key);
+            return;
+        }
+
+        V previous = entries.put(key, value);
+        if (previous != null) {
+            currentWeight -= weigher.applyAsLong(previous);
+        }
+        currentWeight += weight;
+
+        Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator();
+        while (currentWeight > maxWeight && iterator.hasNext()) {
+            Map.Entry<K, V> eldest = iterator.next();
+            currentWeight -= weigher.applyAsLong(eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    public synchronized V remove(K key) {
+        V removed = entries.remove(key);
+        if (removed != null) {
+            currentWeight -= weigher.applyAsLong(removed);
+        }
+        return removed;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return currentWeight;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentWeight = 0;
+    }
+}
@@ -0,0 +1,89 @@
+package com.ynov.Aikea.atools;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Catégories d'erreurs OpenAI. Les réponses d'erreur arrivent en OpenAIHttpException (voir OpenAIHttpClient) :
+ * la classification se fait sur leur code de statut et leurs champs error.type / error.code,
+ * et pour les autres causes sur leur type, jamais sur le texte des messages.
+ */
+public enum OpenAIErrorType {
+
+    RATE_LIMIT,
+    QUOTA,
+    AUTHENTICATION,
+    CONTENT_POLICY,
+    TIMEOUT,
+    NETWORK,
+    SERVER,
+    BAD_REQUEST,
+    CIRCUIT_OPEN,
+    // Le destinataire d'un flux est parti (client SSE déconnecté) : rien à reprocher au fournisseur
+    ABORTED,
+    UNKNOWN;
+
+    /**
+     * Classe une erreur en parcourant toute la chaîne des causes
+     * @param error L'erreur reçue (éventuellement enveloppée dans une CompletionException)
+     * @return La catégorie correspondante
+     */
+    public static OpenAIErrorType classify(Throwable error) {
+        for (Throwable current = error; current != null; current = current.getCause()) {
+            if (current instanceof OpenAIHttpException httpError) {
+                return fromResponse(httpError);
+            }
+            if (current instanceof RateLimitExceededException) {
+                return RATE_LIMIT;
+            }
+            if (current instanceof CircuitOpenException) {
+                return CIRCUIT_OPEN;
+            }
+            if (current instanceof StreamAbortedException) {
+                return ABORTED;
+            }
+            if (current instanceof TimeoutException || current instanceof HttpTimeoutException) {
+                return TIMEOUT;
+            }
+            if (current instanceof ConnectException || current instanceof UnknownHostException) {
+                return NETWORK;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private static OpenAIErrorType fromResponse(OpenAIHttpException error) {
+        // insufficient_quota arrive en 429 : à tester avant la limite de débit
+        if (isAnyOf(error, "insufficient_quota", "billing_hard_limit_reached")) {
+            return QUOTA;
+        }
+        if (isAnyOf(error, "content_policy_violation")) {
+            return CONTENT_POLICY;
+        }
+        int status = error.getStatusCode();
+        if (status == 429) {
+            return RATE_LIMIT;
+        }
+        if (status == 401 || status == 403) {
+            return AUTHENTICATION;
+        }
+        if (status == 408) {
+            return TIMEOUT;
+        }
+        if (status >= 500) {
+            return SERVER;
+        }
+        return status >= 400 ? BAD_REQUEST : UNKNOWN;
+    }
+
+    private static boolean isAnyOf(OpenAIHttpException error, String... values) {
+        for (String value : values) {
+            if (value.equals(error.getErrorCode()) || value.equals(error.getErrorType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,39 @@
+package com.ynov.Aikea.atools;
+
+import java.io.IOException;
+
+/**
+ * Réponse d'erreur HTTP d'OpenAI, avec son code de statut et les champs structurés du corps
+ * ({"error": {"type", "code", "message"}}). Levée par OpenAIHttpClient à la place de la réponse,
+ * pour que la classification des erreurs ne dépende pas des messages de simple-openai.
+ */
+public class OpenAIHttpException extends IOException {
+
+    private final int statusCode;
+    private final String errorType;
+    private final String errorCode;
+
+    /**
+     * @param errorType Le champ error.type du corps, null s'il est absent
+     * @param errorCode Le champ error.code du corps, null s'il est absent
+     */
+    public OpenAIHttpException(int statusCode, String errorType, String errorCode, String message) {
+        super("OpenAI HTTP " + statusCode + (errorCode != null ? " (" + errorCode + ")" : "")
+                + (message != null ? ": " + message : ""));
+        this.statusCode = statusCode;
+        this.errorType = errorType;
+        this.errorCode = errorCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getErrorType() {
+        return errorType;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+}
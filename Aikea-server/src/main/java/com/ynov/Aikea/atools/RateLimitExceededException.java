@@ -0,0 +1,12 @@
+package com.ynov.Aikea.atools;
+
+/**
+ * Levée quand une requête ne peut pas obtenir de permis OpenAI :
+ * file d'attente pleine ou délai d'attente dépassé
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+    public RateLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,65 @@
+package com.ynov.Aikea.atools;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Regroupe les appels concurrents identiques : tant qu'un appel est en cours pour une clé,
+ * les appels suivants reçoivent le même résultat au lieu d'en lancer un nouveau.
+ * Rien n'est gardé après la fin de l'appel (ce n'est pas un cache).
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Runnable onCoalesced;
+
+    public SingleFlight() {
+        this(() -> { });
+    }
+
+    /**
+     * @param onCoalesced Appelé à chaque fois qu'un appel rejoint un appel déjà en cours
+     */
+    public SingleFlight(Runnable onCoalesced) {
+        this.onCoalesced = onCoalesced;
+    }
+
+    /**
+     * Lance l'appel, ou rejoint celui déjà en cours pour la même clé.
+     * Chaque appelant reçoit sa propre copie du future : annuler la sienne
+     * n'annule ni l'appel partagé ni les autres appelants.
+     * @param key La clé de la requête normalisée
+     * @param call L'appel à exécuter si aucun n'est en cours
+     * @return Le résultat partagé (succès ou échec)
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, promise);
+        if (existing != null) {
+            onCoalesced.run();
+            return existing.copy();
+        }
+
+        try {
+            call.get().whenComplete((value, error) -> {
+                // Retirer avant de compléter : un appel arrivant après la fin relance une vraie requête
+                inFlight.remove(key, promise);
+                if (error != null) {
+                    promise.completeExceptionally(error);
+                } else {
+                    promise.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, promise);
+            promise.completeExceptionally(e);
+        }
+        return promise.copy();
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,12 @@
+package com.ynov.Aikea.atools;
+
+/**
+ * Lecture d'un flux OpenAI interrompue parce que son destinataire n'en veut plus (client SSE déconnecté).
+ * Ce n'est pas une erreur du fournisseur : ni le disjoncteur ni les métriques d'erreur ne la comptent.
+ */
+public class StreamAbortedException extends RuntimeException {
+
+    public StreamAbortedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,92 @@
+package com.ynov.Aikea.atools;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * Copie un flux (réponse HTTP, b64_json décodé à la volée) vers un fichier par blocs de taille fixe,
+ * en calculant taille et SHA-256 au passage : la mémoire utilisée ne dépend pas de la taille de l'image.
+ */
+public final class StreamingIngest {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private StreamingIngest() {
+    }
+
+    // Producteur de contenu qui écrit lui-même dans un flux (rendu PDF par exemple)
+    @FunctionalInterface
+    public interface ContentWriter {
+        void writeTo(OutputStream output) throws IOException;
+    }
+
+    /**
+     * @param input Le flux source, fermé à la fin
+     * @param directory Le répertoire du fichier temporaire (le même système de fichiers que la destination finale,
+     *                  pour que le déplacement soit un simple renommage)
+     * @param maxBytes Taille maximale acceptée
+     * @return Le fichier temporaire écrit, à déplacer par l'appelant
+     */
+    public static IngestedFile toTempFile(InputStream input, Path directory, long maxBytes) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "ingest-", ".tmp");
+        MessageDigest digest = HashUtils.newSha256();
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long size = 0;
+
+        try (ReadableByteChannel source = Channels.newChannel(input);
+             FileChannel target = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                size += read;
+                if (size > maxBytes) {
+                    throw new IOException("Content exceeds the maximum size of " + maxBytes + " bytes");
+                }
+                buffer.flip();
+                digest.update(buffer.array(), 0, buffer.limit());
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new IngestedFile(temp, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * Variante pour un contenu produit par écriture : le producteur écrit directement dans le fichier temporaire,
+     * l'empreinte est calculée au passage
+     * @param directory Le répertoire du fichier temporaire
+     * @param writer Le producteur (il peut fermer le flux)
+     * @return Le fichier temporaire écrit, à déplacer par l'appelant
+     */
+    public static IngestedFile writeTempFile(Path directory, ContentWriter writer) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "ingest-", ".tmp");
+        MessageDigest digest = HashUtils.newSha256();
+
+        try (OutputStream output = new DigestOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE), digest)) {
+            writer.writeTo(output);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new IngestedFile(temp, Files.size(temp), HexFormat.of().formatHex(digest.digest()));
+    }
+}
@@ -0,0 +1,46 @@
+package com.ynov.Aikea.atools;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Écrit les mêmes octets dans deux flux (réponse HTTP et fichier de stockage par exemple), sans copie intermédiaire.
+ * close() ferme les deux flux.
+ */
+public class TeeOutputStream extends OutputStream {
+
+    private final OutputStream primary;
+    private final OutputStream secondary;
+
+    public TeeOutputStream(OutputStream primary, OutputStream secondary) {
+        this.primary = primary;
+        this.secondary = secondary;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        primary.write(b);
+        secondary.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        primary.write(b, off, len);
+        secondary.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        primary.flush();
+        secondary.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            primary.close();
+        } finally {
+            secondary.close();
+        }
+    }
+}
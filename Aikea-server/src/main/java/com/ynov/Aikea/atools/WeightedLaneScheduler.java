@@ -0,0 +1,225 @@
+package com.ynov.Aikea.atools;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Ordonnanceur à files séparées (une par valeur d'enum) avec partage pondéré des créneaux.
+ * <ul>
+ *     <li>une concurrence totale bornée, distribuée entre les files non vides</li>
+ *     <li>un plafond de concurrence par file, pour qu'une file chargée laisse toujours de la place aux autres</li>
+ *     <li>files équitables pondérées (stride scheduling) : avec des poids 6/3/1 et trois files pleines,
+ *     sur 10 créneaux libérés la première en obtient 6, la deuxième 3 et la dernière 1</li>
+ * </ul>
+ * Une file qui se réveille repart du temps virtuel courant : l'inactivité ne donne pas de crédit.
+ */
+public class WeightedLaneScheduler<L extends Enum<L>> {
+
+    private final String name;
+    private final int maxConcurrency;
+    private final int maxQueueSize;
+    private final Map<L, Lane> lanes;
+    private final MeterRegistry meterRegistry;
+
+    private int inFlight;
+    private double virtualTime;
+
+    private final class Lane {
+        private final L key;
+        private final double stride;
+        private final int maxConcurrency;
+        private final Deque<Waiter> queue = new ArrayDeque<>();
+        private final Timer queueTimer;
+        private double pass;
+        private int inFlight;
+
+        private Lane(L key, int weight, int maxConcurrency) {
+            this.key = key;
+            this.stride = 1.0 / Math.max(1, weight);
+            this.maxConcurrency = Math.max(1, maxConcurrency);
+            this.queueTimer = Timer.builder("aikea.scheduler.queue.time")
+                    .tag("scheduler", name)
+                    .tag("lane", key.name())
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry);
+        }
+
+        private boolean isReady() {
+            return !queue.isEmpty() && inFlight < maxConcurrency;
+        }
+    }
+
+    private final class Waiter {
+        private final Lane lane;
+        private final Runnable start;
+        private final CompletableFuture<?> result;
+        private final Deadline deadline = Deadline.current();
+        private final long enqueuedAt = System.nanoTime();
+
+        private Waiter(Lane lane, Runnable start, CompletableFuture<?> result) {
+            this.lane = lane;
+            this.start = start;
+            this.result = result;
+        }
+    }
+
+    /**
+     * @param weights Poids de chaque file (part des créneaux quand toutes les files attendent)
+     * @param laneConcurrency Plafond de concurrence de chaque file
+     * @param maxConcurrency Concurrence totale, toutes files confondues
+     * @param maxQueueSize Attente maximale par file au-delà de laquelle les demandes sont refusées
+     */
+    public WeightedLaneScheduler(String name, Class<L> laneType, Map<L, Integer> weights,
+                                 Map<L, Integer> laneConcurrency, int maxConcurrency, int maxQueueSize,
+                                 MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.maxQueueSize = maxQueueSize;
+        this.meterRegistry = meterRegistry;
+        this.lanes = new EnumMap<>(laneType);
+
+        for (L key : laneType.getEnumConstants()) {
+            Lane lane = new Lane(key, weights.getOrDefault(key, 1),
+                    laneConcurrency.getOrDefault(key, this.maxConcurrency));
+            lanes.put(key, lane);
+            Gauge.builder("aikea.scheduler.queue.depth", this, scheduler -> scheduler.queueDepth(key))
+                    .tag("scheduler", name).tag("lane", key.name()).register(meterRegistry);
+            Gauge.builder("aikea.scheduler.in.flight", this, scheduler -> scheduler.inFlight(key))
+                    .tag("scheduler", name).tag("lane", key.name()).register(meterRegistry);
+        }
+    }
+
+    /**
+     * Exécute la tâche dès que sa file obtient un créneau
+     * @param laneKey La file de la demande
+     * @param task La tâche, lancée seulement une fois le créneau obtenu
+     * @return Le résultat de la tâche, un échec RateLimitExceededException si la file est pleine,
+     * ou TimeoutException si la Deadline de la requête a expiré pendant l'attente
+     */
+    public <T> CompletableFuture<T> submit(L laneKey, Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        synchronized (this) {
+            Lane lane = lanes.get(laneKey);
+            if (lane.queue.size() >= maxQueueSize) {
+                countDispatch(lane, "rejected");
+                return CompletableFuture.failedFuture(new RateLimitExceededException(
+                        name + " " + laneKey + " queue is full (" + maxQueueSize + " waiting requests)"));
+            }
+            if (lane.queue.isEmpty() && lane.inFlight == 0) {
+                lane.pass = Math.max(lane.pass, virtualTime);
+            }
+            // La tâche démarre sur le thread qui libère un créneau : la Deadline de l'appelant la suit
+            lane.queue.addLast(new Waiter(lane, Deadline.propagate(() -> start(lane, task, result)), result));
+        }
+        drain();
+        return result;
+    }
+
+    private <T> void start(Lane lane, Supplier<CompletableFuture<T>> task, CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = task.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            release(lane);
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private void release(Lane lane) {
+        synchronized (this) {
+            inFlight--;
+            lane.inFlight--;
+        }
+        drain();
+    }
+
+    private void drain() {
+        List<Waiter> ready = new ArrayList<>();
+        List<Waiter> expired = new ArrayList<>();
+        synchronized (this) {
+            while (inFlight < maxConcurrency) {
+                Lane next = nextLane();
+                if (next == null) {
+                    break;
+                }
+                Waiter waiter = next.queue.pollFirst();
+                if (waiter.result.isDone()) {
+                    // Appelant déjà parti (annulation) : pas de créneau consommé
+                    continue;
+                }
+                if (waiter.deadline != null && waiter.deadline.isExpired()) {
+                    expired.add(waiter);
+                    continue;
+                }
+                virtualTime = next.pass;
+                next.pass += next.stride;
+                next.inFlight++;
+                inFlight++;
+                ready.add(waiter);
+            }
+        }
+
+        for (Waiter waiter : expired) {
+            countDispatch(waiter.lane, "expired");
+            waiter.result.completeExceptionally(new TimeoutException(
+                    "Request deadline exceeded while queued in " + name + " " + waiter.lane.key + " lane"));
+        }
+        for (Waiter waiter : ready) {
+            countDispatch(waiter.lane, "dispatched");
+            waiter.lane.queueTimer.record(Duration.ofNanos(System.nanoTime() - waiter.enqueuedAt));
+            waiter.start.run();
+        }
+    }
+
+    // File prête au plus petit temps virtuel ; à égalité, l'ordre de l'enum (la plus prioritaire d'abord)
+    private Lane nextLane() {
+        Lane best = null;
+        for (Lane lane : lanes.values()) {
+            if (lane.isReady() && (best == null || lane.pass < best.pass)) {
+                best = lane;
+            }
+        }
+        return best;
+    }
+
+    private void countDispatch(Lane lane, String outcome) {
+        meterRegistry.counter("aikea.scheduler.dispatches",
+                "scheduler", name, "lane", lane.key.name(), "outcome", outcome).increment();
+    }
+
+    public synchronized int queueDepth(L laneKey) {
+        return lanes.get(laneKey).queue.size();
+    }
+
+    public synchronized int queueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes.values()) {
+            depth += lane.queue.size();
+        }
+        return depth;
+    }
+
+    public synchronized int inFlight(L laneKey) {
+        return lanes.get(laneKey).inFlight;
+    }
+}
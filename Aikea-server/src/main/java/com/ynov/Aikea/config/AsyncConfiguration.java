@@ -0,0 +1,86 @@
+package com.ynov.Aikea.config;
+
+import com.ynov.Aikea.atools.Deadline;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class AsyncConfiguration implements WebMvcConfigurer {
+
+    // Les générations DALL·E HD peuvent dépasser les 30 s par défaut de Tomcat
+    @Value("${app.async.request-timeout-ms:180000}")
+    private long requestTimeoutMs;
+
+    // Taille fixe : un ThreadPoolTaskExecutor ne dépasse sa taille de base qu'une fois sa file pleine,
+    // un maximum plus grand ne servirait jamais. Dimensionné pour les étapes bloquantes qui y tournent
+    // (lecture des téléchargements, disque, base, rendu PDF, réponses en flux de Spring MVC)
+    @Value("${app.generation.executor.threads:32}")
+    private int threads;
+
+    @Value("${app.generation.executor.queue-capacity:500}")
+    private int queueCapacity;
+
+    // Un thread par flux OpenAI en cours : jamais plus que de permis du limiteur chat, qui les tient jusqu'à la fin du flux
+    @Value("${app.openai.stream.executor.threads:${app.openai.limiter.chat.max-concurrency:64}}")
+    private int streamThreads;
+
+    @Value("${app.jobs.worker.threads:4}")
+    private int jobWorkerThreads;
+
+    // Pool dédié aux étapes bloquantes (téléchargement, disque, base, rendu PDF)
+    // exécutées après les appels OpenAI, pour ne pas occuper les threads Tomcat
+    @Bean(name = "generationExecutor")
+    public ThreadPoolTaskExecutor generationExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        // Les threads inactifs sont rendus, le pool ne reste pas à pleine taille hors des pics
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("generation-");
+        // L'échéance de la requête suit les étapes exécutées sur ce pool
+        executor.setTaskDecorator(Deadline::propagate);
+        executor.initialize();
+        return executor;
+    }
+
+    // Lecture bloquante des flux SSE d'OpenAI, à part du generationExecutor : un flux occupe son thread
+    // pendant toute la génération et ne doit pas retarder les étapes disque, base et PDF.
+    // Sans file : un flux de trop échoue aussitôt au lieu d'attendre derrière les autres
+    @Bean(name = "openAIStreamExecutor")
+    public ThreadPoolTaskExecutor openAIStreamExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(streamThreads);
+        executor.setMaxPoolSize(streamThreads);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("openai-stream-");
+        executor.setTaskDecorator(Deadline::propagate);
+        executor.initialize();
+        return executor;
+    }
+
+    // Workers des jobs PDF : un thread par job en cours, le nombre de jobs réclamés ne dépasse jamais la taille du pool
+    @Bean(name = "jobExecutor")
+    public ThreadPoolTaskExecutor jobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(jobWorkerThreads);
+        executor.setMaxPoolSize(jobWorkerThreads);
+        executor.setQueueCapacity(jobWorkerThreads);
+        executor.setThreadNamePrefix("job-worker-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    // Les contrôleurs renvoient des CompletableFuture : on règle le timeout et l'exécuteur MVC async
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(requestTimeoutMs);
+        configurer.setTaskExecutor(generationExecutor());
+    }
+}
@@ -0,0 +1,60 @@
+package com.ynov.Aikea.config;
+
+import com.ynov.Aikea.atools.Deadline;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Fixe l'échéance de la requête avant tout traitement.
+ * Le client peut la raccourcir avec l'en-tête X-Request-Timeout-Ms,
+ * jamais la rallonger au-delà du maximum configuré.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+
+    @Value("${app.openai.deadline.default-ms:120000}")
+    private long defaultTimeoutMs;
+
+    @Value("${app.openai.deadline.max-ms:170000}")
+    private long maxTimeoutMs;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Deadline.set(Deadline.after(Duration.ofMillis(resolveTimeoutMs(request))));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Deadline.clear();
+        }
+    }
+
+    private long resolveTimeoutMs(HttpServletRequest request) {
+        String header = request.getHeader(TIMEOUT_HEADER);
+        if (StringUtils.hasText(header)) {
+            try {
+                long requested = Long.parseLong(header.trim());
+                if (requested > 0) {
+                    return Math.min(requested, maxTimeoutMs);
+                }
+            } catch (NumberFormatException ignored) {
+                // En-tête invalide : délai par défaut
+            }
+        }
+        return Math.min(defaultTimeoutMs, maxTimeoutMs);
+    }
+}
@@ -0,0 +1,65 @@
+package com.ynov.Aikea.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client HTTP partagé pour les téléchargements d'images (URL DALL·E, imports),
+ * distinct du transport OpenAI : ses connexions (HTTP/2 et keep-alive) sont réutilisées d'un téléchargement
+ * à l'autre au lieu d'un RestTemplate et d'une poignée de main TLS par image.
+ */
+@Configuration
+public class DownloadHttpClientConfiguration {
+
+    @Value("${app.download.http.version:HTTP_2}")
+    private HttpClient.Version httpVersion;
+
+    @Value("${app.download.http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${app.download.http.executor.threads:4}")
+    private int executorThreads;
+
+    @Value("${app.download.http.executor.queue-capacity:500}")
+    private int executorQueueCapacity;
+
+    // File bornée, comme pour le transport OpenAI : une file pleine freine le thread appelant
+    @Bean(name = "downloadHttpExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor downloadHttpExecutor(MeterRegistry meterRegistry) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(executorThreads, executorThreads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(executorQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "download-http-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        new ExecutorServiceMetrics(executor, "download-http", Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    // Taille du pool et keep-alive : propriétés JVM communes à tous les HttpClient (OpenAIClientConfiguration.applyHttpClientDefaults)
+    @Bean(name = "downloadHttpClient")
+    public HttpClient downloadHttpClient(@Qualifier("downloadHttpExecutor") ThreadPoolExecutor executor) {
+        return HttpClient.newBuilder()
+                .version(httpVersion)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+    }
+}
@@ -0,0 +1,173 @@
+package com.ynov.Aikea.config;
+
+import com.ynov.Aikea.atools.AsyncUtils;
+import com.ynov.Aikea.atools.OpenAIHttpException;
+import com.ynov.Aikea.service.FakeOpenAIServer;
+import com.ynov.Aikea.service.OpenAIRateLimiters;
+import io.github.sashirestela.openai.SimpleOpenAI;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client OpenAI partagé et son transport HTTP : HTTP/2 (une connexion TLS multiplexée),
+ * keep-alive, timeouts et exécuteur borné dédié aux complétions des futures.
+ * Avec app.openai.provider=fake, il pointe vers FakeOpenAIServer sur localhost
+ * au lieu de l'API réelle (tests de charge sans crédits).
+ */
+@Configuration
+@Slf4j
+public class OpenAIClientConfiguration {
+
+    private static final String OPENAI_BASE_URL = "https://api.openai.com";
+
+    @Value("${app.openai.provider:openai}")
+    private String provider;
+
+    @Value("${app.openai.http.version:HTTP_2}")
+    private HttpClient.Version httpVersion;
+
+    @Value("${app.openai.http.connect-timeout-ms:5000}")
+    private long connectTimeoutMs;
+
+    // Délai de réception de la réponse, pour les requêtes que simple-openai envoie sans timeout
+    @Value("${app.openai.http.request-timeout-ms:120000}")
+    private long requestTimeoutMs;
+
+    // Connexions HTTP/1.1 gardées ouvertes (en HTTP/2 une seule connexion suffit par hôte) et leur durée de vie.
+    // Propriétés JVM lues une seule fois, au chargement du pool du premier HttpClient : voir applyHttpClientDefaults
+    static final String POOL_SIZE_PROPERTY = "jdk.httpclient.connectionPoolSize";
+    static final String KEEP_ALIVE_PROPERTY = "jdk.httpclient.keepalive.timeout";
+    private static final String DEFAULT_POOL_SIZE = "20";
+    private static final String DEFAULT_KEEP_ALIVE_SECONDS = "300";
+
+    @Value("${app.openai.http.executor.threads:8}")
+    private int executorThreads;
+
+    @Value("${app.openai.http.executor.queue-capacity:1000}")
+    private int executorQueueCapacity;
+
+    @Value("${app.openai.http.prewarm.enabled:true}")
+    private boolean prewarmEnabled;
+
+    private String baseUrl = OPENAI_BASE_URL;
+
+    /**
+     * Fixe la taille du pool et le keep-alive du HttpClient JDK, sauf s'ils sont déjà passés en -D.
+     * Appelé par main() avant le démarrage de Spring : aucun HttpClient (le nôtre ou celui d'une bibliothèque)
+     * ne peut avoir été créé avant, sinon la JVM garderait ses valeurs par défaut.
+     */
+    public static void applyHttpClientDefaults() {
+        setDefaultSystemProperty(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE);
+        setDefaultSystemProperty(KEEP_ALIVE_PROPERTY, DEFAULT_KEEP_ALIVE_SECONDS);
+    }
+
+    // Les callbacks des futures simple-openai s'exécutent ici et non sur le pool commun.
+    // Le HttpClient ne confie à l'exécuteur que du travail dépendant (corps des réponses, complétion des futures),
+    // jamais la boucle du sélecteur : une file pleine fait exécuter la tâche par le thread appelant,
+    // ce qui freine le producteur sans perdre de réponse
+    @Bean(name = "openAIHttpExecutor", destroyMethod = "shutdown")
+    public ThreadPoolExecutor openAIHttpExecutor(MeterRegistry meterRegistry) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(executorThreads, executorThreads,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(executorQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "openai-http-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        new ExecutorServiceMetrics(executor, "openai-http", Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    @Bean
+    public OpenAIHttpClient openAIHttpClient(@Qualifier("openAIHttpExecutor") ThreadPoolExecutor executor,
+                                             OpenAIRateLimiters rateLimiters,
+                                             MeterRegistry meterRegistry) {
+        // Trop tard pour les fixer ici : on vérifie seulement que main() (ou la ligne de commande) l'a fait
+        if (System.getProperty(POOL_SIZE_PROPERTY) == null || System.getProperty(KEEP_ALIVE_PROPERTY) == null) {
+            log.warn("{} and {} are not set: the JDK HttpClient keeps its default pool settings. "
+                    + "Start through AikeaServerApplication.main or pass them as -D flags", POOL_SIZE_PROPERTY, KEEP_ALIVE_PROPERTY);
+        } else {
+            log.info("OpenAI HTTP transport: pool size {}, keep-alive {} s",
+                    System.getProperty(POOL_SIZE_PROPERTY), System.getProperty(KEEP_ALIVE_PROPERTY));
+        }
+
+        HttpClient transport = HttpClient.newBuilder()
+                .version(httpVersion)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+        return new OpenAIHttpClient(transport, rateLimiters, meterRegistry, Duration.ofMillis(requestTimeoutMs));
+    }
+
+    @Bean
+    public SimpleOpenAI simpleOpenAI(@Value("${spring.ai.openai.api-key:}") String openAiApiKey,
+                                     OpenAIHttpClient openAIHttpClient,
+                                     ObjectProvider<FakeOpenAIServer> fakeServer) {
+        SimpleOpenAI.SimpleOpenAIBuilder builder = SimpleOpenAI.builder()
+                .httpClient(openAIHttpClient);
+
+        if ("fake".equalsIgnoreCase(provider)) {
+            FakeOpenAIServer server = fakeServer.getObject();
+            baseUrl = server.baseUrl();
+            log.info("Using fake OpenAI provider at {}", baseUrl);
+            return builder.apiKey("fake-key").baseUrl(baseUrl).build();
+        }
+        return builder.apiKey(openAiApiKey).build();
+    }
+
+    /**
+     * Ouvre la connexion (DNS, TCP, TLS, négociation HTTP/2) avant la première génération.
+     * Requête sans clé : la réponse 401 (reçue en OpenAIHttpException) suffit, la connexion reste dans le pool.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void prewarm(ApplicationReadyEvent event) {
+        if (!prewarmEnabled) {
+            return;
+        }
+        OpenAIHttpClient client = event.getApplicationContext().getBean(OpenAIHttpClient.class);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/v1/models"))
+                .timeout(Duration.ofMillis(connectTimeoutMs * 2))
+                .GET()
+                .build();
+        long startedAt = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+                    Throwable cause = error != null ? AsyncUtils.unwrap(error) : null;
+                    if (cause != null && !(cause instanceof OpenAIHttpException)) {
+                        log.warn("OpenAI connection pre-warm failed after {} ms: {}", elapsedMs, cause.getMessage());
+                    } else {
+                        log.info("OpenAI connection pre-warmed in {} ms", elapsedMs);
+                    }
+                });
+    }
+
+    private static void setDefaultSystemProperty(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
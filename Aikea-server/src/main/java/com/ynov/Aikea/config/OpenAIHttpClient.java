@@ -0,0 +1,233 @@
+package com.ynov.Aikea.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ynov.Aikea.atools.OpenAIErrorType;
+import com.ynov.Aikea.atools.OpenAIHttpException;
+import com.ynov.Aikea.service.OpenAIRateLimiters;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * HttpClient utilisé par SimpleOpenAI. Il délègue tout au client JDK et observe
+ * au passage les réponses, car simple-openai ne donne pas accès aux en-têtes
+ * (x-ratelimit-*, retry-after) dont les limiteurs ont besoin.
+ * Il ajoute aussi un timeout aux requêtes qui n'en ont pas et mesure chaque échange HTTP.
+ * Une réponse d'erreur (statut 4xx/5xx) est remplacée par une OpenAIHttpException qui porte
+ * son statut et les champs error.type / error.code : la classification des erreurs s'appuie dessus.
+ */
+public class OpenAIHttpClient extends HttpClient {
+
+    // Les corps d'erreur font quelques centaines d'octets : au-delà, on ne lit pas plus
+    private static final int MAX_ERROR_BODY_BYTES = 64 * 1024;
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpClient delegate;
+    private final OpenAIRateLimiters rateLimiters;
+    private final MeterRegistry meterRegistry;
+    private final Duration requestTimeout;
+    private final AtomicInteger inFlightExchanges = new AtomicInteger();
+
+    public OpenAIHttpClient(HttpClient delegate, OpenAIRateLimiters rateLimiters,
+                            MeterRegistry meterRegistry, Duration requestTimeout) {
+        this.delegate = delegate;
+        this.rateLimiters = rateLimiters;
+        this.meterRegistry = meterRegistry;
+        this.requestTimeout = requestTimeout;
+        Gauge.builder("aikea.openai.http.in.flight", inFlightExchanges, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> responseBodyHandler)
+            throws IOException, InterruptedException {
+        HttpRequest timedRequest = withTimeout(request);
+        long startedAt = begin();
+        HttpResponse<T> response = null;
+        Throwable error = null;
+        try {
+            response = delegate.send(timedRequest, responseBodyHandler);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            observe(timedRequest, response, error, startedAt);
+        }
+        if (isError(response)) {
+            throw toException(response);
+        }
+        return response;
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> responseBodyHandler) {
+        HttpRequest timedRequest = withTimeout(request);
+        long startedAt = begin();
+        return delegate.sendAsync(timedRequest, responseBodyHandler)
+                .whenComplete((response, error) -> observe(timedRequest, response, error, startedAt))
+                .thenApply(OpenAIHttpClient::failOnError);
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            HttpResponse.BodyHandler<T> responseBodyHandler,
+                                                            HttpResponse.PushPromiseHandler<T> pushPromiseHandler) {
+        HttpRequest timedRequest = withTimeout(request);
+        long startedAt = begin();
+        return delegate.sendAsync(timedRequest, responseBodyHandler, pushPromiseHandler)
+                .whenComplete((response, error) -> observe(timedRequest, response, error, startedAt))
+                .thenApply(OpenAIHttpClient::failOnError);
+    }
+
+    private static <T> HttpResponse<T> failOnError(HttpResponse<T> response) {
+        if (isError(response)) {
+            throw new CompletionException(toException(response));
+        }
+        return response;
+    }
+
+    private static boolean isError(HttpResponse<?> response) {
+        return response.statusCode() >= 400;
+    }
+
+    // Corps attendu : {"error": {"message": ..., "type": ..., "code": ...}} ; statut seul s'il est illisible
+    private static OpenAIHttpException toException(HttpResponse<?> response) {
+        String body = readErrorBody(response.body());
+        try {
+            JsonNode error = body != null ? objectMapper.readTree(body).path("error") : null;
+            if (error != null && error.isObject()) {
+                return new OpenAIHttpException(response.statusCode(), textOrNull(error.path("type")),
+                        textOrNull(error.path("code")), textOrNull(error.path("message")));
+            }
+        } catch (IOException e) {
+            // Corps non JSON (proxy, page d'erreur) : le statut suffit
+        }
+        return new OpenAIHttpException(response.statusCode(), null, null, null);
+    }
+
+    private static String textOrNull(JsonNode node) {
+        return node.isValueNode() && !node.isNull() ? node.asText() : null;
+    }
+
+    // Le type du corps dépend du BodyHandler choisi par simple-openai (texte, lignes pour les flux, octets)
+    private static String readErrorBody(Object body) {
+        try {
+            if (body instanceof String text) {
+                return text;
+            }
+            if (body instanceof byte[] bytes) {
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            if (body instanceof Stream<?> lines) {
+                try (lines) {
+                    return lines.limit(1000).map(String::valueOf).collect(Collectors.joining("\n"));
+                }
+            }
+            if (body instanceof InputStream input) {
+                try (input) {
+                    return new String(input.readNBytes(MAX_ERROR_BODY_BYTES), StandardCharsets.UTF_8);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            return null;
+        }
+        return null;
+    }
+
+    // simple-openai n'en fixe pas : sans timeout, une réponse qui n'arrive jamais bloque l'appel indéfiniment
+    private HttpRequest withTimeout(HttpRequest request) {
+        if (request.timeout().isPresent() || requestTimeout == null) {
+            return request;
+        }
+        return HttpRequest.newBuilder(request, (name, value) -> true).timeout(requestTimeout).build();
+    }
+
+    private long begin() {
+        inFlightExchanges.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    private void observe(HttpRequest request, HttpResponse<?> response, Throwable error, long startedAt) {
+        inFlightExchanges.decrementAndGet();
+        // Jusqu'aux en-têtes de réponse : inclut connexion, TLS et attente du premier octet
+        Timer.builder("aikea.openai.http.exchange")
+                .tag("version", response != null ? response.version().name() : "none")
+                .tag("status", response != null ? (response.statusCode() / 100) + "xx"
+                        : OpenAIErrorType.classify(error).name())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        if (response != null) {
+            rateLimiters.onResponseHeaders(request.uri().getPath(), response.headers());
+        }
+    }
+
+    @Override
+    public Optional<CookieHandler> cookieHandler() {
+        return delegate.cookieHandler();
+    }
+
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return delegate.connectTimeout();
+    }
+
+    @Override
+    public Redirect followRedirects() {
+        return delegate.followRedirects();
+    }
+
+    @Override
+    public Optional<ProxySelector> proxy() {
+        return delegate.proxy();
+    }
+
+    @Override
+    public SSLContext sslContext() {
+        return delegate.sslContext();
+    }
+
+    @Override
+    public SSLParameters sslParameters() {
+        return delegate.sslParameters();
+    }
+
+    @Override
+    public Optional<Authenticator> authenticator() {
+        return delegate.authenticator();
+    }
+
+    @Override
+    public Version version() {
+        return delegate.version();
+    }
+
+    @Override
+    public Optional<Executor> executor() {
+        return delegate.executor();
+    }
+}
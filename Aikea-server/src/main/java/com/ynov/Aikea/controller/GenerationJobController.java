@@ -0,0 +1,110 @@
+package com.ynov.Aikea.controller;
+
+import com.ynov.Aikea.dto.GenerationJobDTO;
+import com.ynov.Aikea.dto.ImageGenerationRequest;
+import com.ynov.Aikea.service.GenerationJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.Map;
+
+// Génération PDF en différé : POST renvoie l'id du job, le suivi se fait par GET (polling) ou SSE
+@RestController
+@RequestMapping("/generate-pdf/jobs")
+@RequiredArgsConstructor
+public class GenerationJobController {
+
+    private final GenerationJobService generationJobService;
+
+    @Value("${app.jobs.stream.timeout-ms:900000}")
+    private long streamTimeoutMs;
+
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestBody ImageGenerationRequest request) {
+        try {
+            GenerationJobDTO job = generationJobService.submit(request);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/generate-pdf/jobs/" + job.getId()))
+                    .body(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<GenerationJobDTO> get(@PathVariable String id) {
+        return generationJobService.find(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // Événements "progress" à chaque étape, puis "done" avec l'état final (SUCCEEDED ou FAILED)
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> events(@PathVariable String id) {
+        GenerationJobDTO current = generationJobService.find(id).orElse(null);
+        if (current == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        if (send(emitter, current)) {
+            return ResponseEntity.ok(emitter);
+        }
+        Runnable unsubscribe = generationJobService.subscribe(id, job -> send(emitter, job));
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        // Le job a pu se terminer entre la lecture et l'abonnement
+        generationJobService.find(id).ifPresent(job -> send(emitter, job));
+        return ResponseEntity.ok(emitter);
+    }
+
+    @GetMapping("/{id}/pdf")
+    public ResponseEntity<?> pdf(@PathVariable String id) {
+        GenerationJobDTO job = generationJobService.find(id).orElse(null);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!job.getStatus().isTerminal()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(job);
+        }
+        Resource pdf = generationJobService.findPdf(id).map(FileSystemResource::new).orElse(null);
+        if (pdf == null) {
+            return ResponseEntity.status(HttpStatus.GONE)
+                    .body(Map.of("error", job.getError() != null ? job.getError() : "PDF is no longer available"));
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, "application/pdf")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"generated_" + id + ".pdf\"")
+                .body(pdf);
+    }
+
+    // @return true si le job est terminé (flux clos)
+    private boolean send(SseEmitter emitter, GenerationJobDTO job) {
+        try {
+            boolean terminal = job.getStatus().isTerminal();
+            emitter.send(SseEmitter.event().name(terminal ? "done" : "progress").data(job, MediaType.APPLICATION_JSON));
+            if (terminal) {
+                emitter.complete();
+            }
+            return terminal;
+        } catch (IOException e) {
+            // Client déconnecté : le service retire l'abonnement
+            throw new UncheckedIOException(e);
+        } catch (IllegalStateException e) {
+            // Flux déjà clos (double notification de fin)
+            return true;
+        }
+    }
+}
@@ -7,9 +7,15 @@ import com.ynov.Aikea.dto.GeneratedImageDTO;
 import com.ynov.Aikea.dto.ImageGenerationRequest;
 import com.ynov.Aikea.service.ImageGenerationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/generate-image")
 @CrossOrigin(origins = "http://localhost:8081")
@@ -19,12 +25,11 @@ public class ImageController {
     private final ImageGenerationService imageGenerationService ;
 
     @PostMapping(value = "/justImage", produces = MediaType.IMAGE_PNG_VALUE)
-    public ResponseEntity<byte[]> generateImageAndSend(@RequestBody ImageGenerationRequest request) {
+    public CompletableFuture<ResponseEntity<Resource>> generateImageAndSend(@RequestBody ImageGenerationRequest request) {
         String prompt = request.getPrompt();
         String quality = request.getQuality() != null ? request.getQuality() : "Low";
 
         QualityEnum qualityEnum;
-        GeneratedImageDTO dto;
 
         qualityEnum = switch (quality) {
             case "Medium" -> QualityEnum.MEDIUM;
@@ -32,39 +37,45 @@ public class ImageController {
             default -> QualityEnum.LOW;
         };
 
-        try {
-            // Assurez-vous que le prompt est propre pour éviter les problèmes de noms de fichiers
-            prompt = prompt.replace("\"", "").trim();
-
-            dto = imageGenerationService.generateAndSaveImage(prompt, qualityEnum);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.IMAGE_PNG);
-            return ResponseEntity.ok().headers(headers).body(dto.getImage());
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.badRequest().body(null);
+        if (prompt == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(null));
         }
+
+        // Assurez-vous que le prompt est propre pour éviter les problèmes de noms de fichiers
+        prompt = prompt.replace("\"", "").trim();
+
+        // Le thread Tomcat est libéré pendant la génération, la réponse est écrite à la complétion du future
+        return imageGenerationService.generateAndSaveImageAsync(prompt, qualityEnum, request.getReuse())
+                .thenApply(dto -> {
+                    // Le fichier stocké est recopié directement dans la réponse, sans passer par un byte[]
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.setContentType(MediaType.IMAGE_PNG);
+                    headers.setContentLength(dto.getSize());
+                    return ResponseEntity.ok().headers(headers).<Resource>body(new FileSystemResource(dto.getStorageURL()));
+                })
+                .exceptionally(e -> {
+                    e.printStackTrace();
+                    return ResponseEntity.badRequest().body(null);
+                });
     }
 
 
     @GetMapping(value = "/fullDTO", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<GeneratedImageDTO> generateImage(
+    public CompletableFuture<ResponseEntity<GeneratedImageDTO>> generateImage(
             @RequestParam String prompt,
             @RequestParam ImageProviderEnum provider,
-            @RequestParam(defaultValue = "Low") QualityEnum quality) {
-
-        GeneratedImageDTO dto ;
-
-        try {
-            dto = imageGenerationService.generateAndSaveImage(prompt, quality) ;
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(null);
-        }
-
-        return ResponseEntity
-                .ok(dto);
+            @RequestParam(defaultValue = "Low") QualityEnum quality,
+            @RequestParam(required = false) Boolean reuse) {
+
+        return imageGenerationService.generateAndSaveImageAsync(prompt, quality, reuse)
+                .thenApply(dto -> {
+                    try {
+                        return ResponseEntity.ok(imageGenerationService.loadImageBytes(dto));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .exceptionally(e -> ResponseEntity.badRequest().body(null));
     }
 
 }
\ No newline at end of file
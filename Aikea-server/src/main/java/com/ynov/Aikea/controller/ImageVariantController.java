@@ -0,0 +1,64 @@
+package com.ynov.Aikea.controller;
+
+import com.ynov.Aikea.atools.AsyncUtils;
+import com.ynov.Aikea.atools.ImageVariantEnum;
+import com.ynov.Aikea.service.BlobStoreService;
+import com.ynov.Aikea.service.ImageDerivativeService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Images du stockage par contenu (empreinte SHA-256, cf. contentHash des DTO) en miniature, aperçu ou taille réelle.
+// L'URL désigne un contenu qui ne change jamais : réponses cachables indéfiniment, 304 sur If-None-Match
+@RestController
+@RequestMapping("/images")
+@CrossOrigin(origins = "http://localhost:8081")
+@RequiredArgsConstructor
+public class ImageVariantController {
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+
+    private final ImageDerivativeService imageDerivativeService;
+
+    @GetMapping("/{hash}/{variant}")
+    public CompletableFuture<ResponseEntity<Resource>> variant(@PathVariable String hash, @PathVariable String variant,
+                                                               WebRequest webRequest) {
+        ImageVariantEnum variantEnum = ImageVariantEnum.fromName(variant);
+        if (!BlobStoreService.isValidHash(hash) || variantEnum == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+
+        // L'ETag ne dépend que de l'URL et des réglages : le 304 est renvoyé sans lire ni produire l'image
+        String eTag = imageDerivativeService.eTag(hash, variantEnum);
+        if (webRequest.checkNotModified(eTag)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(IMMUTABLE)
+                    .build());
+        }
+
+        return imageDerivativeService.resolveAsync(hash, variantEnum)
+                .thenApply(resolved -> {
+                    if (resolved == null) {
+                        return ResponseEntity.notFound().<Resource>build();
+                    }
+                    return ResponseEntity.ok()
+                            .contentType(MediaType.parseMediaType(resolved.contentType()))
+                            .eTag(resolved.eTag())
+                            .cacheControl(IMMUTABLE)
+                            .<Resource>body(new FileSystemResource(resolved.path()));
+                })
+                .exceptionally(e -> AsyncUtils.unwrap(e) instanceof IllegalArgumentException
+                        ? ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build()
+                        : ResponseEntity.internalServerError().build());
+    }
+}
@@ -1,26 +1,34 @@
 package com.ynov.Aikea.controller;
 
-import com.ynov.Aikea.config.JwtTokenProvider;
+import com.ynov.Aikea.atools.AsyncUtils;
+import com.ynov.Aikea.atools.EmitterOutputStream;
 import com.ynov.Aikea.dto.ImageGenerationRequest;
 import com.ynov.Aikea.dto.PDFContentDTO;
+import com.ynov.Aikea.dto.PdfBatchRequestDTO;
 import com.ynov.Aikea.dto.UploadedImageDTO;
 import com.ynov.Aikea.entity.BucketUploadResult;
 import com.ynov.Aikea.entity.CreatePDFResponse;
 import com.ynov.Aikea.service.ImageUploadCustomBucketService;
 import com.ynov.Aikea.service.PDFContentService;
+import com.ynov.Aikea.service.PdfBatchService;
 import lombok.RequiredArgsConstructor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @RestController
 @RequestMapping("/generate-pdf")
@@ -28,119 +36,173 @@ import java.util.Map;
 public class PDFContentController {
 
     private final PDFContentService pdfContentService;
-    private static final Logger logger = LogManager.getLogger(JwtTokenProvider.class);
+    private static final Logger logger = LogManager.getLogger(PDFContentController.class);
     private final ImageUploadCustomBucketService uploadService;
+    @Qualifier("generationExecutor")
+    private final Executor generationExecutor;
+    private final PdfBatchService pdfBatchService;
+
+    // Un lot dure bien plus longtemps qu'une requête : son propre délai, au lieu de celui des requêtes asynchrones
+    @Value("${app.pdf.batch.timeout-ms:1800000}")
+    private long batchTimeoutMs;
 
     // Endpoint existant - génère et retourne directement le PDF
     @PostMapping("/create")
-    public ResponseEntity<Resource> createPDF(@RequestBody ImageGenerationRequest imageGenerationRequest) {
-        try {
-            // Générer le contenu PDF
-            PDFContentDTO pdfContent = pdfContentService.generatePDFContent(imageGenerationRequest);
-            MultipartFile pdf = pdfContentService.createPDF(pdfContent);
-            Resource resource = new ByteArrayResource(pdf.getBytes());
+    public CompletableFuture<ResponseEntity<Resource>> createPDF(@RequestBody ImageGenerationRequest imageGenerationRequest) {
+        // Générer le contenu PDF
+        return pdfContentService.generatePDFContentAsync(imageGenerationRequest)
+                .thenCompose(pdfContentService::createPDFAsync)
+                .thenApply(pdf -> ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_TYPE, "application/pdf")
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"generated.pdf\"")
+                        .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(pdf.getSize()))
+                        .body(toResource(pdf)))
+                .exceptionally(e -> {
+                    logger.error("PDF creation failed", AsyncUtils.unwrap(e));
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                });
+    }
 
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_TYPE, "application/pdf")
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"generated.pdf\"")
-                    .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(pdf.getSize()))
-                    .body(resource);
+    // Mode flux - le PDF est écrit dans la réponse au fil du rendu (pas de fichier intermédiaire ni de byte[]).
+    // store=true en garde aussi une copie dans le stockage par contenu, écrite en même temps que la réponse
+    @PostMapping("/create-stream")
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> createPDFStream(
+            @RequestBody ImageGenerationRequest imageGenerationRequest,
+            @RequestParam(value = "store", defaultValue = "false") boolean store) {
+        // Image et texte d'abord : une erreur de génération donne encore une réponse 500 propre.
+        // Le rendu lui-même a lieu sur l'exécuteur asynchrone de Spring MVC, pendant l'écriture de la réponse
+        return pdfContentService.generatePDFContentAsync(imageGenerationRequest)
+                .thenApply(pdfContent -> {
+                    StreamingResponseBody body = output -> pdfContentService.writePDF(pdfContent, output, store);
+                    return ResponseEntity.ok()
+                            .header(HttpHeaders.CONTENT_TYPE, "application/pdf")
+                            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"generated.pdf\"")
+                            .body(body);
+                })
+                .exceptionally(e -> {
+                    logger.error("PDF content generation failed", AsyncUtils.unwrap(e));
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                });
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    // Lot de PDF (catalogue) renvoyé en archive ZIP écrite au fil de l'eau : chaque PDF y entre dès qu'il est prêt,
+    // manifest.json termine l'archive avec le résultat de chaque élément (erreurs comprises).
+    // ResponseBodyEmitter plutôt que StreamingResponseBody pour que le lot ait son propre délai
+    @PostMapping("/batch")
+    public ResponseEntity<?> createBatch(@RequestBody PdfBatchRequestDTO request) {
+        try {
+            pdfBatchService.validate(request.getItems());
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Invalid batch");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
         }
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(batchTimeoutMs);
+        pdfBatchService.writeZipAsync(request.getItems(), new EmitterOutputStream(emitter))
+                .whenComplete((manifest, error) -> {
+                    if (error == null) {
+                        emitter.complete();
+                        return;
+                    }
+                    // Réponse déjà commencée : l'archive reste incomplète, le client voit la coupure
+                    Throwable cause = AsyncUtils.unwrap(error);
+                    logger.warn("PDF batch aborted: {}", cause.getMessage());
+                    emitter.completeWithError(cause);
+                });
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, "application/zip")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"catalog.zip\"")
+                .body(emitter);
     }
 
     // Nouvel endpoint - génère le PDF et l'upload sur le bucket
     @PostMapping("/create-and-upload")
-    public ResponseEntity<Map<String, Object>> createAndUploadPDF(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> createAndUploadPDF(
             @RequestBody ImageGenerationRequest imageGenerationRequest,
             @RequestParam(value = "idExterne", required = false) String idExterne,
             @RequestParam(value = "tag1", required = false) String tag1,
             @RequestParam(value = "tag2", required = false) String tag2,
             @RequestParam(value = "tag3", required = false) String tag3) {
 
-        try {
-            // Générer le contenu PDF
-            PDFContentDTO pdfContent = pdfContentService.generatePDFContent(imageGenerationRequest);
-            MultipartFile pdf = pdfContentService.createPDF(pdfContent);
-
-            // Upload sur le bucket custom avec tags
-            UploadedImageDTO uploadResult = uploadService.uploadFile(
-                    pdf,
-                    idExterne != null ? idExterne : "auto_" + System.currentTimeMillis(),
-                    tag1 != null ? tag1 : "pdf",
-                    tag2 != null ? tag2 : "generated",
-                    tag3
-            );
-
-            // Construire la réponse avec informations du PDF et de l'upload
-            Map<String, Object> response = new HashMap<>();
-            response.put("uploadInfo", uploadResult);
-            response.put("pdfInfo", Map.of(
-                    "size", pdf.getSize(),
-                    "originalFilename", pdf.getOriginalFilename() != null ? pdf.getOriginalFilename() : "generated.pdf",
-                    "contentType", pdf.getContentType()
-            ));
-            response.put("generated", true);
-            response.put("timestamp", System.currentTimeMillis());
-
-            return ResponseEntity.ok(response);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("error", "Failed to create and upload PDF");
-            errorResponse.put("message", e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
-        }
+        // Générer le contenu PDF
+        return pdfContentService.generatePDFContentAsync(imageGenerationRequest)
+                .thenCompose(pdfContentService::createPDFAsync)
+                .thenCompose(pdf -> CompletableFuture.supplyAsync(() -> {
+                    // Upload sur le bucket custom avec tags
+                    UploadedImageDTO uploadResult = uploadService.uploadFile(
+                            pdf,
+                            idExterne != null ? idExterne : "auto_" + System.currentTimeMillis(),
+                            tag1 != null ? tag1 : "pdf",
+                            tag2 != null ? tag2 : "generated",
+                            tag3
+                    );
+
+                    // Construire la réponse avec informations du PDF et de l'upload
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("uploadInfo", uploadResult);
+                    response.put("pdfInfo", Map.of(
+                            "size", pdf.getSize(),
+                            "originalFilename", pdf.getOriginalFilename() != null ? pdf.getOriginalFilename() : "generated.pdf",
+                            "contentType", pdf.getContentType()
+                    ));
+                    response.put("generated", true);
+                    response.put("timestamp", System.currentTimeMillis());
+
+                    return ResponseEntity.ok(response);
+                }, generationExecutor))
+                .exceptionally(e -> {
+                    Throwable cause = AsyncUtils.unwrap(e);
+                    logger.error("PDF creation and upload failed", cause);
+                    Map<String, Object> errorResponse = new HashMap<>();
+                    errorResponse.put("error", "Failed to create and upload PDF");
+                    errorResponse.put("message", cause.getMessage());
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+                });
     }
 
     // Endpoint hybride - génère le PDF, l'upload ET retourne le fichier
     @PostMapping("/create-upload-and-download")
-    public ResponseEntity<Resource> createUploadAndDownloadPDF(
+    public CompletableFuture<ResponseEntity<Resource>> createUploadAndDownloadPDF(
             @RequestBody ImageGenerationRequest imageGenerationRequest,
             @RequestParam(value = "idExterne", required = false) String idExterne,
             @RequestParam(value = "tag1", required = false) String tag1,
             @RequestParam(value = "tag2", required = false) String tag2,
             @RequestParam(value = "tag3", required = false) String tag3) {
 
-        try {
-            // Générer le contenu PDF
-            PDFContentDTO pdfContent = pdfContentService.generatePDFContent(imageGenerationRequest);
-            MultipartFile pdf = pdfContentService.createPDF(pdfContent);
-
-            // Upload sur le bucket custom (en arrière-plan)
-            try {
-                uploadService.uploadFile(
-                        pdf,
-                        idExterne != null ? idExterne : "auto_" + System.currentTimeMillis(),
-                        tag1 != null ? tag1 : "pdf",
-                        tag2 != null ? tag2 : "generated",
-                        tag3
-                );
-            } catch (Exception uploadException) {
-                // Log l'erreur mais continue le téléchargement
-                System.err.println("Upload failed but continuing with download: " + uploadException.getMessage());
-            }
-
-            // Retourner le PDF pour téléchargement
-            Resource resource = new ByteArrayResource(pdf.getBytes());
-
-            String filename = generatePDFFilename(idExterne, tag1);
-
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_TYPE, "application/pdf")
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                    .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(pdf.getSize()))
-                    .header("X-Upload-Status", "completed") // Header custom pour indiquer que l'upload est fait
-                    .body(resource);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+        // Générer le contenu PDF
+        return pdfContentService.generatePDFContentAsync(imageGenerationRequest)
+                .thenCompose(pdfContentService::createPDFAsync)
+                .thenCompose(pdf -> CompletableFuture.supplyAsync(() -> {
+                    // Upload sur le bucket custom (en arrière-plan)
+                    try {
+                        uploadService.uploadFile(
+                                pdf,
+                                idExterne != null ? idExterne : "auto_" + System.currentTimeMillis(),
+                                tag1 != null ? tag1 : "pdf",
+                                tag2 != null ? tag2 : "generated",
+                                tag3
+                        );
+                    } catch (Exception uploadException) {
+                        // Log l'erreur mais continue le téléchargement
+                        logger.warn("Upload failed but continuing with download: {}", uploadException.getMessage());
+                    }
+
+                    // Retourner le PDF pour téléchargement
+                    String filename = generatePDFFilename(idExterne, tag1);
+
+                    return ResponseEntity.ok()
+                            .header(HttpHeaders.CONTENT_TYPE, "application/pdf")
+                            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                            .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(pdf.getSize()))
+                            .header("X-Upload-Status", "completed") // Header custom pour indiquer que l'upload est fait
+                            .body(toResource(pdf));
+                }, generationExecutor))
+                .exceptionally(e -> {
+                    logger.error("PDF creation for upload and download failed", AsyncUtils.unwrap(e));
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                });
     }
 
     // Endpoint pour récupérer un PDF uploadé
@@ -165,11 +227,16 @@ public class PDFContentController {
                     .build();
 
         } catch (Exception e) {
-            e.printStackTrace();
+            logger.error("PDF download lookup failed for {}", fileId, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    // Lu en flux depuis le fichier au moment de l'écriture de la réponse, sans copie complète en mémoire
+    private Resource toResource(MultipartFile pdf) {
+        return pdf.getResource();
+    }
+
     private String generatePDFFilename(String idExterne, String tag1) {
         StringBuilder filename = new StringBuilder("generated");
 
@@ -1,12 +1,22 @@
 package com.ynov.Aikea.controller;
 
+import com.ynov.Aikea.atools.AsyncUtils;
 import com.ynov.Aikea.dto.GeneratedTextDTO;
+import com.ynov.Aikea.dto.TextBatchRequestDTO;
 import com.ynov.Aikea.dto.TextFromImageRequestDTO;
 import com.ynov.Aikea.dto.TextFromLocalImageRequestDTO;
 import com.ynov.Aikea.service.TextGenerationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/generate-text")
@@ -15,22 +25,100 @@ public class TextGenerationController {
 
     private final TextGenerationService textGenerationService;
 
+    @Value("${app.text.stream.timeout-ms:120000}")
+    private long streamTimeoutMs;
+
     @PostMapping("/generate")
-    public ResponseEntity<GeneratedTextDTO> generateText(@RequestBody String prompt) {
-        GeneratedTextDTO generatedTextDTO = textGenerationService.generateText(prompt);
-        return ResponseEntity.ok(generatedTextDTO);
+    public CompletableFuture<ResponseEntity<GeneratedTextDTO>> generateText(@RequestBody String prompt) {
+        return textGenerationService.generateTextAsync(prompt).thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/generate-from-image-url")
-    public ResponseEntity<GeneratedTextDTO> generateTextFromImageUrl(@RequestBody TextFromImageRequestDTO request) {
-        GeneratedTextDTO generatedTextDTO = textGenerationService.generateTextFromImageUrl(request.getImageUrl());
-        return ResponseEntity.ok(generatedTextDTO);
+    public CompletableFuture<ResponseEntity<GeneratedTextDTO>> generateTextFromImageUrl(
+            @RequestBody TextFromImageRequestDTO request) {
+        return textGenerationService.generateTextFromImageUrlAsync(request.getImageUrl()).thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/generate-from-image-path")
-    public ResponseEntity<GeneratedTextDTO> generateTextFromLocalImage(@RequestBody TextFromLocalImageRequestDTO request) {
-        GeneratedTextDTO generatedTextDTO = textGenerationService.generateTextFromLocalImage(request.getImagePath());
-        return ResponseEntity.ok(generatedTextDTO);
+    public CompletableFuture<ResponseEntity<GeneratedTextDTO>> generateTextFromLocalImage(
+            @RequestBody TextFromLocalImageRequestDTO request) {
+        return textGenerationService.generateTextFromLocalImageAsync(request.getImagePath())
+                .thenApply(ResponseEntity::ok);
+    }
+
+    // Un seul aller-retour pour N pièces : les éléments tournent en parallèle, le résultat garde l'ordre de la requête.
+    // Seul un lot invalide donne une 400 ; les autres erreurs suivent la gestion 5xx habituelle
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<?>> generateBatch(@RequestBody TextBatchRequestDTO request) {
+        return textGenerationService.generateBatchAsync(request.getItems(), result -> { })
+                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                .exceptionally(e -> {
+                    Throwable cause = AsyncUtils.unwrap(e);
+                    if (cause instanceof IllegalArgumentException) {
+                        return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(cause.getMessage())));
+                    }
+                    throw AsyncUtils.wrap(cause);
+                });
+    }
+
+    // Variante SSE : un événement "result" par élément dès qu'il est prêt, puis "done" avec le récapitulatif ordonné
+    @PostMapping(value = "/batch/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamBatch(@RequestBody TextBatchRequestDTO request) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        forward(textGenerationService.generateBatchAsync(request.getItems(),
+                result -> sendEvent(emitter, "result", result)), emitter);
+        return emitter;
+    }
+
+    // Streaming SSE : événements "token" au fil de l'eau, puis "done" avec le texte complet (ou "error")
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamText(@RequestBody String prompt) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        forward(textGenerationService.streamTextAsync(prompt, token -> sendToken(emitter, token)), emitter);
+        return emitter;
     }
 
+    @PostMapping(value = "/stream-from-image-url", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamTextFromImageUrl(@RequestBody TextFromImageRequestDTO request) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        forward(textGenerationService.streamTextFromImageUrlAsync(request.getImageUrl(),
+                token -> sendToken(emitter, token)), emitter);
+        return emitter;
+    }
+
+    // Les morceaux sont envoyés en JSON pour que les retours à la ligne ne cassent pas le format SSE
+    private void sendToken(SseEmitter emitter, String token) {
+        sendEvent(emitter, "token", Map.of("token", token));
+    }
+
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException e) {
+            // Client déconnecté : l'exception interrompt le flux OpenAI ou le lot en cours
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Délai dépassé, client parti ou réponse terminée : la génération est annulée. Un lot ne lance plus d'élément ;
+    // un flux OpenAI en cours s'arrête au morceau suivant, dont l'envoi sur l'emitter terminé échoue
+    private void forward(CompletableFuture<?> generation, SseEmitter emitter) {
+        emitter.onTimeout(() -> generation.cancel(true));
+        emitter.onError(error -> generation.cancel(true));
+        emitter.onCompletion(() -> generation.cancel(true));
+        generation.whenComplete((result, error) -> {
+            try {
+                if (error != null) {
+                    emitter.send(SseEmitter.event().name("error")
+                            .data(Map.of("message", String.valueOf(AsyncUtils.unwrap(error).getMessage())),
+                                    MediaType.APPLICATION_JSON));
+                } else {
+                    emitter.send(SseEmitter.event().name("done").data(result, MediaType.APPLICATION_JSON));
+                }
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        });
+    }
 }
@@ -1,15 +1,30 @@
 package com.ynov.Aikea.dto;
 
+import com.ynov.Aikea.atools.QualityEnum;
 import lombok.Builder;
 import lombok.Data;
 
-@Builder()
+@Builder(toBuilder = true)
 @Data
 public class GeneratedImageDTO {
 
+    // Contenu de l'image : chargé uniquement à la demande (loadImageBytes), le fichier reste sur disque sinon
     private byte[] image;
+    private long size;
+    // Empreinte SHA-256 calculée pendant l'écriture du fichier ; variantes servies par /images/{contentHash}/{variant}
+    private String contentHash;
     private int internalID;
     private String externalID;
     private String storageURL;
     private String url;
+    // true si l'image provient d'une génération précédente (pas d'appel OpenAI, url vide)
+    private boolean reused;
+    // Qualité de l'image renvoyée, et qualité demandée par le client
+    private QualityEnum quality;
+    private QualityEnum requestedQuality;
+    // true si l'image ne correspond pas à la demande : OpenAI indisponible (image la plus proche, repli LOW)
+    // ou qualité abaissée sous forte charge
+    private boolean degraded;
+    // true si la qualité demandée sera générée en arrière-plan (retrouvable ensuite avec reuse=true)
+    private boolean upgradeScheduled;
 }
@@ -4,7 +4,9 @@ import lombok.Builder;
 import lombok.Data;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 public class GeneratedTextDTO {
     private String text;
+    // true si OpenAI était indisponible et que le texte est un texte de remplacement
+    private boolean degraded;
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.ynov.Aikea.dto;
+
+import com.ynov.Aikea.atools.JobStageEnum;
+import com.ynov.Aikea.atools.JobStatusEnum;
+import com.ynov.Aikea.atools.QualityEnum;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class GenerationJobDTO {
+    private String id;
+    private JobStatusEnum status;
+    private JobStageEnum stage;
+    private QualityEnum quality;
+    private int attempts;
+    private Integer imageId;
+    private String text;
+    private Long pdfSize;
+    // Renseignée une fois le job terminé avec succès
+    private String pdfUrl;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime imageCompletedAt;
+    private LocalDateTime textCompletedAt;
+    private LocalDateTime pdfCompletedAt;
+    private LocalDateTime completedAt;
+}
@@ -8,4 +8,6 @@ public class ImageGenerationRequest {
     @Setter
     private String prompt;
     private String quality;
+    // Réutiliser une image déjà générée pour le même prompt et la même qualité (null = configuration serveur)
+    private Boolean reuse;
 }
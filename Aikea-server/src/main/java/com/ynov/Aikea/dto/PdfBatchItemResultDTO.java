@@ -0,0 +1,17 @@
+package com.ynov.Aikea.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class PdfBatchItemResultDTO {
+    // Position de l'élément dans la requête
+    private int index;
+    private String prompt;
+    // SUCCESS ou FAILED
+    private String status;
+    // Nom du PDF dans l'archive
+    private String entryName;
+    private String error;
+}
@@ -0,0 +1,15 @@
+package com.ynov.Aikea.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class PdfBatchManifestDTO {
+    // Dans l'ordre des éléments de la requête
+    private List<PdfBatchItemResultDTO> results;
+    private int succeeded;
+    private int failed;
+}
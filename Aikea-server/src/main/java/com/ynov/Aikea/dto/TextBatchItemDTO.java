@@ -0,0 +1,10 @@
+package com.ynov.Aikea.dto;
+
+import lombok.Data;
+
+// Un élément du lot : soit un prompt, soit l'URL d'une image (prioritaire si les deux sont fournis)
+@Data
+public class TextBatchItemDTO {
+    private String prompt;
+    private String imageUrl;
+}
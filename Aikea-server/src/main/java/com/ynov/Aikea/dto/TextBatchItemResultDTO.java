@@ -0,0 +1,15 @@
+package com.ynov.Aikea.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class TextBatchItemResultDTO {
+    // Position de l'élément dans la requête
+    private int index;
+    // SUCCESS ou FAILED
+    private String status;
+    private String text;
+    private String error;
+}
@@ -0,0 +1,10 @@
+package com.ynov.Aikea.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class TextBatchRequestDTO {
+    private List<TextBatchItemDTO> items;
+}
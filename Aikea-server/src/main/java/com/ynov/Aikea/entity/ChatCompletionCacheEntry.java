@@ -0,0 +1,50 @@
+package com.ynov.Aikea.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Getter
+@Setter
+@ToString
+@Table(name = "chat_completion_cache")
+public class ChatCompletionCacheEntry {
+
+    // Empreinte SHA-256 (hexadécimale) de la requête complète
+    @Id
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+
+    @Column(name = "model")
+    private String model;
+
+    @Column(name = "response", nullable = false, columnDefinition = "MEDIUMTEXT")
+    private String response;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(name = "last_access", nullable = false)
+    private LocalDateTime lastAccess;
+
+    @Column(name = "hit_count", nullable = false)
+    @Builder.Default
+    private Integer hitCount = 0;
+
+    /**
+     * Vérifie si l'entrée a dépassé sa durée de vie
+     * @return true si l'entrée est expirée
+     */
+    @Transient
+    public boolean isExpired() {
+        return expiresAt != null && expiresAt.isBefore(LocalDateTime.now());
+    }
+}
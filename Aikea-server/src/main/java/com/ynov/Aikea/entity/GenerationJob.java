@@ -0,0 +1,96 @@
+package com.ynov.Aikea.entity;
+
+import com.ynov.Aikea.atools.JobStageEnum;
+import com.ynov.Aikea.atools.JobStatusEnum;
+import com.ynov.Aikea.atools.QualityEnum;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Getter
+@Setter
+@ToString
+@Table(name = "generation_jobs")
+public class GenerationJob {
+
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private JobStatusEnum status;
+
+    // Étape en cours (ou DONE une fois le PDF produit)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "stage")
+    private JobStageEnum stage;
+
+    @Column(name = "prompt", nullable = false, columnDefinition = "TEXT")
+    private String prompt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "quality", nullable = false)
+    private QualityEnum quality;
+
+    @Column(name = "reuse_image")
+    private Boolean reuseImage;
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    // Instance qui a réclamé le job, pour le diagnostic
+    @Column(name = "worker_id")
+    private String workerId;
+
+    @Column(name = "image_id")
+    private Integer imageId;
+
+    @Column(name = "image_path")
+    private String imagePath;
+
+    @Column(name = "generated_text", columnDefinition = "MEDIUMTEXT")
+    private String generatedText;
+
+    @Column(name = "pdf_path")
+    private String pdfPath;
+
+    @Column(name = "pdf_size")
+    private Long pdfSize;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "image_completed_at")
+    private LocalDateTime imageCompletedAt;
+
+    @Column(name = "text_completed_at")
+    private LocalDateTime textCompletedAt;
+
+    @Column(name = "pdf_completed_at")
+    private LocalDateTime pdfCompletedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    // Incrémentée à chaque sauvegarde et à chaque réclamation : la sauvegarde d'un worker qui a perdu le job échoue
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    // Battement de cœur du worker : un job RUNNING qui n'avance plus est remis en file
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
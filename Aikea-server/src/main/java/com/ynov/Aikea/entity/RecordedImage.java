@@ -1,5 +1,6 @@
 package com.ynov.Aikea.entity;
 
+import com.ynov.Aikea.atools.QualityEnum;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -28,4 +29,12 @@ public class RecordedImage {
 
     @Column(name = "prompt")
     private String prompt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "quality")
+    private QualityEnum quality;
+
+    // Empreinte du prompt normalisé, voir ImageReuseIndex
+    @Column(name = "prompt_key")
+    private String promptKey;
 }
@@ -0,0 +1,39 @@
+package com.ynov.Aikea.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Getter
+@Setter
+@ToString
+@Table(name = "rendered_pdf_cache")
+public class RenderedPdfCacheEntry {
+
+    // Empreinte SHA-256 de la version de mise en page, du texte et de l'image
+    @Id
+    @Column(name = "cache_key", length = 64)
+    private String cacheKey;
+
+    // Le PDF dans le stockage par contenu (l'entrée y détient une référence)
+    @Column(name = "blob_sha256", nullable = false, length = 64)
+    private String blobSha256;
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_access", nullable = false)
+    private LocalDateTime lastAccess;
+
+    @Column(name = "hit_count", nullable = false)
+    @Builder.Default
+    private Integer hitCount = 0;
+}
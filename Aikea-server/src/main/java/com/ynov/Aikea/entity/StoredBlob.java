@@ -0,0 +1,41 @@
+package com.ynov.Aikea.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Getter
+@Setter
+@ToString
+@Table(name = "blobs")
+public class StoredBlob {
+
+    // Empreinte SHA-256 (hexadécimale) du contenu
+    @Id
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    @Column(name = "mime_type")
+    private String mimeType;
+
+    @Column(name = "path", nullable = false, length = 500)
+    private String path;
+
+    // Nombre d'uploads qui pointent vers ce contenu : le fichier est supprimé quand il retombe à 0
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_access", nullable = false)
+    private LocalDateTime lastAccess;
+}
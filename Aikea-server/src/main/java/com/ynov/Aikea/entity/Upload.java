@@ -38,6 +38,10 @@ public class Upload {
     @Column(name = "file_path", nullable = false)
     private String filePath;
 
+    // Empreinte SHA-256 du blob partagé (null pour les fichiers enregistrés avant le stockage par contenu)
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @Column(name = "tag1")
     private String tag1;
 
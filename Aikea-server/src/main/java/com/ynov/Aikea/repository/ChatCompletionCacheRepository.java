@@ -0,0 +1,31 @@
+package com.ynov.Aikea.repository;
+
+import com.ynov.Aikea.entity.ChatCompletionCacheEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ChatCompletionCacheRepository extends JpaRepository<ChatCompletionCacheEntry, String> {
+
+    /**
+     * Supprime les entrées expirées
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ChatCompletionCacheEntry e WHERE e.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+
+    /**
+     * Clés des entrées les moins récemment utilisées, pour l'éviction par taille
+     */
+    @Query("SELECT e.cacheKey FROM ChatCompletionCacheEntry e ORDER BY e.lastAccess ASC")
+    List<String> findLeastRecentlyUsedKeys(Pageable pageable);
+}
@@ -0,0 +1,41 @@
+package com.ynov.Aikea.repository;
+
+import com.ynov.Aikea.atools.JobStatusEnum;
+import com.ynov.Aikea.entity.GenerationJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface GenerationJobRepository extends JpaRepository<GenerationJob, String> {
+
+    /**
+     * Jobs en attente, les plus anciens d'abord
+     */
+    @Query("SELECT j.id FROM GenerationJob j WHERE j.status = com.ynov.Aikea.atools.JobStatusEnum.QUEUED ORDER BY j.createdAt ASC")
+    List<String> findQueuedIds(Pageable pageable);
+
+    /**
+     * Réclame un job en attente ; mise à jour conditionnelle, un seul worker (toutes instances confondues) l'obtient.
+     * La version change aussi : un ancien worker encore en train de traiter le job ne peut plus le sauvegarder
+     * @return 1 si le job a été réclamé, 0 s'il l'a déjà été ailleurs
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE GenerationJob j SET j.status = com.ynov.Aikea.atools.JobStatusEnum.RUNNING, j.workerId = :workerId, "
+            + "j.startedAt = :now, j.updatedAt = :now, j.attempts = j.attempts + 1, j.version = j.version + 1 "
+            + "WHERE j.id = :id AND j.status = com.ynov.Aikea.atools.JobStatusEnum.QUEUED")
+    int claim(@Param("id") String id, @Param("workerId") String workerId, @Param("now") LocalDateTime now);
+
+    /**
+     * Jobs RUNNING dont le worker ne donne plus signe de vie (instance arrêtée ou plantée)
+     */
+    List<GenerationJob> findByStatusAndUpdatedAtBefore(JobStatusEnum status, LocalDateTime updatedBefore);
+}
@@ -1,7 +1,15 @@
 package com.ynov.Aikea.repository;
 
+import com.ynov.Aikea.atools.QualityEnum;
 import com.ynov.Aikea.entity.RecordedImage;
 import org.springframework.data.repository.CrudRepository;
 
+import java.util.List;
+
 public interface RecordedImagesRepository extends CrudRepository<RecordedImage, Integer> {
+
+    /**
+     * Images déjà générées pour un prompt normalisé et une qualité, la plus récente en premier
+     */
+    List<RecordedImage> findByPromptKeyAndQualityOrderByIdDesc(String promptKey, QualityEnum quality);
 }
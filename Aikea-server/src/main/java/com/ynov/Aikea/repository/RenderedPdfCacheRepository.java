@@ -0,0 +1,38 @@
+package com.ynov.Aikea.repository;
+
+import com.ynov.Aikea.entity.RenderedPdfCacheEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RenderedPdfCacheRepository extends JpaRepository<RenderedPdfCacheEntry, String> {
+
+    /**
+     * Enregistre un accès (ordre LRU)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE RenderedPdfCacheEntry e SET e.lastAccess = :now, e.hitCount = e.hitCount + 1 " +
+            "WHERE e.cacheKey = :cacheKey")
+    int touch(@Param("cacheKey") String cacheKey, @Param("now") LocalDateTime now);
+
+    /**
+     * Taille totale des PDF en cache
+     */
+    @Query("SELECT COALESCE(SUM(e.size), 0) FROM RenderedPdfCacheEntry e")
+    long totalSize();
+
+    /**
+     * Entrées les moins récemment utilisées, pour l'éviction par taille
+     */
+    @Query("SELECT e FROM RenderedPdfCacheEntry e ORDER BY e.lastAccess ASC")
+    List<RenderedPdfCacheEntry> findLeastRecentlyUsed(Pageable pageable);
+}
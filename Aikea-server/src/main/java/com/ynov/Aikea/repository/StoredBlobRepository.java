@@ -0,0 +1,53 @@
+package com.ynov.Aikea.repository;
+
+import com.ynov.Aikea.entity.StoredBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+
+    /**
+     * Crée le blob avec une référence, ou ajoute une référence s'il existe déjà (atomique côté MySQL)
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO blobs (sha256, size, mime_type, path, ref_count, created_at, last_access) " +
+            "VALUES (:sha256, :size, :mimeType, :path, 1, :now, :now) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, last_access = :now", nativeQuery = true)
+    int acquire(@Param("sha256") String sha256, @Param("size") long size, @Param("mimeType") String mimeType,
+                @Param("path") String path, @Param("now") LocalDateTime now);
+
+    /**
+     * Ajoute une référence à un blob existant
+     * @return 0 si le blob n'existe pas (ou plus)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount + 1, b.lastAccess = :now " +
+            "WHERE b.sha256 = :sha256 AND b.refCount > 0")
+    int retain(@Param("sha256") String sha256, @Param("now") LocalDateTime now);
+
+    /**
+     * Retire une référence
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount - 1 WHERE b.sha256 = :sha256 AND b.refCount > 0")
+    int release(@Param("sha256") String sha256);
+
+    /**
+     * Supprime le blob s'il n'est plus référencé
+     * @return 1 si la ligne a été supprimée (le fichier peut alors être effacé)
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StoredBlob b WHERE b.sha256 = :sha256 AND b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("sha256") String sha256);
+}
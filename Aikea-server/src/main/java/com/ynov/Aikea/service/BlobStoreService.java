@@ -0,0 +1,188 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.IngestedFile;
+import com.ynov.Aikea.repository.StoredBlobRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.regex.Pattern;
+
+/**
+ * Stockage adressé par contenu : chaque fichier est rangé sous son empreinte SHA-256
+ * (blobs/ab/cd/abcd…, deux niveaux de répertoires pour ne pas en avoir des milliers dans un seul).
+ * Un contenu déjà présent n'est pas réécrit, on ajoute seulement une référence ;
+ * le fichier est supprimé quand plus aucun upload ne le référence.
+ * Les autres noms du même contenu (nom dérivé du prompt, PDF) sont des liens physiques.
+ * Les fichiers dérivés d'un blob (miniatures) sont rangés à côté de lui, sous "empreinte.suffixe".
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BlobStoreService {
+
+    // Verrous par empreinte (répartis sur un nombre fixe d'objets) : ajout et libération d'un même blob
+    // ne doivent pas s'entrelacer entre la ligne en base et le fichier
+    private static final int LOCK_STRIPES = 64;
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    private final StoredBlobRepository blobRepository;
+    private final MeterRegistry meterRegistry;
+
+    // Sur le même système de fichiers que le répertoire d'ingestion, pour que l'ajout soit un simple renommage
+    @Value("${app.blobs.directory:${app.upload.directory:uploads}/blobs}")
+    private String blobDirectory;
+
+    private final Object[] locks = createLocks();
+
+    private static Object[] createLocks() {
+        Object[] locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
+
+    /**
+     * Ajoute un fichier ingéré au stockage et prend une référence dessus.
+     * Si le contenu existe déjà, le fichier temporaire est simplement supprimé.
+     * @param file Le fichier écrit par UploadService.ingest (déplacé ou supprimé par cet appel)
+     * @param mimeType Type MIME, conservé pour information
+     * @return Le chemin du blob
+     */
+    public Path store(IngestedFile file, String mimeType) throws IOException {
+        String sha256 = file.sha256();
+        Path target = pathFor(sha256);
+        synchronized (lockFor(sha256)) {
+            blobRepository.acquire(sha256, file.size(), mimeType, target.toString(), LocalDateTime.now());
+            try {
+                if (Files.exists(target)) {
+                    Files.deleteIfExists(file.path());
+                    countWrite("deduplicated");
+                } else {
+                    Files.createDirectories(target.getParent());
+                    Files.move(file.path(), target, StandardCopyOption.ATOMIC_MOVE);
+                    countWrite("written");
+                }
+            } catch (IOException e) {
+                blobRepository.release(sha256);
+                throw e;
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Prend une référence supplémentaire sur un blob déjà stocké (cache, second propriétaire)
+     * @return false si le blob n'existe plus : aucune référence n'a été prise
+     */
+    public boolean retain(String sha256) {
+        synchronized (lockFor(sha256)) {
+            if (blobRepository.retain(sha256, LocalDateTime.now()) == 0) {
+                return false;
+            }
+            if (Files.exists(pathFor(sha256))) {
+                return true;
+            }
+            // Ligne sans fichier (suppression manuelle) : la référence prise est rendue
+            blobRepository.release(sha256);
+            return false;
+        }
+    }
+
+    /**
+     * Retire une référence ; le fichier est supprimé à la dernière
+     * @param sha256 L'empreinte du blob
+     */
+    public void release(String sha256) throws IOException {
+        synchronized (lockFor(sha256)) {
+            blobRepository.release(sha256);
+            if (blobRepository.deleteIfUnreferenced(sha256) > 0) {
+                Files.deleteIfExists(pathFor(sha256));
+                deleteDerivatives(sha256);
+                countWrite("deleted");
+                log.info("Blob {} deleted (no more references)", sha256);
+            }
+        }
+    }
+
+    /**
+     * Donne un second nom à un blob sans recopier le contenu : lien physique,
+     * ou copie si le système de fichiers ne les prend pas en charge (alias sur un autre volume).
+     * L'alias ne doit jamais être modifié en place : il partage ses données avec le blob.
+     * @param blob Le chemin du blob
+     * @param alias Le nom à créer (remplacé s'il existe)
+     */
+    public void linkAlias(Path blob, Path alias) throws IOException {
+        Files.createDirectories(alias.toAbsolutePath().getParent());
+        Files.deleteIfExists(alias);
+        try {
+            Files.createLink(alias, blob);
+            countAlias("link");
+        } catch (UnsupportedOperationException | IOException e) {
+            log.debug("Hard link {} -> {} not possible, copying: {}", alias, blob, e.getMessage());
+            Files.copy(blob, alias, StandardCopyOption.REPLACE_EXISTING);
+            countAlias("copy");
+        }
+    }
+
+    public Path pathFor(String sha256) {
+        return Paths.get(blobDirectory, sha256.substring(0, 2), sha256.substring(2, 4), sha256);
+    }
+
+    /**
+     * @param suffix Identifie le dérivé (variante et réglages), par exemple "thumbnail-256-q82.jpg"
+     * @return Le chemin d'un fichier dérivé du blob, dans le même répertoire
+     */
+    public Path derivativePathFor(String sha256, String suffix) {
+        return pathFor(sha256).resolveSibling(sha256 + "." + suffix);
+    }
+
+    /**
+     * @return L'empreinte si le chemin est un blob de ce stockage, null sinon (fichier antérieur au stockage par contenu)
+     */
+    public String hashOf(Path path) {
+        String name = path.getFileName().toString();
+        if (!SHA256_HEX.matcher(name).matches()) {
+            return null;
+        }
+        return pathFor(name).toAbsolutePath().normalize().equals(path.toAbsolutePath().normalize()) ? name : null;
+    }
+
+    public static boolean isValidHash(String sha256) {
+        return sha256 != null && SHA256_HEX.matcher(sha256).matches();
+    }
+
+    private void deleteDerivatives(String sha256) throws IOException {
+        Path directory = pathFor(sha256).getParent();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> derivatives = Files.newDirectoryStream(directory, sha256 + ".*")) {
+            for (Path derivative : derivatives) {
+                Files.deleteIfExists(derivative);
+            }
+        }
+    }
+
+    private Object lockFor(String sha256) {
+        return locks[Math.floorMod(sha256.hashCode(), LOCK_STRIPES)];
+    }
+
+    private void countWrite(String outcome) {
+        meterRegistry.counter("aikea.blobs.operations", "outcome", outcome).increment();
+    }
+
+    private void countAlias(String kind) {
+        meterRegistry.counter("aikea.blobs.aliases", "kind", kind).increment();
+    }
+}
@@ -0,0 +1,230 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.HashUtils;
+import com.ynov.Aikea.atools.LruCache;
+import com.ynov.Aikea.entity.ChatCompletionCacheEntry;
+import com.ynov.Aikea.repository.ChatCompletionCacheRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Cache des réponses chat à température 0.
+ * Deux niveaux : un LRU en mémoire puis la table chat_completion_cache (MySQL),
+ * avec durée de vie et éviction par taille sur les deux niveaux.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatCompletionCacheService {
+
+    private final ChatCompletionCacheRepository cacheRepository;
+    private final MeterRegistry meterRegistry;
+    @Qualifier("generationExecutor")
+    private final Executor generationExecutor;
+
+    @Value("${app.openai.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.openai.cache.ttl-hours:168}")
+    private long ttlHours;
+
+    @Value("${app.openai.cache.memory.max-entries:1000}")
+    private int memoryMaxEntries;
+
+    @Value("${app.openai.cache.persistent.enabled:true}")
+    private boolean persistentEnabled;
+
+    @Value("${app.openai.cache.persistent.max-entries:50000}")
+    private long persistentMaxEntries;
+
+    private LruCache<String, CachedCompletion> memoryCache;
+
+    private record CachedCompletion(String text, Instant expiresAt) {
+        boolean isExpired() {
+            return expiresAt.isBefore(Instant.now());
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        memoryCache = new LruCache<>(memoryMaxEntries);
+        Gauge.builder("aikea.openai.cache.memory.size", memoryCache, LruCache::size)
+                .description("Nombre de réponses chat gardées en mémoire")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Calcule la clé de cache d'une requête chat
+     * @param model Le modèle appelé
+     * @param maxCompletionTokens La limite de tokens de la réponse
+     * @param parts Le contexte, le prompt et la référence de l'image éventuelle
+     * @return L'empreinte SHA-256 de la requête complète
+     */
+    public static String key(String model, int maxCompletionTokens, String... parts) {
+        String[] all = new String[parts.length + 2];
+        all[0] = model;
+        all[1] = String.valueOf(maxCompletionTokens);
+        System.arraycopy(parts, 0, all, 2, parts.length);
+        return HashUtils.sha256Hex(all);
+    }
+
+    /**
+     * Renvoie la réponse en cache ou appelle le loader puis mémorise son résultat.
+     * Une erreur du cache n'empêche jamais l'appel réel.
+     * @param cacheKey La clé calculée avec {@link #key}
+     * @param model Le modèle, conservé pour l'observabilité
+     * @param loader L'appel OpenAI réel
+     * @return Le texte généré
+     */
+    public CompletableFuture<String> getOrCompute(String cacheKey, String model,
+                                                  Supplier<CompletableFuture<String>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        CachedCompletion cached = memoryCache.get(cacheKey);
+        if (cached != null && !cached.isExpired()) {
+            countLookup("memory", "hit");
+            return CompletableFuture.completedFuture(cached.text());
+        }
+        if (cached != null) {
+            memoryCache.remove(cacheKey);
+        }
+        countLookup("memory", "miss");
+
+        if (!persistentEnabled) {
+            return loadAndStore(cacheKey, model, loader);
+        }
+
+        return CompletableFuture.supplyAsync(() -> findPersistent(cacheKey), generationExecutor)
+                .thenCompose(found -> found != null
+                        ? CompletableFuture.completedFuture(found)
+                        : loadAndStore(cacheKey, model, loader));
+    }
+
+    private String findPersistent(String cacheKey) {
+        try {
+            ChatCompletionCacheEntry entry = cacheRepository.findById(cacheKey).orElse(null);
+            if (entry == null || entry.isExpired()) {
+                countLookup("persistent", "miss");
+                return null;
+            }
+
+            entry.setLastAccess(LocalDateTime.now());
+            entry.setHitCount(entry.getHitCount() + 1);
+            cacheRepository.save(entry);
+
+            memoryCache.put(cacheKey, new CachedCompletion(entry.getResponse(), expiresAt(entry)));
+            countLookup("persistent", "hit");
+            return entry.getResponse();
+        } catch (Exception e) {
+            log.warn("Chat completion cache lookup failed, calling OpenAI: {}", e.getMessage());
+            countLookup("persistent", "error");
+            return null;
+        }
+    }
+
+    /**
+     * Mode dégradé : réponse du cache persistant même expirée (tant que la purge ne l'a pas supprimée)
+     * @return Le texte, ou null si aucune entrée n'existe
+     */
+    public CompletableFuture<String> findStaleAsync(String cacheKey) {
+        if (!enabled || !persistentEnabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return cacheRepository.findById(cacheKey).map(ChatCompletionCacheEntry::getResponse).orElse(null);
+            } catch (Exception e) {
+                log.warn("Stale chat completion lookup failed: {}", e.getMessage());
+                return null;
+            }
+        }, generationExecutor);
+    }
+
+    private CompletableFuture<String> loadAndStore(String cacheKey, String model,
+                                                   Supplier<CompletableFuture<String>> loader) {
+        return loader.get().thenApply(text -> {
+            if (text != null && !text.isBlank()) {
+                store(cacheKey, model, text);
+            }
+            return text;
+        });
+    }
+
+    private void store(String cacheKey, String model, String text) {
+        Instant expiresAt = Instant.now().plus(Duration.ofHours(ttlHours));
+        memoryCache.put(cacheKey, new CachedCompletion(text, expiresAt));
+
+        if (!persistentEnabled) {
+            return;
+        }
+        CompletableFuture.runAsync(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            cacheRepository.save(ChatCompletionCacheEntry.builder()
+                    .cacheKey(cacheKey)
+                    .model(model)
+                    .response(text)
+                    .createdAt(now)
+                    .lastAccess(now)
+                    .expiresAt(now.plusHours(ttlHours))
+                    .build());
+        }, generationExecutor).exceptionally(e -> {
+            log.warn("Failed to persist chat completion cache entry: {}", e.getMessage());
+            return null;
+        });
+    }
+
+    private Instant expiresAt(ChatCompletionCacheEntry entry) {
+        return entry.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private void countLookup(String tier, String result) {
+        meterRegistry.counter("aikea.openai.cache.requests", "tier", tier, "result", result).increment();
+    }
+
+    /**
+     * Purge périodique : entrées expirées puis éviction LRU au-delà de la taille maximale
+     */
+    @Scheduled(fixedDelayString = "${app.openai.cache.purge-interval-ms:600000}")
+    public void purgePersistentCache() {
+        if (!enabled || !persistentEnabled) {
+            return;
+        }
+        try {
+            int expired = cacheRepository.deleteExpired(LocalDateTime.now());
+            long excess = cacheRepository.count() - persistentMaxEntries;
+            int evicted = 0;
+            if (excess > 0) {
+                List<String> keys = cacheRepository.findLeastRecentlyUsedKeys(
+                        PageRequest.of(0, (int) Math.min(excess, Integer.MAX_VALUE)));
+                cacheRepository.deleteAllById(keys);
+                evicted = keys.size();
+            }
+            if (expired > 0 || evicted > 0) {
+                log.info("Chat completion cache purge: {} expired, {} evicted", expired, evicted);
+            }
+            meterRegistry.counter("aikea.openai.cache.evictions", "reason", "expired").increment(expired);
+            meterRegistry.counter("aikea.openai.cache.evictions", "reason", "size").increment(evicted);
+        } catch (Exception e) {
+            log.warn("Chat completion cache purge failed: {}", e.getMessage());
+        }
+    }
+}
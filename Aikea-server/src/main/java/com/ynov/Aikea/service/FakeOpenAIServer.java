@@ -0,0 +1,348 @@
+package com.ynov.Aikea.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Faux serveur OpenAI sur localhost, activé avec app.openai.provider=fake.
+ * Il imite /v1/images/generations et /v1/chat/completions (streaming compris) avec
+ * des PNG et des textes prédéfinis, une latence tirée selon une loi log-normale
+ * et des 429 / timeouts injectés, pour tester en charge sans consommer de crédits.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.openai.provider", havingValue = "fake")
+public class FakeOpenAIServer {
+
+    private static final List<String> CANNED_TEXTS = List.of(
+            "Ce salon lumineux profite d'une grande baie vitrée et d'un parquet en chêne clair. "
+                    + "Le canapé d'angle gris fait face à une table basse en bois. "
+                    + "Meubles similaires : canapé KIVIK, table basse LISTERBY, lampadaire HEKTAR.",
+            "Cette chambre cosy offre un lit double habillé de lin et deux tables de chevet assorties. "
+                    + "Les murs blancs et le tapis berbère apportent douceur et chaleur. "
+                    + "Meubles similaires : lit MALM, chevets HEMNES, tapis STOENSE.",
+            "Cuisine moderne entièrement équipée, avec îlot central et plan de travail effet marbre. "
+                    + "Les façades mates et l'éclairage intégré soulignent les volumes. "
+                    + "Meubles similaires : cuisine METOD, tabourets INGOLF, suspension SKURUP.");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, byte[]> pngBySize = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Value("${app.openai.fake.port:0}")
+    private int port;
+
+    @Value("${app.openai.fake.images.latency-median-ms:8000}")
+    private long imagesLatencyMedianMs;
+
+    @Value("${app.openai.fake.chat.latency-median-ms:1500}")
+    private long chatLatencyMedianMs;
+
+    // Dispersion de la loi log-normale : 0 = latence fixe, 0.5 donne un p99 d'environ 3x la médiane
+    @Value("${app.openai.fake.latency-sigma:0.5}")
+    private double latencySigma;
+
+    @Value("${app.openai.fake.chat.token-delay-ms:20}")
+    private long tokenDelayMs;
+
+    @Value("${app.openai.fake.rate-limit-ratio:0.0}")
+    private double rateLimitRatio;
+
+    @Value("${app.openai.fake.timeout-ratio:0.0}")
+    private double timeoutRatio;
+
+    // Durée pendant laquelle une requête "timeout" reste sans réponse avant d'être coupée
+    @Value("${app.openai.fake.timeout-hang-ms:300000}")
+    private long timeoutHangMs;
+
+    private HttpServer server;
+    private ExecutorService requestExecutor;
+    private ScheduledExecutorService responseScheduler;
+
+    @PostConstruct
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        requestExecutor = Executors.newFixedThreadPool(4, daemon("fake-openai-http"));
+        // Les réponses sont programmées, pas attendues : la latence simulée n'occupe aucun thread
+        responseScheduler = Executors.newScheduledThreadPool(4, daemon("fake-openai-response"));
+        server.setExecutor(requestExecutor);
+        server.createContext("/v1/images/generations", this::handleImages);
+        server.createContext("/v1/chat/completions", this::handleChat);
+        server.createContext("/files/", this::handleFile);
+        server.start();
+        log.info("Fake OpenAI server listening on {}", baseUrl());
+    }
+
+    @PreDestroy
+    public void stop() {
+        server.stop(0);
+        responseScheduler.shutdownNow();
+        requestExecutor.shutdownNow();
+    }
+
+    public String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    private void handleImages(HttpExchange exchange) throws IOException {
+        JsonNode request = readBody(exchange);
+        String size = request.path("size").asText("1024x1024");
+        if (injectFailure(exchange)) {
+            return;
+        }
+
+        byte[] png = cannedPng(size);
+        Map<String, Object> image = new LinkedHashMap<>();
+        if ("b64_json".equals(request.path("response_format").asText("url"))) {
+            image.put("b64_json", Base64.getEncoder().encodeToString(png));
+        } else {
+            image.put("url", baseUrl() + "/files/" + size + ".png");
+        }
+        image.put("revised_prompt", request.path("prompt").asText());
+        Map<String, Object> response = Map.of(
+                "created", System.currentTimeMillis() / 1000,
+                "data", List.of(image));
+
+        responseScheduler.schedule(() -> sendJson(exchange, 200, response),
+                sampleLatencyMs(imagesLatencyMedianMs), TimeUnit.MILLISECONDS);
+    }
+
+    private void handleChat(HttpExchange exchange) throws IOException {
+        JsonNode request = readBody(exchange);
+        if (injectFailure(exchange)) {
+            return;
+        }
+
+        String model = request.path("model").asText("gpt-4o-mini");
+        String text = CANNED_TEXTS.get(Math.floorMod(request.path("messages").toString().hashCode(), CANNED_TEXTS.size()));
+        long latencyMs = sampleLatencyMs(chatLatencyMedianMs);
+
+        if (request.path("stream").asBoolean(false)) {
+            Map<String, Object> usage = request.path("stream_options").path("include_usage").asBoolean(false)
+                    ? usage(request, text)
+                    : null;
+            responseScheduler.schedule(() -> startStream(exchange, model, text, usage), latencyMs, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("id", "chatcmpl-fake-" + sequence.incrementAndGet());
+        response.put("object", "chat.completion");
+        response.put("created", System.currentTimeMillis() / 1000);
+        response.put("model", model);
+        response.put("choices", List.of(Map.of(
+                "index", 0,
+                "message", Map.of("role", "assistant", "content", text),
+                "finish_reason", "stop")));
+        response.put("usage", usage(request, text));
+
+        responseScheduler.schedule(() -> sendJson(exchange, 200, response), latencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Estimation grossière (4 caractères par jeton), suffisante pour alimenter les métriques de coût
+    private Map<String, Object> usage(JsonNode request, String text) {
+        int promptTokens = request.path("messages").toString().length() / 4;
+        int completionTokens = text.length() / 4;
+        return Map.of(
+                "prompt_tokens", promptTokens,
+                "completion_tokens", completionTokens,
+                "total_tokens", promptTokens + completionTokens);
+    }
+
+    /**
+     * @param usage Envoyé dans un dernier morceau sans choices, comme l'API avec stream_options.include_usage (null sinon)
+     */
+    private void startStream(HttpExchange exchange, String model, String text, Map<String, Object> usage) {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            addRateLimitHeaders(exchange);
+            exchange.sendResponseHeaders(200, 0);
+        } catch (IOException e) {
+            exchange.close();
+            return;
+        }
+        String id = "chatcmpl-fake-" + sequence.incrementAndGet();
+        // Découpe en mots, espaces conservés, comme les morceaux renvoyés par l'API
+        String[] tokens = text.split("(?<= )");
+        streamToken(exchange, id, model, tokens, usage, 0);
+    }
+
+    private void streamToken(HttpExchange exchange, String id, String model, String[] tokens,
+                             Map<String, Object> usage, int index) {
+        try {
+            OutputStream body = exchange.getResponseBody();
+            if (index < tokens.length) {
+                Map<String, Object> chunk = Map.of(
+                        "id", id,
+                        "object", "chat.completion.chunk",
+                        "created", System.currentTimeMillis() / 1000,
+                        "model", model,
+                        "choices", List.of(Map.of("index", 0, "delta", Map.of("content", tokens[index]))));
+                body.write(("data: " + objectMapper.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+                body.flush();
+                responseScheduler.schedule(() -> streamToken(exchange, id, model, tokens, usage, index + 1),
+                        tokenDelayMs, TimeUnit.MILLISECONDS);
+            } else {
+                if (usage != null) {
+                    Map<String, Object> chunk = Map.of(
+                            "id", id,
+                            "object", "chat.completion.chunk",
+                            "created", System.currentTimeMillis() / 1000,
+                            "model", model,
+                            "choices", List.of(),
+                            "usage", usage);
+                    body.write(("data: " + objectMapper.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+                }
+                body.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+                exchange.close();
+            }
+        } catch (IOException e) {
+            exchange.close();
+        }
+    }
+
+    private void handleFile(HttpExchange exchange) throws IOException {
+        String name = exchange.getRequestURI().getPath().substring("/files/".length());
+        byte[] png = cannedPng(name.replace(".png", ""));
+        exchange.getResponseHeaders().set("Content-Type", "image/png");
+        exchange.sendResponseHeaders(200, png.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(png);
+        }
+    }
+
+    // true si la requête a reçu une erreur simulée (429) ou restera sans réponse (timeout)
+    private boolean injectFailure(HttpExchange exchange) {
+        double draw = ThreadLocalRandom.current().nextDouble();
+        if (draw < rateLimitRatio) {
+            exchange.getResponseHeaders().set("retry-after", "1");
+            exchange.getResponseHeaders().set("x-ratelimit-remaining-requests", "0");
+            exchange.getResponseHeaders().set("x-ratelimit-reset-requests", "1s");
+            sendJson(exchange, 429, Map.of("error", Map.of(
+                    "message", "Rate limit reached for requests (fake provider)",
+                    "type", "requests",
+                    "code", "rate_limit_exceeded")));
+            return true;
+        }
+        if (draw < rateLimitRatio + timeoutRatio) {
+            responseScheduler.schedule(exchange::close, timeoutHangMs, TimeUnit.MILLISECONDS);
+            return true;
+        }
+        return false;
+    }
+
+    private long sampleLatencyMs(long medianMs) {
+        if (medianMs <= 0) {
+            return 0;
+        }
+        double gaussian = ThreadLocalRandom.current().nextGaussian();
+        return Math.round(medianMs * Math.exp(latencySigma * gaussian));
+    }
+
+    private JsonNode readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            return objectMapper.readTree(body);
+        }
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object payload) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(payload);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            if (status == 200) {
+                addRateLimitHeaders(exchange);
+            }
+            exchange.sendResponseHeaders(status, json.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(json);
+            }
+        } catch (IOException e) {
+            exchange.close();
+        }
+    }
+
+    private void addRateLimitHeaders(HttpExchange exchange) {
+        exchange.getResponseHeaders().set("x-ratelimit-remaining-requests", "1000");
+        exchange.getResponseHeaders().set("x-ratelimit-reset-requests", "60ms");
+    }
+
+    // Un PNG par taille, rendu une seule fois
+    private byte[] cannedPng(String size) {
+        return pngBySize.computeIfAbsent(size, key -> {
+            String[] dimensions = key.split("x");
+            int width = parseDimension(dimensions, 0);
+            int height = parseDimension(dimensions, 1);
+
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = image.createGraphics();
+            try {
+                graphics.setPaint(new GradientPaint(0, 0, new Color(0x0058A3), width, height, new Color(0xFFDB00)));
+                graphics.fillRect(0, 0, width, height);
+                graphics.setColor(Color.WHITE);
+                graphics.setFont(new Font(Font.SANS_SERIF, Font.BOLD, Math.max(12, width / 16)));
+                graphics.drawString("AIKEA fake " + key, width / 10, height / 2);
+            } finally {
+                graphics.dispose();
+            }
+
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            try {
+                ImageIO.write(image, "png", png);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return png.toByteArray();
+        });
+    }
+
+    private static int parseDimension(String[] dimensions, int index) {
+        try {
+            return Math.min(2048, Math.max(16, Integer.parseInt(dimensions[Math.min(index, dimensions.length - 1)])));
+        } catch (NumberFormatException e) {
+            return 1024;
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
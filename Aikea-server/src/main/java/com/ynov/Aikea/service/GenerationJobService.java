@@ -0,0 +1,427 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.AsyncUtils;
+import com.ynov.Aikea.atools.Deadline;
+import com.ynov.Aikea.atools.JobStageEnum;
+import com.ynov.Aikea.atools.JobStatusEnum;
+import com.ynov.Aikea.atools.OpenAIErrorType;
+import com.ynov.Aikea.atools.QualityEnum;
+import com.ynov.Aikea.dto.GeneratedImageDTO;
+import com.ynov.Aikea.dto.GeneratedTextDTO;
+import com.ynov.Aikea.dto.GenerationJobDTO;
+import com.ynov.Aikea.dto.ImageGenerationRequest;
+import com.ynov.Aikea.dto.PDFContentDTO;
+import com.ynov.Aikea.entity.GenerationJob;
+import com.ynov.Aikea.repository.GenerationJobRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Jobs de génération PDF durables : la requête HTTP ne fait qu'enregistrer le job (table generation_jobs),
+ * les workers le réclament puis enchaînent image, texte et rendu PDF en sauvegardant chaque étape.
+ * <ul>
+ *     <li>la réclamation est une mise à jour conditionnelle en base : plusieurs instances peuvent faire tourner des workers</li>
+ *     <li>un job interrompu (arrêt, plantage) est remis en file et reprend à la première étape non terminée</li>
+ *     <li>chaque sauvegarde est protégée par la version du job : un worker qui a perdu le job abandonne sans l'écraser</li>
+ *     <li>les erreurs passagères d'OpenAI (débit, circuit ouvert, timeout) remettent le job en file, dans la limite des tentatives</li>
+ * </ul>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GenerationJobService {
+
+    private final GenerationJobRepository jobRepository;
+    private final ImageGenerationService imageGenerationService;
+    private final PDFContentService pdfContentService;
+    @Qualifier("jobExecutor")
+    private final ThreadPoolTaskExecutor jobExecutor;
+    private final MeterRegistry meterRegistry;
+
+    // false sur les instances qui ne servent que l'API : les jobs sont alors traités par d'autres instances
+    @Value("${app.jobs.worker.enabled:true}")
+    private boolean workerEnabled;
+
+    @Value("${app.jobs.worker.threads:4}")
+    private int workerThreads;
+
+    @Value("${app.jobs.timeout-ms:600000}")
+    private long jobTimeoutMs;
+
+    @Value("${app.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    // Supérieur au timeout d'un job : au-delà, le worker est considéré comme perdu
+    @Value("${app.jobs.stale-after-ms:900000}")
+    private long staleAfterMs;
+
+    private final String workerId = workerName();
+    private final AtomicInteger runningJobs = new AtomicInteger();
+    private final Map<String, Set<Consumer<GenerationJobDTO>>> listeners = new ConcurrentHashMap<>();
+    // Dernier état envoyé à chaque job suivi, pour ne pas renvoyer un état inchangé lors des relectures
+    private final Map<String, String> lastNotified = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("aikea.jobs.running", runningJobs, AtomicInteger::get)
+                .description("Jobs PDF en cours sur cette instance")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Enregistre un job et le lance tout de suite si un worker local est libre
+     * @param request Le prompt et la qualité de l'image
+     * @return Le job créé (QUEUED ou déjà RUNNING)
+     */
+    public GenerationJobDTO submit(ImageGenerationRequest request) {
+        if (request.getPrompt() == null || request.getPrompt().isBlank()) {
+            throw new IllegalArgumentException("Prompt cannot be null or empty");
+        }
+        QualityEnum quality = request.getQuality() != null
+                ? QualityEnum.valueOf(request.getQuality().toUpperCase(Locale.ROOT))
+                : QualityEnum.MEDIUM;
+
+        LocalDateTime now = LocalDateTime.now();
+        GenerationJob job = jobRepository.save(GenerationJob.builder()
+                .id(UUID.randomUUID().toString())
+                .status(JobStatusEnum.QUEUED)
+                .stage(JobStageEnum.IMAGE)
+                .prompt(request.getPrompt().strip())
+                .quality(quality)
+                .reuseImage(request.getReuse())
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        meterRegistry.counter("aikea.jobs.submitted", "quality", quality.name()).increment();
+
+        if (workerEnabled) {
+            tryClaimAndRun(job.getId());
+        }
+        return find(job.getId()).orElseGet(() -> toDTO(job));
+    }
+
+    public Optional<GenerationJobDTO> find(String id) {
+        return jobRepository.findById(id).map(this::toDTO);
+    }
+
+    /**
+     * @return Le PDF d'un job terminé, vide si le job n'existe pas, n'est pas terminé ou si le fichier a disparu
+     */
+    public Optional<Path> findPdf(String id) {
+        return jobRepository.findById(id)
+                .filter(job -> job.getStatus() == JobStatusEnum.SUCCEEDED && job.getPdfPath() != null)
+                .map(job -> Paths.get(job.getPdfPath()))
+                .filter(Files::isReadable);
+    }
+
+    /**
+     * Suit l'avancement d'un job : appelé à chaque changement d'étape ou d'état,
+     * y compris quand le job tourne sur une autre instance (relu en base à chaque passage du poller)
+     * @return L'action qui arrête le suivi
+     */
+    public Runnable subscribe(String id, Consumer<GenerationJobDTO> listener) {
+        listeners.computeIfAbsent(id, key -> new CopyOnWriteArraySet<>()).add(listener);
+        return () -> listeners.computeIfPresent(id, (key, set) -> {
+            set.remove(listener);
+            if (set.isEmpty()) {
+                lastNotified.remove(id);
+                return null;
+            }
+            return set;
+        });
+    }
+
+    /**
+     * Réclame les jobs en attente dans la limite des workers libres,
+     * et remet en file les jobs dont le worker ne donne plus signe de vie
+     */
+    @Scheduled(fixedDelayString = "${app.jobs.poll-interval-ms:2000}")
+    public void pollQueue() {
+        if (!workerEnabled) {
+            return;
+        }
+        try {
+            requeueStaleJobs();
+            int capacity = workerThreads - runningJobs.get();
+            if (capacity <= 0) {
+                return;
+            }
+            for (String id : jobRepository.findQueuedIds(PageRequest.of(0, capacity))) {
+                if (!tryClaimAndRun(id)) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Generation job poll failed: {}", e.getMessage());
+        }
+    }
+
+    // Les jobs suivis peuvent tourner sur une autre instance : on relit leur état en base
+    @Scheduled(fixedDelayString = "${app.jobs.poll-interval-ms:2000}")
+    public void refreshSubscriptions() {
+        for (String id : listeners.keySet()) {
+            try {
+                jobRepository.findById(id).ifPresent(this::notifyListeners);
+            } catch (Exception e) {
+                log.warn("Generation job refresh failed for {}: {}", id, e.getMessage());
+            }
+        }
+    }
+
+    private void requeueStaleJobs() {
+        LocalDateTime staleBefore = LocalDateTime.now().minus(Duration.ofMillis(staleAfterMs));
+        for (GenerationJob job : jobRepository.findByStatusAndUpdatedAtBefore(JobStatusEnum.RUNNING, staleBefore)) {
+            log.warn("Generation job {} stalled on {} (worker {}), requeueing", job.getId(), job.getStage(), job.getWorkerId());
+            try {
+                requeueOrFail(job, "Worker " + job.getWorkerId() + " stopped responding");
+            } catch (OptimisticLockingFailureException e) {
+                // Le worker a sauvegardé entre temps, ou une autre instance l'a déjà remis en file
+                log.info("Generation job {} changed while requeueing, skipped", job.getId());
+            }
+        }
+    }
+
+    private boolean tryClaimAndRun(String id) {
+        if (runningJobs.get() >= workerThreads) {
+            return false;
+        }
+        if (jobRepository.claim(id, workerId, LocalDateTime.now()) == 0) {
+            // Réclamé par un autre worker entre temps
+            return true;
+        }
+        runningJobs.incrementAndGet();
+        try {
+            jobExecutor.execute(() -> {
+                try {
+                    process(id);
+                } finally {
+                    runningJobs.decrementAndGet();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            runningJobs.decrementAndGet();
+            jobRepository.findById(id).ifPresent(job -> {
+                job.setStatus(JobStatusEnum.QUEUED);
+                job.setAttempts(Math.max(0, job.getAttempts() - 1));
+                save(job);
+            });
+            return false;
+        }
+    }
+
+    private void process(String id) {
+        GenerationJob job = jobRepository.findById(id).orElse(null);
+        if (job == null) {
+            return;
+        }
+        notifyListeners(job);
+        Deadline.set(Deadline.after(Duration.ofMillis(jobTimeoutMs)));
+        try {
+            runStages(job);
+        } catch (OptimisticLockingFailureException e) {
+            // Job remis en file pendant le traitement (worker jugé perdu) : son nouveau propriétaire le garde
+            log.warn("Generation job {} was taken over by another worker, dropping local result", id);
+            meterRegistry.counter("aikea.jobs.lost").increment();
+        } finally {
+            Deadline.clear();
+        }
+    }
+
+    private void runStages(GenerationJob job) {
+        try {
+            GeneratedImageDTO image = runImageStage(job);
+            GeneratedTextDTO text = runTextStage(job, image);
+            runPdfStage(job, image, text);
+            meterRegistry.counter("aikea.jobs.completed", "status", JobStatusEnum.SUCCEEDED.name()).increment();
+        } catch (OptimisticLockingFailureException e) {
+            throw e;
+        } catch (Exception e) {
+            Throwable cause = AsyncUtils.unwrap(e);
+            log.warn("Generation job {} failed at stage {}: {}", job.getId(), job.getStage(), cause.getMessage());
+            if (isTransient(cause)) {
+                requeueOrFail(job, cause.getMessage());
+            } else {
+                fail(job, cause.getMessage());
+            }
+        }
+    }
+
+    // Chaque étape déjà enregistrée (reprise après une interruption) n'est pas refaite
+    private GeneratedImageDTO runImageStage(GenerationJob job) throws Exception {
+        if (job.getImagePath() != null && Files.isReadable(Paths.get(job.getImagePath()))) {
+            return GeneratedImageDTO.builder()
+                    .internalID(job.getImageId() != null ? job.getImageId() : 0)
+                    .externalID("job_" + job.getId())
+                    .storageURL(job.getImagePath())
+                    .build();
+        }
+        long startedAt = System.nanoTime();
+        GeneratedImageDTO image = AsyncUtils.await(imageGenerationService.generateAndSaveImageAsync(
+                job.getPrompt(), job.getQuality(), job.getReuseImage()));
+        recordStage(JobStageEnum.IMAGE, startedAt);
+
+        job.setImageId(image.getInternalID());
+        job.setImagePath(image.getStorageURL());
+        job.setImageCompletedAt(LocalDateTime.now());
+        job.setStage(JobStageEnum.TEXT);
+        save(job);
+        return image;
+    }
+
+    private GeneratedTextDTO runTextStage(GenerationJob job, GeneratedImageDTO image) throws Exception {
+        if (job.getGeneratedText() != null) {
+            return GeneratedTextDTO.builder().text(job.getGeneratedText()).build();
+        }
+        long startedAt = System.nanoTime();
+        GeneratedTextDTO text = AsyncUtils.await(pdfContentService.describeImageAsync(image));
+        recordStage(JobStageEnum.TEXT, startedAt);
+
+        job.setGeneratedText(text.getText());
+        job.setTextCompletedAt(LocalDateTime.now());
+        job.setStage(JobStageEnum.PDF);
+        save(job);
+        return text;
+    }
+
+    private void runPdfStage(GenerationJob job, GeneratedImageDTO image, GeneratedTextDTO text) throws Exception {
+        PDFContentDTO pdfContent = new PDFContentDTO();
+        pdfContent.setGeneratedImage(image);
+        pdfContent.setGeneratedText(text);
+
+        long startedAt = System.nanoTime();
+        // Chemin du blob et non l'alias pdf/<image>.pdf : deux jobs qui réutilisent la même image partagent l'alias
+        Path pdf = pdfContentService.storePDF(pdfContent);
+        recordStage(JobStageEnum.PDF, startedAt);
+
+        LocalDateTime now = LocalDateTime.now();
+        job.setPdfPath(pdf.toString());
+        job.setPdfSize(Files.size(pdf));
+        job.setPdfCompletedAt(now);
+        job.setCompletedAt(now);
+        job.setStage(JobStageEnum.DONE);
+        job.setStatus(JobStatusEnum.SUCCEEDED);
+        save(job);
+    }
+
+    private static boolean isTransient(Throwable error) {
+        return switch (OpenAIErrorType.classify(error)) {
+            case RATE_LIMIT, CIRCUIT_OPEN, TIMEOUT, NETWORK, SERVER -> true;
+            default -> false;
+        };
+    }
+
+    private void requeueOrFail(GenerationJob job, String reason) {
+        if (job.getAttempts() >= maxAttempts) {
+            fail(job, "Gave up after " + job.getAttempts() + " attempts: " + reason);
+            return;
+        }
+        job.setStatus(JobStatusEnum.QUEUED);
+        job.setErrorMessage(reason);
+        save(job);
+        meterRegistry.counter("aikea.jobs.requeued").increment();
+    }
+
+    private void fail(GenerationJob job, String reason) {
+        job.setStatus(JobStatusEnum.FAILED);
+        job.setErrorMessage(reason);
+        job.setCompletedAt(LocalDateTime.now());
+        save(job);
+        meterRegistry.counter("aikea.jobs.completed", "status", JobStatusEnum.FAILED.name()).increment();
+    }
+
+    /**
+     * @throws OptimisticLockingFailureException Le job a changé en base depuis sa lecture (remis en file, réclamé ailleurs)
+     */
+    private void save(GenerationJob job) {
+        job.setUpdatedAt(LocalDateTime.now());
+        GenerationJob saved = jobRepository.save(job);
+        // save() renvoie une autre instance : la version est reportée pour que l'étape suivante puisse sauvegarder
+        job.setVersion(saved.getVersion());
+        notifyListeners(saved);
+    }
+
+    private void recordStage(JobStageEnum stage, long startedAt) {
+        Timer.builder("aikea.jobs.stage.duration")
+                .tag("stage", stage.name())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(Duration.ofNanos(System.nanoTime() - startedAt));
+    }
+
+    private void notifyListeners(GenerationJob job) {
+        Set<Consumer<GenerationJobDTO>> subscribers = listeners.get(job.getId());
+        String state = job.getStatus() + ":" + job.getStage() + ":" + job.getAttempts();
+        if (subscribers == null || state.equals(lastNotified.put(job.getId(), state))) {
+            return;
+        }
+        GenerationJobDTO dto = toDTO(job);
+        for (Consumer<GenerationJobDTO> subscriber : subscribers) {
+            try {
+                subscriber.accept(dto);
+            } catch (RuntimeException e) {
+                // Client SSE déconnecté
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    private GenerationJobDTO toDTO(GenerationJob job) {
+        return GenerationJobDTO.builder()
+                .id(job.getId())
+                .status(job.getStatus())
+                .stage(job.getStage())
+                .quality(job.getQuality())
+                .attempts(job.getAttempts())
+                .imageId(job.getImageId())
+                .text(job.getGeneratedText())
+                .pdfSize(job.getPdfSize())
+                .pdfUrl(job.getStatus() == JobStatusEnum.SUCCEEDED ? "/generate-pdf/jobs/" + job.getId() + "/pdf" : null)
+                .error(job.getErrorMessage())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .imageCompletedAt(job.getImageCompletedAt())
+                .textCompletedAt(job.getTextCompletedAt())
+                .pdfCompletedAt(job.getPdfCompletedAt())
+                .completedAt(job.getCompletedAt())
+                .build();
+    }
+
+    private static String workerName() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
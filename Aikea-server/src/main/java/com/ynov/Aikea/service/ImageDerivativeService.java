@@ -0,0 +1,167 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.AsyncUtils;
+import com.ynov.Aikea.atools.ImageResizing;
+import com.ynov.Aikea.atools.ImageVariantEnum;
+import com.ynov.Aikea.atools.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Variantes réduites des images du stockage par contenu (miniature, aperçu), ré-encodées en JPEG
+ * et rangées à côté du blob d'origine. Une variante est produite une seule fois (à la génération de l'image,
+ * ou au premier appel) puis servie telle quelle : son contenu ne dépend que du blob et des réglages,
+ * qui forment aussi son ETag.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageDerivativeService {
+
+    private final BlobStoreService blobStoreService;
+    private final MeterRegistry meterRegistry;
+    @Qualifier("generationExecutor")
+    private final Executor generationExecutor;
+
+    @Value("${app.image.variants.thumbnail.max-dimension:256}")
+    private int thumbnailMaxDimension;
+
+    @Value("${app.image.variants.preview.max-dimension:768}")
+    private int previewMaxDimension;
+
+    @Value("${app.image.variants.jpeg-quality:0.82}")
+    private float jpegQuality;
+
+    // Produit miniature et aperçu dès la génération, pour que le premier affichage n'attende pas l'encodage
+    @Value("${app.image.variants.eager:true}")
+    private boolean eager;
+
+    // Deux requêtes simultanées sur la même variante n'encodent l'image qu'une fois
+    private final SingleFlight<String, Path> inFlightRenders = new SingleFlight<>();
+
+    /**
+     * Variante prête à être servie
+     * @param path Le fichier
+     * @param eTag ETag fort (entre guillemets) : empreinte du blob et réglages de la variante
+     * @param contentType Type MIME du fichier
+     */
+    public record ImageVariant(Path path, String eTag, String contentType) {
+    }
+
+    /**
+     * Calculable sans lire l'image : permet de répondre 304 avant toute génération
+     */
+    public String eTag(String sha256, ImageVariantEnum variant) {
+        return "\"" + sha256 + (variant == ImageVariantEnum.FULL ? "" : "-" + variantKey(variant)) + "\"";
+    }
+
+    /**
+     * @param sha256 L'empreinte du blob d'origine
+     * @return La variante, produite si besoin hors du thread appelant ; null si le blob n'existe pas
+     * ou n'est pas une image (échec IllegalArgumentException si son format n'est pas décodable)
+     */
+    public CompletableFuture<ImageVariant> resolveAsync(String sha256, ImageVariantEnum variant) {
+        Path original = blobStoreService.pathFor(sha256);
+        if (!Files.isReadable(original)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (variant == ImageVariantEnum.FULL) {
+            String contentType = guessContentType(original);
+            return CompletableFuture.completedFuture(contentType != null && contentType.startsWith("image/")
+                    ? new ImageVariant(original, eTag(sha256, variant), contentType)
+                    : null);
+        }
+
+        Path target = blobStoreService.derivativePathFor(sha256, variantKey(variant) + ".jpg");
+        ImageVariant resolved = new ImageVariant(target, eTag(sha256, variant), "image/jpeg");
+        if (Files.isReadable(target)) {
+            meterRegistry.counter("aikea.image.variants.requests", "variant", variant.name(), "result", "hit").increment();
+            return CompletableFuture.completedFuture(resolved);
+        }
+
+        meterRegistry.counter("aikea.image.variants.requests", "variant", variant.name(), "result", "miss").increment();
+        return inFlightRenders.execute(target.toString(), () -> CompletableFuture.supplyAsync(() -> {
+            render(original, target, maxDimension(variant));
+            return target;
+        }, generationExecutor)).thenApply(path -> resolved);
+    }
+
+    /**
+     * Production anticipée des variantes réduites, après l'enregistrement d'une image.
+     * Un échec n'a pas d'effet sur la génération : la variante sera produite au premier appel.
+     */
+    public void generateEagerly(String sha256) {
+        if (!eager || sha256 == null) {
+            return;
+        }
+        for (ImageVariantEnum variant : ImageVariantEnum.values()) {
+            if (variant != ImageVariantEnum.FULL) {
+                resolveAsync(sha256, variant).exceptionally(e -> {
+                    log.warn("Eager {} rendering failed for blob {}: {}",
+                            variant, sha256, AsyncUtils.unwrap(e).getMessage());
+                    return null;
+                });
+            }
+        }
+    }
+
+    // Écrit dans un fichier temporaire puis renomme : un lecteur ne voit jamais de variante partielle
+    private void render(Path original, Path target, int maxDimension) {
+        long start = System.nanoTime();
+        try {
+            BufferedImage source = ImageIO.read(original.toFile());
+            if (source == null) {
+                throw new IllegalArgumentException("Unsupported image format");
+            }
+            Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream output = Files.newOutputStream(temp)) {
+                    ImageResizing.writeJpeg(ImageResizing.downscale(source, maxDimension), output, jpegQuality);
+                }
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot render image variant " + target, e);
+        }
+        meterRegistry.timer("aikea.image.variants.render.time").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // Les blobs n'ont pas d'extension : le type est lu dans l'en-tête du fichier
+    private String guessContentType(Path path) {
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(path))) {
+            return URLConnection.guessContentTypeFromStream(input);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Change avec les réglages : une nouvelle taille ou qualité produit un nouveau fichier et un nouvel ETag
+    private String variantKey(ImageVariantEnum variant) {
+        return variant.name().toLowerCase() + "-" + maxDimension(variant) + "-q" + Math.round(jpegQuality * 100);
+    }
+
+    private int maxDimension(ImageVariantEnum variant) {
+        return variant == ImageVariantEnum.THUMBNAIL ? thumbnailMaxDimension : previewMaxDimension;
+    }
+}
@@ -0,0 +1,213 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.AsyncUtils;
+import com.ynov.Aikea.atools.BoundedFanOut;
+import com.ynov.Aikea.atools.IngestedFile;
+import com.ynov.Aikea.atools.LimitedBodySubscriber;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Téléchargement d'images sur le client HTTP partagé, écrit en flux sur le disque,
+ * avec mesures par hôte (durée, octets, issue) et téléchargement parallèle borné pour les lots.
+ */
+@Service
+@RequiredArgsConstructor
+public class ImageDownloadService {
+
+    @Qualifier("downloadHttpClient")
+    private final HttpClient downloadHttpClient;
+    private final UploadService uploadService;
+    private final MeterRegistry meterRegistry;
+    // La lecture du corps est bloquante : jamais sur les threads du client HTTP, qui alimentent ce même flux
+    @Qualifier("generationExecutor")
+    private final Executor generationExecutor;
+
+    // Jusqu'à la réception des en-têtes seulement (HttpRequest.timeout)
+    @Value("${app.download.request-timeout-ms:60000}")
+    private long requestTimeoutMs;
+
+    // Lecture complète du corps : sans cette borne, un serveur qui cesse d'envoyer bloque le thread indéfiniment
+    @Value("${app.download.body-timeout-ms:60000}")
+    private long bodyTimeoutMs;
+
+    // Taille maximale d'un corps lu en mémoire (fetchBytesAsync) : une URL hostile ou cassée ne remplit pas le heap
+    @Value("${app.download.max-in-memory-bytes:26214400}")
+    private long maxInMemoryBytes;
+
+    // Téléchargements simultanés d'un même lot
+    @Value("${app.download.max-parallel:6}")
+    private int maxParallel;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Issue du téléchargement d'une URL d'un lot
+     * @param file Le fichier téléchargé, null en cas d'échec
+     * @param error La cause de l'échec, null en cas de succès
+     */
+    public record DownloadResult(String url, IngestedFile file, Throwable error) {
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("aikea.download.in.flight", inFlight, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Télécharge une image dans un fichier temporaire du répertoire d'upload
+     * @param url L'URL de l'image
+     * @return Le fichier, avec sa taille et son empreinte SHA-256
+     */
+    public CompletableFuture<IngestedFile> downloadAsync(String url) {
+        HttpRequest request;
+        try {
+            request = buildRequest(url);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long startedAt = begin();
+        return downloadHttpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                .thenCompose(response -> readBodyAsync(response, url))
+                .whenComplete((file, error) -> observe(request, file != null ? file.size() : 0, error, startedAt));
+    }
+
+    /**
+     * Variante en mémoire, pour les petits contenus dont l'appelant a besoin des octets.
+     * Échoue (IOException) au-delà de app.download.max-in-memory-bytes
+     */
+    public CompletableFuture<byte[]> fetchBytesAsync(String url) {
+        HttpRequest request;
+        try {
+            request = buildRequest(url);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long startedAt = begin();
+        return downloadHttpClient.sendAsync(request, LimitedBodySubscriber.ofByteArray(maxInMemoryBytes))
+                .thenApply(response -> {
+                    try {
+                        checkStatus(response);
+                    } catch (IOException e) {
+                        throw AsyncUtils.wrap(e);
+                    }
+                    return response.body();
+                })
+                .whenComplete((body, error) -> observe(request, body != null ? body.length : 0, error, startedAt));
+    }
+
+    /**
+     * Télécharge un lot d'images, au plus app.download.max-parallel à la fois.
+     * Un échec n'interrompt pas le lot : il est rapporté dans le résultat de l'URL concernée.
+     * @param urls Les URL à télécharger
+     * @return Un résultat par URL, dans l'ordre des entrées
+     */
+    public CompletableFuture<List<DownloadResult>> downloadAllAsync(List<String> urls) {
+        return BoundedFanOut.run(urls, maxParallel, (index, url) -> downloadAsync(url)
+                .handle((file, error) -> new DownloadResult(url, file, error != null ? AsyncUtils.unwrap(error) : null)));
+    }
+
+    // supplyAsync plutôt que thenApplyAsync : un refus de l'exécuteur fait échouer le future et libère la connexion
+    private CompletableFuture<IngestedFile> readBodyAsync(HttpResponse<InputStream> response, String url) {
+        try {
+            return CompletableFuture.supplyAsync(() -> readBody(response, url), generationExecutor);
+        } catch (RejectedExecutionException e) {
+            closeQuietly(response.body());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Fermer le flux depuis un autre thread débloque la lecture en cours (IOException "closed") :
+    // c'est ce que fait le minuteur si le corps n'est pas arrivé à temps
+    private IngestedFile readBody(HttpResponse<InputStream> response, String url) {
+        AtomicBoolean completed = new AtomicBoolean();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        InputStream body = response.body();
+        CompletableFuture.delayedExecutor(bodyTimeoutMs, TimeUnit.MILLISECONDS).execute(() -> {
+            if (!completed.get() && timedOut.compareAndSet(false, true)) {
+                closeQuietly(body);
+            }
+        });
+        try (body) {
+            checkStatus(response);
+            return uploadService.ingest(body);
+        } catch (IOException e) {
+            if (timedOut.get()) {
+                throw AsyncUtils.wrap(new HttpTimeoutException(
+                        "Image body not received within " + bodyTimeoutMs + " ms: " + url));
+            }
+            throw AsyncUtils.wrap(e);
+        } finally {
+            completed.set(true);
+        }
+    }
+
+    private void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException e) {
+            // Le lecteur reçoit de toute façon une erreur
+        }
+    }
+
+    private HttpRequest buildRequest(String url) {
+        if (url == null || url.isBlank()) {
+            throw new IllegalArgumentException("Image URL is null or empty");
+        }
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(requestTimeoutMs))
+                .GET()
+                .build();
+    }
+
+    private void checkStatus(HttpResponse<?> response) throws IOException {
+        if (response.statusCode() != 200) {
+            throw new IOException("Failed to download image. HTTP status: " + response.statusCode());
+        }
+    }
+
+    private long begin() {
+        inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    private void observe(HttpRequest request, long bytes, Throwable error, long startedAt) {
+        inFlight.decrementAndGet();
+        String host = request.uri().getHost() != null ? request.uri().getHost() : "unknown";
+        Timer.builder("aikea.download.time")
+                .tag("host", host)
+                .tag("outcome", error == null ? "success" : AsyncUtils.unwrap(error).getClass().getSimpleName())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        if (error == null) {
+            meterRegistry.summary("aikea.download.bytes", "host", host).record(bytes);
+        }
+    }
+}
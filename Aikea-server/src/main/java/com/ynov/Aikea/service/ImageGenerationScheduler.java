@@ -0,0 +1,115 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.LatencyWindow;
+import com.ynov.Aikea.atools.QualityEnum;
+import com.ynov.Aikea.atools.WeightedLaneScheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Files d'attente des appels DALL·E par qualité, devant le limiteur images.
+ * Les aperçus LOW (dall-e-2, quelques secondes) passent avant les rendus HD :
+ * une rafale de HIGH ne peut occuper que son plafond de créneaux et n'obtient qu'une part pondérée des créneaux libérés.
+ */
+@Service
+@RequiredArgsConstructor
+public class ImageGenerationScheduler {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.image.scheduler.enabled:true}")
+    private boolean enabled;
+
+    // Proche de la concurrence du limiteur images : au-delà, l'ordre serait perdu dans sa file FIFO
+    @Value("${app.image.scheduler.max-concurrency:8}")
+    private int maxConcurrency;
+
+    @Value("${app.image.scheduler.max-queue-size:200}")
+    private int maxQueueSize;
+
+    @Value("${app.image.scheduler.low.weight:6}")
+    private int lowWeight;
+
+    @Value("${app.image.scheduler.medium.weight:3}")
+    private int mediumWeight;
+
+    @Value("${app.image.scheduler.high.weight:1}")
+    private int highWeight;
+
+    @Value("${app.image.scheduler.low.max-concurrency:8}")
+    private int lowMaxConcurrency;
+
+    @Value("${app.image.scheduler.medium.max-concurrency:6}")
+    private int mediumMaxConcurrency;
+
+    @Value("${app.image.scheduler.high.max-concurrency:4}")
+    private int highMaxConcurrency;
+
+    // Latence récente de bout en bout (attente + appel) par qualité, lue par QualityDegradationPolicy
+    @Value("${app.image.scheduler.latency-window:50}")
+    private int latencyWindowSize;
+
+    private WeightedLaneScheduler<QualityEnum> scheduler;
+    private final Map<QualityEnum, LatencyWindow> latencies = new EnumMap<>(QualityEnum.class);
+
+    @PostConstruct
+    public void init() {
+        scheduler = new WeightedLaneScheduler<>("images", QualityEnum.class,
+                Map.of(QualityEnum.LOW, lowWeight, QualityEnum.MEDIUM, mediumWeight, QualityEnum.HIGH, highWeight),
+                Map.of(QualityEnum.LOW, lowMaxConcurrency, QualityEnum.MEDIUM, mediumMaxConcurrency,
+                        QualityEnum.HIGH, highMaxConcurrency),
+                maxConcurrency, maxQueueSize, meterRegistry);
+        for (QualityEnum quality : QualityEnum.values()) {
+            latencies.put(quality, new LatencyWindow(latencyWindowSize));
+        }
+    }
+
+    /**
+     * @param quality La qualité demandée, qui détermine la file
+     * @param call L'appel DALL·E, lancé une fois un créneau obtenu
+     */
+    public <T> CompletableFuture<T> submit(QualityEnum quality, Supplier<CompletableFuture<T>> call) {
+        QualityEnum lane = quality != null ? quality : QualityEnum.MEDIUM;
+        long submittedAt = System.nanoTime();
+        CompletableFuture<T> result = enabled ? scheduler.submit(lane, call) : call.get();
+        return result.whenComplete((value, error) -> {
+            if (error == null) {
+                latencies.get(lane).record(System.nanoTime() - submittedAt);
+            }
+        });
+    }
+
+    /**
+     * @param percentile Entre 0 et 1
+     * @param minSamples Nombre minimum de générations observées pour que la mesure soit significative
+     * @return La latence récente en millisecondes, ou -1 si la fenêtre n'a pas assez d'échantillons
+     */
+    public long recentLatencyMillis(QualityEnum quality, double percentile, int minSamples) {
+        LatencyWindow window = latencies.get(quality);
+        if (window.count() < minSamples) {
+            return -1;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(window.percentile(percentile));
+    }
+
+    public int queueDepth(QualityEnum quality) {
+        return scheduler.queueDepth(quality);
+    }
+
+    public int inFlight(QualityEnum quality) {
+        return scheduler.inFlight(quality);
+    }
+
+    public int queueDepth() {
+        return scheduler.queueDepth();
+    }
+}
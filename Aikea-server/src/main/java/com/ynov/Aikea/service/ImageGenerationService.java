@@ -1,6 +1,11 @@
 package com.ynov.Aikea.service;
 
+import com.ynov.Aikea.atools.AsyncUtils;
+import com.ynov.Aikea.atools.Base64Decoding;
+import com.ynov.Aikea.atools.IngestedFile;
+import com.ynov.Aikea.atools.OpenAIErrorType;
 import com.ynov.Aikea.atools.QualityEnum;
+import com.ynov.Aikea.atools.SingleFlight;
 import com.ynov.Aikea.dto.GeneratedImageDTO;
 import com.ynov.Aikea.entity.RecordedImage;
 import com.ynov.Aikea.entity.Upload;
@@ -9,33 +14,88 @@ import io.github.sashirestela.openai.domain.image.ImageRequest;
 import io.github.sashirestela.openai.domain.image.ImageResponseFormat;
 import io.github.sashirestela.openai.domain.image.Size;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
-import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
-import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+@Slf4j
 @Service
 @RequiredArgsConstructor
-public class ImageGenerationService {    private final OpenAICallsService openAICallsService;
+public class ImageGenerationService {
+
+    private final OpenAICallsService openAICallsService;
     private final UploadService uploadService;
+    private final BlobStoreService blobStoreService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final ImageDownloadService imageDownloadService;
     private final RecordedImagesRepository recordedImagesRepository;
+    private final ImageReuseIndex imageReuseIndex;
+    private final OpenAICircuitBreakers circuitBreakers;
+    private final ImageGenerationScheduler imageScheduler;
+    private final QualityDegradationPolicy degradationPolicy;
+    @Qualifier("generationExecutor")
+    private final Executor generationExecutor;
 
     private String basePath;
     private final ResourceLoader resourceLoader;
 
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.image.reuse.enabled:false}")
+    private boolean reuseByDefault;
+
+    // b64_json : l'image arrive dans la réponse OpenAI, sans téléchargement depuis l'URL du fournisseur.
+    // Le DTO n'a alors pas d'url et la description se fait à partir du fichier enregistré
+    @Value("${app.image.b64-json.enabled:true}")
+    private boolean b64JsonEnabled;
+
+    // Circuit OpenAI ouvert : image existante la plus proche, sinon génération LOW (dall-e-2) si son circuit est fermé
+    @Value("${app.openai.degraded.enabled:true}")
+    private boolean degradedModeEnabled;
+
+    // Image servie en qualité abaissée : la qualité demandée est générée plus tard, quand sa file le permet
+    @Value("${app.image.degradation.upgrade.enabled:true}")
+    private boolean upgradeEnabled;
+
+    @Value("${app.image.degradation.upgrade.max-pending:100}")
+    private int maxPendingUpgrades;
+
+    @Value("${app.image.degradation.upgrade.batch:2}")
+    private int upgradeBatch;
+
+    private SingleFlight<String, GeneratedImageDTO> inFlightGenerations;
+
+    private record PendingUpgrade(String key, String prompt, QualityEnum quality) {
+    }
+
+    private final Queue<PendingUpgrade> pendingUpgrades = new ConcurrentLinkedQueue<>();
+    private final Set<String> pendingUpgradeKeys = ConcurrentHashMap.newKeySet();
+
     @PostConstruct
     public void init() {
+        inFlightGenerations = new SingleFlight<>(
+                () -> meterRegistry.counter("aikea.generation.coalesced", "type", "image").increment());
+
         try {
             Resource resource = resourceLoader.getResource("classpath:static/images");
             if (resource.exists()) {
@@ -44,74 +104,335 @@ public class ImageGenerationService {    private final OpenAICallsService openAI
                 // Create a temporary directory if classpath resource doesn't exist
                 Path tempDir = Files.createTempDirectory("aikea-images");
                 this.basePath = tempDir.toAbsolutePath().toString();
-                System.out.println("Created temporary image directory: " + this.basePath);
+                log.info("Created temporary image directory: {}", this.basePath);
             }
         } catch (IOException e) {
             // Fallback to system temp directory
             try {
                 Path tempDir = Files.createTempDirectory("aikea-images");
                 this.basePath = tempDir.toAbsolutePath().toString();
-                System.out.println("Using fallback temporary image directory: " + this.basePath);
+                log.warn("Using fallback temporary image directory: {}", this.basePath);
             } catch (IOException ex) {
                 throw new RuntimeException("Failed to resolve or create image directory", ex);
             }
         }
-    }    public GeneratedImageDTO generateAndSaveImage(String prompt, QualityEnum quality) throws Exception {
+    }
+
+    public GeneratedImageDTO generateAndSaveImage(String prompt, QualityEnum quality) throws Exception {
+        return AsyncUtils.await(generateAndSaveImageAsync(prompt, quality));
+    }
+
+    public CompletableFuture<GeneratedImageDTO> generateAndSaveImageAsync(String prompt, QualityEnum quality) {
+        return generateAndSaveImageAsync(prompt, quality, null);
+    }
+
+    /**
+     * Génère une image sans bloquer le thread appelant : l'appel DALL·E reste asynchrone
+     * et les étapes bloquantes (téléchargement, base, disque) passent sur le generationExecutor
+     * @param reuse true pour renvoyer une image déjà générée avec le même prompt et la même qualité
+     *              si elle existe, null pour suivre app.image.reuse.enabled
+     */
+    public CompletableFuture<GeneratedImageDTO> generateAndSaveImageAsync(String prompt, QualityEnum quality,
+                                                                          Boolean reuse) {
         // Validate input
         if (prompt == null || prompt.trim().isEmpty()) {
-            throw new Exception("Prompt cannot be null or empty");
+            return CompletableFuture.failedFuture(new Exception("Prompt cannot be null or empty"));
         }
-        
-        if (quality == null) {
-            quality = QualityEnum.MEDIUM; // Default quality
+
+        QualityEnum effectiveQuality = quality != null ? quality : QualityEnum.MEDIUM; // Default quality
+        boolean reuseEnabled = reuse != null ? reuse : reuseByDefault;
+
+        Supplier<CompletableFuture<GeneratedImageDTO>> generation = () -> {
+            CompletableFuture<GeneratedImageDTO> image = reuseEnabled
+                    ? CompletableFuture.supplyAsync(() -> findReusableImage(prompt, effectiveQuality), generationExecutor)
+                            .thenCompose(reused -> reused != null
+                                    ? CompletableFuture.completedFuture(reused)
+                                    : generateAdaptiveAsync(prompt, effectiveQuality))
+                    : generateAdaptiveAsync(prompt, effectiveQuality);
+            return image.thenApply(generated -> {
+                generated.setRequestedQuality(effectiveQuality);
+                return generated;
+            });
+        };
+
+        // Les doublons concurrents (ex: retries de l'application mobile) partagent la même génération,
+        // mais chacun reçoit sa propre copie du DTO : les appelants le modifient (loadImageBytes, dégradation).
+        // Un prompt sans clé (ni lettre ni chiffre) n'est jamais regroupé avec un autre
+        String promptKey = ImageReuseIndex.promptKey(prompt);
+        if (promptKey == null) {
+            return generation.get();
         }
+        String requestKey = promptKey + ":" + effectiveQuality + ":" + reuseEnabled;
+        return inFlightGenerations.execute(requestKey, generation).thenApply(shared -> shared.toBuilder().build());
+    }
 
-        System.out.println("Starting image generation process for prompt: " + prompt);
-        
-        try {
-            // Obtenir l'image de DALL-E sous forme de tableau d'octets
-            String imageUrl = getImageUrlFromDalle(prompt, quality);
-            byte[] content = getImageFromUrl(imageUrl);
+    // Sous forte charge (QualityDegradationPolicy), génère une qualité inférieure et planifie la qualité demandée
+    private CompletableFuture<GeneratedImageDTO> generateAdaptiveAsync(String prompt, QualityEnum requested) {
+        QualityDegradationPolicy.Decision decision = degradationPolicy.decide(requested);
+        if (!decision.isDegraded()) {
+            return generateNewImageAsync(prompt, requested);
+        }
+        log.debug("Generation load too high ({}), generating {} instead of {} for prompt: {}",
+                decision.reason(), decision.effective(), requested, prompt);
+        return generateNewImageAsync(prompt, decision.effective())
+                .thenApply(generated -> {
+                    generated.setDegraded(true);
+                    generated.setUpgradeScheduled(scheduleUpgrade(prompt, requested));
+                    return generated;
+                });
+    }
+
+    private boolean scheduleUpgrade(String prompt, QualityEnum quality) {
+        if (!upgradeEnabled) {
+            return false;
+        }
+        String promptKey = ImageReuseIndex.promptKey(prompt);
+        if (promptKey == null) {
+            // Sans clé, l'image de meilleure qualité ne serait jamais retrouvée par l'index de réutilisation
+            return false;
+        }
+        String key = promptKey + ":" + quality;
+        if (pendingUpgradeKeys.contains(key)) {
+            return true;
+        }
+        if (pendingUpgradeKeys.size() >= maxPendingUpgrades || !pendingUpgradeKeys.add(key)) {
+            return false;
+        }
+        pendingUpgrades.add(new PendingUpgrade(key, prompt, quality));
+        return true;
+    }
 
-            // Vérifier que l'image a bien été obtenue
-            if (content == null || content.length == 0) {
-                throw new RuntimeException("Failed to generate image from DALL-E: empty content received");
+    /**
+     * Génère les qualités abaissées sous charge, quelques-unes par passage et seulement si leur file a retrouvé de la marge.
+     * L'image est enregistrée dans l'index de réutilisation : une demande suivante avec reuse=true la récupère.
+     */
+    @Scheduled(fixedDelayString = "${app.image.degradation.upgrade.interval-ms:15000}")
+    public void runPendingUpgrades() {
+        for (int launched = 0; launched < upgradeBatch; launched++) {
+            PendingUpgrade upgrade = pendingUpgrades.peek();
+            if (upgrade == null || !degradationPolicy.hasCapacity(upgrade.quality())) {
+                return;
             }
+            pendingUpgrades.poll();
+            CompletableFuture.supplyAsync(() -> imageReuseIndex.find(upgrade.prompt(), upgrade.quality()).isPresent(),
+                            generationExecutor)
+                    .thenCompose(exists -> exists
+                            ? CompletableFuture.completedFuture(null)
+                            : generateNewImageAsync(upgrade.prompt(), upgrade.quality()))
+                    .whenComplete((generated, error) -> {
+                        pendingUpgradeKeys.remove(upgrade.key());
+                        if (error != null) {
+                            log.warn("Background {} upgrade failed for prompt: {} - {}",
+                                    upgrade.quality(), upgrade.prompt(), AsyncUtils.unwrap(error).getMessage());
+                        }
+                        meterRegistry.counter("aikea.image.quality.upgrades",
+                                "quality", upgrade.quality().name(), "outcome", error == null ? "success" : "error").increment();
+                    });
+        }
+    }
 
-            // Enregistrer l'image dans la base de données
-            RecordedImage recordedImage = saveImage(prompt, content, quality);
+    // Renvoie null si aucune image réutilisable n'est trouvée (la génération continue normalement)
+    private GeneratedImageDTO findReusableImage(String prompt, QualityEnum quality) {
+        try {
+            RecordedImage recordedImage = imageReuseIndex.find(prompt, quality).orElse(null);
+            if (recordedImage == null) {
+                return null;
+            }
+            log.debug("Reusing previously generated image {} for prompt: {}", recordedImage.getId(), prompt);
+            return toReusedDTO(recordedImage);
+        } catch (Exception e) {
+            log.warn("Image reuse lookup failed, generating a new image: {}", e.getMessage());
+            return null;
+        }
+    }
 
-            // Enregistrer l'image sur le disque
-            saveOnComputer(prompt, content);
+    // Le contenu n'est pas chargé : les appelants lisent le fichier (storageURL) ou appellent loadImageBytes
+    private GeneratedImageDTO toReusedDTO(RecordedImage recordedImage) throws IOException {
+        return GeneratedImageDTO
+                .builder()
+                .size(Files.size(Paths.get(recordedImage.getCloudURI())))
+                .contentHash(blobStoreService.hashOf(Paths.get(recordedImage.getCloudURI())))
+                .internalID(recordedImage.getId())
+                .externalID(recordedImage.getCloudID())
+                .storageURL(recordedImage.getCloudURI())
+                .quality(recordedImage.getQuality())
+                .reused(true)
+                .build();
+    }
 
-            System.out.println("Image generation completed successfully. Size: " + content.length + " bytes");
+    private CompletableFuture<GeneratedImageDTO> generateNewImageAsync(String prompt, QualityEnum effectiveQuality) {
+        log.debug("Starting image generation process for prompt: {}", prompt);
+
+        return generateFromDalleAsync(prompt, effectiveQuality)
+                .exceptionallyCompose(error -> {
+                    Throwable cause = AsyncUtils.unwrap(error);
+                    if (degradedModeEnabled && OpenAIErrorType.classify(cause) == OpenAIErrorType.CIRCUIT_OPEN) {
+                        log.warn("Image generation failed for prompt: {} - {}", prompt, cause.getMessage());
+                        return degradedImageAsync(prompt, effectiveQuality, cause);
+                    }
+                    log.warn("Image generation failed for prompt: {}", prompt, cause);
+                    return CompletableFuture.failedFuture(translateGenerationError(cause));
+                });
+    }
 
-            return GeneratedImageDTO
-                    .builder()
-                    .image(content)
-                    .internalID(recordedImage.getId())
-                    .externalID(recordedImage.getCloudID())
-                    .storageURL(recordedImage.getCloudURI())
-                    .url(imageUrl)
-                    .build();
-                    
-        } catch (Exception e) {
-            System.err.println("Image generation failed for prompt: " + prompt + " - " + e.getMessage());
-            e.printStackTrace();
-            
-            // Provide more specific error messages based on common issues
-            String errorMessage = e.getMessage();
-            if (errorMessage.contains("quota") || errorMessage.contains("billing")) {
-                throw new Exception("OpenAI API quota exceeded or billing issue. Please check your OpenAI account.", e);
-            } else if (errorMessage.contains("invalid") && errorMessage.contains("key")) {
-                throw new Exception("Invalid OpenAI API key. Please check your configuration.", e);
-            } else if (errorMessage.contains("content policy")) {
-                throw new Exception("Image generation request violates OpenAI content policy. Please modify your prompt.", e);
-            } else {
-                throw new Exception("Failed to generate image: " + errorMessage, e);
-            }
+    /**
+     * Mode dégradé, le circuit du modèle demandé est ouvert : aucune attente sur OpenAI.
+     * On sert l'image enregistrée la plus proche du prompt, sinon on génère en LOW si dall-e-2 répond encore.
+     */
+    private CompletableFuture<GeneratedImageDTO> degradedImageAsync(String prompt, QualityEnum quality, Throwable cause) {
+        return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        RecordedImage closest = imageReuseIndex.findClosest(prompt, quality).orElse(null);
+                        return closest != null ? toReusedDTO(closest) : null;
+                    } catch (Exception e) {
+                        log.warn("Degraded image lookup failed: {}", e.getMessage());
+                        return null;
+                    }
+                }, generationExecutor)
+                .thenCompose(closest -> {
+                    if (closest != null) {
+                        log.debug("OpenAI unavailable, serving closest image {} for prompt: {}", closest.getInternalID(), prompt);
+                        countDegraded("closest-image");
+                        closest.setDegraded(true);
+                        return CompletableFuture.completedFuture(closest);
+                    }
+                    if (quality != QualityEnum.LOW && circuitBreakers.isAvailable("dall-e-2")) {
+                        log.debug("OpenAI {} unavailable, falling back to LOW for prompt: {}", quality, prompt);
+                        countDegraded("low-quality");
+                        return generateFromDalleAsync(prompt, QualityEnum.LOW)
+                                .thenApply(generated -> {
+                                    generated.setDegraded(true);
+                                    return generated;
+                                })
+                                .exceptionallyCompose(error -> CompletableFuture.failedFuture(
+                                        translateGenerationError(AsyncUtils.unwrap(error))));
+                    }
+                    countDegraded("none");
+                    return CompletableFuture.failedFuture(translateGenerationError(cause));
+                });
+    }
+
+    private void countDegraded(String source) {
+        meterRegistry.counter("aikea.generation.degraded", "type", "image", "source", source).increment();
+    }
+
+    private CompletableFuture<GeneratedImageDTO> generateFromDalleAsync(String prompt, QualityEnum effectiveQuality) {
+        return b64JsonEnabled
+                ? AsyncUtils.applyAsync(getImageBase64FromDalleAsync(prompt, effectiveQuality), b64Json -> {
+                    try {
+                        // Décodage en flux vers le disque : l'image décodée ne passe jamais en entier par le heap
+                        IngestedFile content = uploadService.ingest(Base64Decoding.stream(b64Json));
+                        return store(prompt, effectiveQuality, content, null);
+                    } catch (Exception e) {
+                        throw AsyncUtils.wrap(e);
+                    }
+                }, generationExecutor)
+                : getImageUrlFromDalleAsync(prompt, effectiveQuality)
+                        // La réponse HTTP est écrite sur le disque au fil de la lecture
+                        .thenCompose(imageUrl -> AsyncUtils.applyAsync(downloadToFileAsync(imageUrl), content -> {
+                            try {
+                                return store(prompt, effectiveQuality, content, imageUrl);
+                            } catch (Exception e) {
+                                throw AsyncUtils.wrap(e);
+                            }
+                        }, generationExecutor));
+    }
+
+    // imageUrl est null en mode b64_json : aucune URL fournisseur à transmettre
+    private GeneratedImageDTO store(String prompt, QualityEnum quality, IngestedFile content, String imageUrl)
+            throws Exception {
+        // Vérifier que l'image a bien été obtenue
+        if (content.size() == 0) {
+            Files.deleteIfExists(content.path());
+            throw new RuntimeException("Failed to generate image from DALL-E: empty content received");
         }
-    }public String getImageUrlFromDalle(String prompt, QualityEnum quality) throws Exception {
+
+        // Enregistrer l'image dans la base de données (le fichier ingéré est rangé dans le stockage par contenu)
+        RecordedImage recordedImage = saveImage(prompt, content, quality);
+
+        // Nom dérivé du prompt sous static/images : lien vers le blob, pas de seconde écriture.
+        // Personne n'attend ce nom : il est créé hors du chemin critique de la requête
+        Path storedImage = Paths.get(recordedImage.getCloudURI());
+        CompletableFuture.runAsync(() -> {
+            try {
+                saveOnComputer(prompt, storedImage);
+            } catch (IOException e) {
+                throw AsyncUtils.wrap(e);
+            }
+        }, generationExecutor).exceptionally(e -> {
+            log.warn("Failed to link image under its prompt name: {}", AsyncUtils.unwrap(e).getMessage());
+            return null;
+        });
+
+        log.debug("Image generation completed successfully. Size: {} bytes", content.size());
+
+        // Miniature et aperçu produits en arrière-plan, prêts pour le premier affichage
+        imageDerivativeService.generateEagerly(content.sha256());
+
+        return GeneratedImageDTO
+                .builder()
+                .size(content.size())
+                .contentHash(content.sha256())
+                .internalID(recordedImage.getId())
+                .externalID(recordedImage.getCloudID())
+                .storageURL(recordedImage.getCloudURI())
+                .url(imageUrl)
+                .quality(quality)
+                .build();
+    }
+
+    // Provide more specific error messages based on common issues
+    private Exception translateGenerationError(Throwable e) {
+        return switch (OpenAIErrorType.classify(e)) {
+            case RATE_LIMIT -> new Exception("OpenAI rate limit reached, too many concurrent generations. Please retry later.", e);
+            case QUOTA -> new Exception("OpenAI API quota exceeded or billing issue. Please check your OpenAI account.", e);
+            case AUTHENTICATION -> new Exception("Invalid OpenAI API key. Please check your configuration.", e);
+            case CONTENT_POLICY -> new Exception("Image generation request violates OpenAI content policy. Please modify your prompt.", e);
+            case CIRCUIT_OPEN -> new Exception("OpenAI is currently unavailable and no fallback image was found. Please retry later.", e);
+            default -> new Exception("Failed to generate image: " + e.getMessage(), e);
+        };
+    }
+
+    public String getImageUrlFromDalle(String prompt, QualityEnum quality) throws Exception {
+        return AsyncUtils.await(getImageUrlFromDalleAsync(prompt, quality));
+    }
+
+    public CompletableFuture<String> getImageUrlFromDalleAsync(String prompt, QualityEnum quality) {
+        ImageRequest imageRequest = buildImageRequest(prompt, quality, ImageResponseFormat.URL);
+
+        log.debug("Generating image for prompt: {} with quality: {}", prompt, quality);
+        return imageScheduler.submit(quality, () -> openAICallsService.generateWithDalleAsync(imageRequest))
+                .handle((imageUrl, error) -> {
+                    if (error != null) {
+                        Throwable cause = AsyncUtils.unwrap(error);
+                        log.warn("Failed to generate image with DALL·E: {}", cause.getMessage());
+                        throw AsyncUtils.wrap(new Exception("Image generation failed: " + cause.getMessage(), cause));
+                    }
+                    if (imageUrl == null || imageUrl.trim().isEmpty()) {
+                        throw AsyncUtils.wrap(new Exception("OpenAI service returned null or empty URL"));
+                    }
+
+                    log.debug("Successfully generated image URL: {}", imageUrl);
+                    return imageUrl;
+                });
+    }
+
+    public CompletableFuture<String> getImageBase64FromDalleAsync(String prompt, QualityEnum quality) {
+        ImageRequest imageRequest = buildImageRequest(prompt, quality, ImageResponseFormat.B64JSON);
+
+        log.debug("Generating image for prompt: {} with quality: {}", prompt, quality);
+        return imageScheduler.submit(quality, () -> openAICallsService.generateImageBase64WithDalleAsync(imageRequest))
+                .handle((b64Json, error) -> {
+                    if (error != null) {
+                        Throwable cause = AsyncUtils.unwrap(error);
+                        log.warn("Failed to generate image with DALL·E: {}", cause.getMessage());
+                        throw AsyncUtils.wrap(new Exception("Image generation failed: " + cause.getMessage(), cause));
+                    }
+                    return b64Json;
+                });
+    }
+
+    private ImageRequest buildImageRequest(String prompt, QualityEnum quality, ImageResponseFormat responseFormat) {
         ImageRequest imageRequest = null;
 
         if(quality == QualityEnum.LOW) {
@@ -119,7 +440,7 @@ public class ImageGenerationService {    private final OpenAICallsService openAI
                     .prompt(prompt)
                     .n(1)
                     .size(Size.X256)
-                    .responseFormat(ImageResponseFormat.URL)
+                    .responseFormat(responseFormat)
                     .model("dall-e-2")
                     .build() ;
         }
@@ -128,7 +449,7 @@ public class ImageGenerationService {    private final OpenAICallsService openAI
                     .prompt(prompt)
                     .n(1)
                     .size(Size.X1024)
-                    .responseFormat(ImageResponseFormat.URL)
+                    .responseFormat(responseFormat)
                     .model("dall-e-3")
                     .build() ;
         }
@@ -138,73 +459,87 @@ public class ImageGenerationService {    private final OpenAICallsService openAI
                     .n(1)
                     .size(Size.X1792X)
                     .quality(ImageRequest.Quality.HD)
-                    .responseFormat(ImageResponseFormat.URL)
+                    .responseFormat(responseFormat)
                     .model("dall-e-3")
                     .build() ;
         }
+        return imageRequest;
+    }
 
+    /**
+     * Télécharge une image directement dans un fichier, par blocs, avec taille et SHA-256 calculés au passage.
+     * Passe par le client de téléchargement partagé (connexions réutilisées)
+     */
+    public CompletableFuture<IngestedFile> downloadToFileAsync(String imageUrl) {
+        log.debug("Downloading image from URL: {}", imageUrl);
+        return imageDownloadService.downloadAsync(imageUrl)
+                .handle((file, error) -> {
+                    if (error == null && file.size() == 0) {
+                        deleteQuietly(file);
+                        error = new Exception("Downloaded image is empty or null");
+                    }
+                    if (error != null) {
+                        Throwable cause = AsyncUtils.unwrap(error);
+                        log.warn("Failed to download image from URL: {} - {}", imageUrl, cause.getMessage());
+                        throw AsyncUtils.wrap(new Exception("Failed to download image: " + cause.getMessage(), cause));
+                    }
+                    log.debug("Successfully downloaded image. Size: {} bytes", file.size());
+                    return file;
+                });
+    }
+
+    private static void deleteQuietly(IngestedFile file) {
         try {
-            System.out.println("Generating image for prompt: " + prompt + " with quality: " + quality);
-            String imageUrl = openAICallsService.generateWithDalle(imageRequest);
-            
-            if (imageUrl == null || imageUrl.trim().isEmpty()) {
-                throw new Exception("OpenAI service returned null or empty URL");
-            }
-            
-            System.out.println("Successfully generated image URL: " + imageUrl);
-            return imageUrl;
-            
-        } catch (Exception e) {
-            System.err.println("Failed to generate image with DALL·E: " + e.getMessage());
-            e.printStackTrace();
-            throw new Exception("Image generation failed: " + e.getMessage(), e);
+            Files.deleteIfExists(file.path());
+        } catch (IOException e) {
+            log.warn("Failed to delete empty download {}: {}", file.path(), e.getMessage());
         }
-    }    public byte[] getImageFromUrl(String imageUrl) throws Exception {
+    }
+
+    /**
+     * Charge le contenu de l'image dans le DTO, pour les appelants qui ont réellement besoin des octets
+     */
+    public GeneratedImageDTO loadImageBytes(GeneratedImageDTO generatedImage) throws IOException {
+        if (generatedImage.getImage() == null && generatedImage.getStorageURL() != null) {
+            generatedImage.setImage(Files.readAllBytes(Paths.get(generatedImage.getStorageURL())));
+        }
+        return generatedImage;
+    }
+
+    public byte[] getImageFromUrl(String imageUrl) throws Exception {
         if (imageUrl == null || imageUrl.trim().isEmpty()) {
             throw new Exception("Image URL is null or empty");
         }
 
         try {
-            System.out.println("Downloading image from URL: " + imageUrl);
-            RestTemplate restTemplate = new RestTemplate();
-            URI uri = new URI(imageUrl);
-            RequestEntity<Void> request = RequestEntity.get(uri).build();
-            ResponseEntity<byte[]> imageResponse = restTemplate.exchange(request, byte[].class);
-
-            if (imageResponse.getStatusCode() != HttpStatus.OK) {
-                throw new Exception("Failed to download image. HTTP status: " + imageResponse.getStatusCode());
-            }
-
-            byte[] imageBytes = imageResponse.getBody();
+            log.debug("Downloading image from URL: {}", imageUrl);
+            byte[] imageBytes = AsyncUtils.await(imageDownloadService.fetchBytesAsync(imageUrl));
             if (imageBytes == null || imageBytes.length == 0) {
                 throw new Exception("Downloaded image is empty or null");
             }
 
-            System.out.println("Successfully downloaded image. Size: " + imageBytes.length + " bytes");
+            log.debug("Successfully downloaded image. Size: {} bytes", imageBytes.length);
             return imageBytes;
-              } catch (Exception e) {
-            System.err.println("Failed to download image from URL: " + imageUrl + " - " + e.getMessage());
-            e.printStackTrace();
+        } catch (Exception e) {
+            log.warn("Failed to download image from URL: {}", imageUrl, e);
             throw new Exception("Failed to download image: " + e.getMessage(), e);
         }
     }
 
 
     public RecordedImage saveImage(String prompt, byte[] content, QualityEnum quality) throws Exception {
+        return saveImage(prompt, uploadService.ingest(new ByteArrayInputStream(content)), quality);
+    }
+
+    public RecordedImage saveImage(String prompt, IngestedFile content, QualityEnum quality) throws Exception {
         // Créer un nom de fichier basé sur le prompt
         String fileName = generateFileNameFromPrompt(prompt, 100);
 
-        // Créer un MultipartFile à partir du tableau de bytes
-        MultipartFile multipartFile = new ByteArrayMultipartFile(
-                fileName,
+        // Utiliser UploadService pour enregistrer l'image (le fichier ingéré est déplacé vers son blob, pas recopié)
+        Upload savedUpload = uploadService.saveIngestedFile(
+                content,
                 fileName,
                 "image/png",
-                content
-        );
-
-        // Utiliser UploadService pour enregistrer l'image
-        Upload savedUpload = uploadService.saveFile(
-                multipartFile,
                 "AI_GEN",  // identifiant externe pour les images générées par IA
                 "ai-generated",  // tag1
                 "dall-e",       // tag2
@@ -222,68 +557,29 @@ public class ImageGenerationService {    private final OpenAICallsService openAI
                 .cloudURI(savedUpload.getFilePath())  // Utiliser le chemin du fichier sauvegardé
                 .cloudID(String.valueOf(savedUpload.getId()))  // Utiliser l'ID de l'upload comme ID externe
                 .prompt(prompt)
+                .quality(quality != null ? quality : QualityEnum.MEDIUM)
+                .promptKey(ImageReuseIndex.promptKey(prompt))
                 .build();
 
         recordedImagesRepository.save(recordedImage);
+        imageReuseIndex.register(recordedImage);
 
         return recordedImage;
     }
 
-    // Classe personnalisée pour éviter d'avoir besoin de MockMultipartFile
-    public static class ByteArrayMultipartFile implements MultipartFile {
-        private final byte[] content;
-        private final String name;
-        private final String originalFilename;
-        private final String contentType;
-
-        public ByteArrayMultipartFile(String name, String originalFilename, String contentType, byte[] content) {
-            this.name = name;
-            this.originalFilename = originalFilename;
-            this.contentType = contentType;
-            this.content = content;
-        }
-
-        @Override
-        public String getName() {
-            return name;
-        }
-
-        @Override
-        public String getOriginalFilename() {
-            return originalFilename;
-        }
-
-        @Override
-        public String getContentType() {
-            return contentType;
-        }
-
-        @Override
-        public boolean isEmpty() {
-            return content == null || content.length == 0;
-        }
-
-        @Override
-        public long getSize() {
-            return content.length;
-        }
-
-        @Override
-        public byte[] getBytes() throws IOException {
-            return content;
-        }
-
-        @Override
-        public InputStream getInputStream() throws IOException {
-            return new ByteArrayInputStream(content);
-        }
-
-        @Override
-        public void transferTo(File dest) throws IOException, IllegalStateException {
-            try (FileOutputStream fos = new FileOutputStream(dest)) {
-                fos.write(content);
-            }
+    /**
+     * Nom lisible (dérivé du prompt) pour une image du stockage par contenu : lien physique vers le blob,
+     * aucune seconde écriture du contenu
+     */
+    public void saveOnComputer(String prompt, Path source) throws IOException {
+        String filename = generateFileNameFromPrompt(prompt, 50);
+        if (filename == null || filename.isEmpty()) {
+            filename = "generated_image_" + System.currentTimeMillis() + ".png";
         }
+        Path directory = Files.createDirectories(Paths.get(basePath));
+        Path target = directory.resolve(filename);
+        log.debug("Linking image to: {}", target.toAbsolutePath());
+        blobStoreService.linkAlias(source, target);
     }
 
     public void saveOnComputer(String prompt, byte[] imageBytes) throws IOException {
@@ -297,51 +593,28 @@ public class ImageGenerationService {    private final OpenAICallsService openAI
         // Construisez le chemin complet
         File directory = new File(basePath);
         if (!directory.exists()) {
-            System.out.println("Creating directory: " + directory.getAbsolutePath());
+            log.info("Creating directory: {}", directory.getAbsolutePath());
             boolean created = directory.mkdirs();
             if (!created) {
-                System.err.println("Failed to create directory");
+                log.warn("Failed to create directory: {}", directory.getAbsolutePath());
             }
         }
 
         // Chemin complet du fichier
         File file = new File(directory, filename);
-        System.out.println("Saving image to: " + file.getAbsolutePath());
+        log.debug("Saving image to: {}", file.getAbsolutePath());
 
-        // Écrire le fichier
+        // Écrire le fichier (supprimé d'abord : ce nom peut être un lien physique vers un blob partagé)
+        Files.deleteIfExists(file.toPath());
         try (FileOutputStream fos = new FileOutputStream(file)) {
             fos.write(imageBytes);
-            System.out.println("Image saved successfully. Size: " + imageBytes.length + " bytes");
+            log.debug("Image saved successfully. Size: {} bytes", imageBytes.length);
         } catch (IOException e) {
-            System.err.println("Error saving image: " + e.getMessage());
+            log.warn("Error saving image: {}", e.getMessage());
             throw e;
         }
     }
 
-    private static Path getAvailablePath(Path originalPath) {
-        Path parent = originalPath.getParent();
-        String fileName = originalPath.getFileName().toString();
-        String name = fileName;
-        String extension = "";
-
-        int dotIndex = fileName.lastIndexOf('.');
-        if (dotIndex != -1) {
-            name = fileName.substring(0, dotIndex);
-            extension = fileName.substring(dotIndex); // includes the dot
-        }
-
-        int count = 1;
-        Path newPath = originalPath;
-
-        while (Files.exists(newPath)) {
-            String newFileName = name + "_" + count + extension;
-            newPath = (parent != null) ? parent.resolve(newFileName) : Paths.get(newFileName);
-            count++;
-        }
-
-        return newPath;
-    }
-
     public static String generateFileNameFromPrompt(String prompt, int maxLength) {
         if (prompt == null || prompt.isBlank()) return "file";
 
@@ -383,7 +656,7 @@ public class ImageGenerationService {    private final OpenAICallsService openAI
             String testUrl = openAICallsService.generateWithDalle(testRequest);
             return testUrl != null && !testUrl.trim().isEmpty();
         } catch (Exception e) {
-            System.err.println("OpenAI API test failed: " + e.getMessage());
+            log.warn("OpenAI API test failed: {}", e.getMessage());
             return false;
         }
     }
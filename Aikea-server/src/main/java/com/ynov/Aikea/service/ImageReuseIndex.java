@@ -0,0 +1,237 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.HashUtils;
+import com.ynov.Aikea.atools.QualityEnum;
+import com.ynov.Aikea.entity.RecordedImage;
+import com.ynov.Aikea.entity.Upload;
+import com.ynov.Aikea.repository.RecordedImagesRepository;
+import com.ynov.Aikea.repository.UploadRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index (prompt normalisé, qualité) -> dernière image enregistrée.
+ * Chargé en mémoire au démarrage depuis recorded_image, puis tenu à jour à chaque génération.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageReuseIndex {
+
+    private final RecordedImagesRepository recordedImagesRepository;
+    private final UploadRepository uploadRepository;
+
+    private final Map<String, Integer> index = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<String>> termsById = new ConcurrentHashMap<>();
+
+    @Value("${app.openai.degraded.min-similarity:0.3}")
+    private double minSimilarity;
+
+    /**
+     * Normalise un prompt : minuscules, sans accents, sans ponctuation, espaces réduits.
+     * "Un salon  scandinave !" et "un salon scandinave" donnent la même clé.
+     * Les lettres et chiffres de toutes les écritures sont conservés (CJK, arabe, cyrillique...).
+     * @param prompt Le prompt saisi
+     * @return L'empreinte SHA-256 du prompt normalisé, ou null s'il ne contient ni lettre ni chiffre :
+     * un tel prompt n'est ni réutilisé ni regroupé avec d'autres
+     */
+    public static String promptKey(String prompt) {
+        String normalized = normalize(prompt);
+        return normalized.isEmpty() ? null : HashUtils.sha256Hex(normalized);
+    }
+
+    static String normalize(String prompt) {
+        String composed = Normalizer.normalize(prompt == null ? "" : prompt, Normalizer.Form.NFKC);
+        // Seuls les diacritiques latins, grecs et cyrilliques sont retirés : les signes des autres écritures
+        // (voyelles devanagari, par exemple) distinguent des mots différents
+        return Normalizer.normalize(composed, Normalizer.Form.NFD)
+                .replaceAll("\\p{InCombiningDiacriticalMarks}+", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{L}\\p{M}\\p{N}]+", " ")
+                .trim();
+    }
+
+    // Mots significatifs du prompt (3 lettres et plus), pour la recherche approchée du mode dégradé
+    private static Set<String> terms(String prompt) {
+        Set<String> terms = new HashSet<>();
+        for (String word : normalize(prompt).split(" ")) {
+            if (word.length() >= 3) {
+                terms.add(word);
+            }
+        }
+        return terms;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        int indexed = 0;
+        try {
+            for (RecordedImage image : recordedImagesRepository.findAll()) {
+                if (backfill(image)) {
+                    recordedImagesRepository.save(image);
+                }
+                if (image.getQuality() != null && image.getPromptKey() != null) {
+                    index.merge(entryKey(image.getPromptKey(), image.getQuality()), image.getId(), Math::max);
+                    rememberTerms(image);
+                    indexed++;
+                }
+            }
+            log.info("Image reuse index warmed with {} images", indexed);
+        } catch (Exception e) {
+            log.warn("Image reuse index warm-up failed: {}", e.getMessage());
+        }
+    }
+
+    // Les images enregistrées avant l'index n'ont ni clé ni qualité : on les déduit du prompt et de l'upload (tag3)
+    private boolean backfill(RecordedImage image) {
+        boolean changed = false;
+        if (image.getPromptKey() == null) {
+            String promptKey = promptKey(image.getPrompt());
+            if (promptKey != null) {
+                image.setPromptKey(promptKey);
+                changed = true;
+            }
+        }
+        if (image.getQuality() == null && image.getCloudID() != null) {
+            try {
+                Upload upload = uploadRepository.findById(Integer.parseInt(image.getCloudID())).orElse(null);
+                if (upload != null && upload.getTag3() != null) {
+                    image.setQuality(QualityEnum.valueOf(upload.getTag3()));
+                    changed = true;
+                }
+            } catch (IllegalArgumentException e) {
+                // cloudID non numérique ou tag3 qui n'est pas une qualité : image ignorée
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Référence une image qui vient d'être enregistrée
+     * @param image L'image enregistrée (avec qualité et clé de prompt)
+     */
+    public void register(RecordedImage image) {
+        if (image.getPromptKey() != null && image.getQuality() != null) {
+            index.put(entryKey(image.getPromptKey(), image.getQuality()), image.getId());
+            rememberTerms(image);
+        }
+    }
+
+    private void rememberTerms(RecordedImage image) {
+        if (image.getPrompt() != null) {
+            termsById.put(image.getId(), terms(image.getPrompt()));
+        }
+    }
+
+    /**
+     * Cherche une image déjà générée dont le fichier est toujours présent sur le disque
+     * @param prompt Le prompt demandé
+     * @param quality La qualité demandée
+     * @return L'image réutilisable, si elle existe
+     */
+    public Optional<RecordedImage> find(String prompt, QualityEnum quality) {
+        String promptKey = promptKey(prompt);
+        if (promptKey == null) {
+            return Optional.empty();
+        }
+        String entryKey = entryKey(promptKey, quality);
+
+        Integer id = index.get(entryKey);
+        Optional<RecordedImage> image = id != null
+                ? recordedImagesRepository.findById(id)
+                // L'index mémoire peut manquer une image enregistrée par une autre instance
+                : recordedImagesRepository.findByPromptKeyAndQualityOrderByIdDesc(promptKey, quality)
+                .stream().findFirst();
+
+        if (image.isEmpty() || image.get().getCloudURI() == null
+                || !Files.isReadable(Paths.get(image.get().getCloudURI()))) {
+            index.remove(entryKey);
+            return Optional.empty();
+        }
+        register(image.get());
+        return image;
+    }
+
+    /**
+     * Mode dégradé (OpenAI indisponible) : l'image existante la plus proche du prompt.
+     * Même prompt et même qualité, puis même prompt dans une autre qualité,
+     * puis le prompt le plus ressemblant (mots communs) au-dessus du seuil de similarité.
+     * @param prompt Le prompt demandé
+     * @param quality La qualité demandée
+     * @return L'image de repli, si une image assez proche existe sur le disque
+     */
+    public Optional<RecordedImage> findClosest(String prompt, QualityEnum quality) {
+        Optional<RecordedImage> exact = find(prompt, quality);
+        if (exact.isPresent()) {
+            return exact;
+        }
+        for (QualityEnum other : QualityEnum.values()) {
+            if (other != quality) {
+                Optional<RecordedImage> samePrompt = find(prompt, other);
+                if (samePrompt.isPresent()) {
+                    return samePrompt;
+                }
+            }
+        }
+
+        Set<String> wanted = terms(prompt);
+        if (wanted.isEmpty()) {
+            return Optional.empty();
+        }
+        List<Map.Entry<Integer, Double>> candidates = new ArrayList<>();
+        termsById.forEach((id, candidateTerms) -> {
+            double similarity = jaccard(wanted, candidateTerms);
+            if (similarity >= minSimilarity) {
+                candidates.add(Map.entry(id, similarity));
+            }
+        });
+        candidates.sort(Map.Entry.<Integer, Double>comparingByValue().reversed());
+
+        for (Map.Entry<Integer, Double> candidate : candidates) {
+            Optional<RecordedImage> image = recordedImagesRepository.findById(candidate.getKey());
+            if (image.isPresent() && image.get().getCloudURI() != null
+                    && Files.isReadable(Paths.get(image.get().getCloudURI()))) {
+                return image;
+            }
+            termsById.remove(candidate.getKey());
+        }
+        return Optional.empty();
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (b.isEmpty()) {
+            return 0;
+        }
+        int common = 0;
+        for (String term : a) {
+            if (b.contains(term)) {
+                common++;
+            }
+        }
+        return (double) common / (a.size() + b.size() - common);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private static String entryKey(String promptKey, QualityEnum quality) {
+        return promptKey + ":" + quality.name();
+    }
+}
@@ -1,37 +1,92 @@
 package com.ynov.Aikea.service;
 
+import com.ynov.Aikea.atools.AsyncUtils;
+import com.ynov.Aikea.atools.OpenAIErrorType;
+import com.ynov.Aikea.atools.StreamAbortedException;
 import io.github.sashirestela.openai.SimpleOpenAI;
+import io.github.sashirestela.openai.common.StreamOptions;
 import io.github.sashirestela.openai.common.content.ContentPart.ContentPartText;
 import io.github.sashirestela.openai.common.content.ContentPart.ContentPartImageUrl;
 
 import io.github.sashirestela.openai.common.content.ContentPart.ContentPartImageUrl.ImageUrl;
+import io.github.sashirestela.openai.domain.chat.Chat;
 import io.github.sashirestela.openai.domain.chat.ChatMessage.UserMessage;
 import io.github.sashirestela.openai.domain.chat.ChatMessage.SystemMessage;
 import io.github.sashirestela.openai.domain.chat.ChatRequest;
+import io.github.sashirestela.openai.domain.image.Image;
 import io.github.sashirestela.openai.domain.image.ImageRequest;
 import io.github.sashirestela.openai.domain.image.ImageResponseFormat;
 import io.github.sashirestela.openai.domain.image.Size;
-import io.github.sashirestela.openai.support.Base64Util;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Base64;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+/**
+ * Appels à l'API OpenAI.
+ * Les méthodes *Async renvoient le future de simple-openai sans jamais le bloquer ;
+ * les méthodes synchrones historiques ne font qu'attendre leur variante async.
+ */
 @Service
 public class OpenAICallsService {
 
+    private static final String CHAT_MODEL = "gpt-4o-mini";
+    private static final Logger logger = LogManager.getLogger();
+
     private final SimpleOpenAI openAI;
+    private final ChatCompletionCacheService completionCache;
+    private final OpenAIRateLimiters rateLimiters;
+    private final OpenAIResilience resilience;
+    private final VisionImagePreprocessor visionPreprocessor;
+    private final OpenAIMetrics metrics;
+    private final OpenAICircuitBreakers circuitBreakers;
+    private final boolean degradedModeEnabled;
+    private final Executor generationExecutor;
+    private final Executor streamExecutor;
+    private final MeterRegistry meterRegistry;
 
-    public OpenAICallsService(@Value("${spring.ai.openai.api-key}")
-                              String openAiApiKey) {
-        openAI = SimpleOpenAI.builder()
-                .apiKey(openAiApiKey)
-                .build();
+    public OpenAICallsService(SimpleOpenAI openAI,
+                              ChatCompletionCacheService completionCache,
+                              OpenAIRateLimiters rateLimiters,
+                              OpenAIResilience resilience,
+                              VisionImagePreprocessor visionPreprocessor,
+                              OpenAIMetrics metrics,
+                              OpenAICircuitBreakers circuitBreakers,
+                              @Value("${app.openai.degraded.enabled:true}") boolean degradedModeEnabled,
+                              @Qualifier("generationExecutor") Executor generationExecutor,
+                              @Qualifier("openAIStreamExecutor") Executor streamExecutor,
+                              MeterRegistry meterRegistry) {
+        this.openAI = openAI;
+        this.completionCache = completionCache;
+        this.rateLimiters = rateLimiters;
+        this.resilience = resilience;
+        this.visionPreprocessor = visionPreprocessor;
+        this.metrics = metrics;
+        this.circuitBreakers = circuitBreakers;
+        this.degradedModeEnabled = degradedModeEnabled;
+        this.generationExecutor = generationExecutor;
+        this.streamExecutor = streamExecutor;
+        this.meterRegistry = meterRegistry;
     }
 
     public String generateWithDalle(String prompt){
+        return generateWithDalleAsync(prompt).join();
+    }
+
+    public CompletableFuture<String> generateWithDalleAsync(String prompt) {
         var imageRequest = ImageRequest.builder()
                 .prompt(prompt)
                 .n(1)
@@ -39,78 +94,140 @@ public class OpenAICallsService {
                 .responseFormat(ImageResponseFormat.URL)
                 .model("dall-e-2")
                 .build();
-        var futureImage = openAI.images().create(imageRequest);
-        var imageResponse = futureImage.join();
-        imageResponse.forEach(img -> System.out.println("\n" + img.getUrl()));
-
-        return imageResponse.get(0).getUrl() ;
+        return submitImage(imageRequest)
+                .thenApply(imageResponse -> {
+                    imageResponse.forEach(img -> logger.debug("DALL·E image URL: {}", img.getUrl()));
+                    return imageResponse.get(0).getUrl();
+                });
     }
 
     public String generateWithDalle(ImageRequest imageRequest) throws Exception {
+        try {
+            return generateWithDalleAsync(imageRequest).join();
+        } catch (CompletionException e) {
+            // Les relances ont déjà eu lieu : on remonte la cause d'origine, sans l'enveloppe du future
+            Throwable cause = AsyncUtils.unwrap(e);
+            logger.error("DALL·E API request failed", cause);
+
+            throw new Exception("Failed to generate image with DALL·E: " + cause.getMessage(), cause);
+        }
+    }
+
+    public CompletableFuture<String> generateWithDalleAsync(ImageRequest imageRequest) {
         if (imageRequest.getN() != 1) {
-            throw new Exception("Only support Single Image");
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Only support Single Image"));
         }
 
-        try {
-            System.out.println("Making DALL·E request with prompt: " + imageRequest.getPrompt());
-            System.out.println("Model: " + imageRequest.getModel() + ", Size: " + imageRequest.getSize());
-            
-            var futureImage = openAI.images().create(imageRequest);
-            var imageResponse = futureImage.join();
-            
-            if (imageResponse == null || imageResponse.isEmpty()) {
-                throw new Exception("OpenAI returned empty response");
-            }
-            
-            var firstImage = imageResponse.get(0);
-            if (firstImage == null) {
-                throw new Exception("OpenAI returned null image data");
-            }
-            
-            String imageUrl = firstImage.getUrl();
-            if (imageUrl == null || imageUrl.trim().isEmpty()) {
-                throw new Exception("OpenAI returned null or empty image URL");
-            }
-            
-            System.out.println("Successfully received image URL: " + imageUrl);
-            return imageUrl;
-            
-        } catch (CompletionException e) {
-            System.err.println("DALL·E API request failed:");
-            String errorMessage = "Unknown error";
-            
-            if (e.getCause() != null) {
-                errorMessage = e.getCause().getMessage();
-                e.getCause().printStackTrace();
-            } else {
-                e.printStackTrace();
-                errorMessage = e.getMessage();
-            }
-            
-            throw new Exception("Failed to generate image with DALL·E: " + errorMessage, e);
-        } catch (Exception e) {
-            System.err.println("Unexpected error during DALL·E request: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
+        logger.info("Making DALL·E request with model {}, size {} for prompt: {}",
+                imageRequest.getModel(), imageRequest.getSize(), imageRequest.getPrompt());
+
+        return submitImage(imageRequest)
+                .thenApply(imageResponse -> {
+                    if (imageResponse == null || imageResponse.isEmpty()) {
+                        throw new IllegalStateException("OpenAI returned empty response");
+                    }
+
+                    var firstImage = imageResponse.get(0);
+                    if (firstImage == null) {
+                        throw new IllegalStateException("OpenAI returned null image data");
+                    }
+
+                    String imageUrl = firstImage.getUrl();
+                    if (imageUrl == null || imageUrl.trim().isEmpty()) {
+                        throw new IllegalStateException("OpenAI returned null or empty image URL");
+                    }
+
+                    logger.info("Successfully received image URL: {}", imageUrl);
+                    return imageUrl;
+                })
+                .whenComplete((url, error) -> {
+                    if (error != null) {
+                        logger.warn("DALL·E request failed: {}", AsyncUtils.unwrap(error).getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Génère une image au format b64_json : le contenu arrive dans la réponse, sans second aller-retour
+     * pour le télécharger depuis l'URL du fournisseur. La chaîne brute est à décoder en flux vers le disque
+     * (voir Base64Decoding.stream) pour ne jamais tenir l'image décodée en mémoire
+     */
+    public CompletableFuture<String> generateImageBase64WithDalleAsync(ImageRequest imageRequest) {
+        if (imageRequest.getN() != 1) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Only support Single Image"));
+        }
+        if (imageRequest.getResponseFormat() != ImageResponseFormat.B64JSON) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Response format must be b64_json"));
         }
+
+        logger.info("Making DALL·E b64_json request with model {}, size {} for prompt: {}",
+                imageRequest.getModel(), imageRequest.getSize(), imageRequest.getPrompt());
+
+        return submitImage(imageRequest)
+                .thenApply(imageResponse -> {
+                    if (imageResponse == null || imageResponse.isEmpty() || imageResponse.get(0) == null) {
+                        throw new IllegalStateException("OpenAI returned empty response");
+                    }
+
+                    String b64Json = imageResponse.get(0).getB64Json();
+                    if (b64Json == null || b64Json.isEmpty()) {
+                        throw new IllegalStateException("OpenAI returned null or empty b64_json image");
+                    }
+                    return b64Json;
+                })
+                .whenComplete((b64Json, error) -> {
+                    if (error != null) {
+                        logger.warn("DALL·E request failed: {}", AsyncUtils.unwrap(error).getMessage());
+                    }
+                });
+    }
+
+    private CompletableFuture<List<Image>> submitImage(ImageRequest imageRequest) {
+        // Disjoncteur avant le limiteur : un circuit ouvert échoue sans attendre de permis
+        return resilience.execute("images", OpenAIResilience.Policy.IMAGE,
+                () -> circuitBreakers.forModel(imageRequest.getModel()).execute(
+                        () -> rateLimiters.images().submit(() -> metrics.timeCall(imageRequest.getModel(), "images",
+                                        () -> openAI.images().create(imageRequest)))
+                                .thenApply(images -> {
+                                    metrics.recordImage(imageRequest);
+                                    return images;
+                                })));
     }
 
     public String generateWithChatGPT(String prompt, String context) {
-        var chatRequest = ChatRequest.builder()
-                .model("gpt-4o-mini")
+        return generateWithChatGPTAsync(prompt, context).join();
+    }
+
+    public CompletableFuture<String> generateWithChatGPTAsync(String prompt, String context) {
+        return cachedChat(ChatCompletionCacheService.key(CHAT_MODEL, 300, context, prompt),
+                promptChatRequest(prompt, context, false));
+    }
+
+    // stream=true demande l'usage dans le dernier morceau du flux (sans lui, les flux ne comptent ni jetons ni coût)
+    private ChatRequest promptChatRequest(String prompt, String context, boolean stream) {
+        return ChatRequest.builder()
+                .model(CHAT_MODEL)
                 .message(SystemMessage.of(context))
                 .message(UserMessage.of(prompt))
                 .temperature(0.0)
                 .maxCompletionTokens(300)
+                .streamOptions(stream ? StreamOptions.of(true) : null)
                 .build();
-        var futureChat = openAI.chatCompletions().create(chatRequest);
-        var chatResponse = futureChat.join();
-        return chatResponse.firstContent();
     }
 
     public String generateWithChatGPTFromImageURL(String prompt, String imageURL, String context) {
-        var chatRequest = ChatRequest.builder()
-                .model("gpt-4o-mini")
+        return generateWithChatGPTFromImageURLAsync(prompt, imageURL, context).join();
+    }
+
+    public CompletableFuture<String> generateWithChatGPTFromImageURLAsync(String prompt, String imageURL,
+                                                                         String context) {
+        return cachedChat(ChatCompletionCacheService.key(CHAT_MODEL, 300, context, prompt, imageURL),
+                imageUrlChatRequest(prompt, imageURL, context, false));
+    }
+
+    private ChatRequest imageUrlChatRequest(String prompt, String imageURL, String context, boolean stream) {
+        return ChatRequest.builder()
+                .model(CHAT_MODEL)
                 .messages(List.of(
                                 UserMessage.of(List.of(
                                                 ContentPartText.of(context),
@@ -124,51 +241,153 @@ public class OpenAICallsService {
                 )
                 .temperature(0.0)
                 .maxCompletionTokens(300)
+                .streamOptions(stream ? StreamOptions.of(true) : null)
                 .build();
-        var futureChat = openAI.chatCompletions().create(chatRequest);
-        var chatResponse = futureChat.join();
-
-        return chatResponse.firstContent();
     }
 
     public String generateWithChatGPTFromLocalImage(String prompt, String imagePath, String context) {
-        var chatRequest = ChatRequest.builder()
-                .model("gpt-4o-mini")
-                .messages(List.of(
-                        UserMessage.of(List.of(
-                                ContentPartText.of(context),
-                                ContentPartText.of(prompt),
-                                ContentPartImageUrl.of(ImageUrl.of(
-                                        Base64Util.encode(imagePath, Base64Util.MediaType.IMAGE)))))))
-                .temperature(0.0)
-                .maxCompletionTokens(500)
-                .build();
-        var futureChat = openAI.chatCompletions().create(chatRequest);
-        var chatResponse = futureChat.join();
+        return generateWithChatGPTFromLocalImageAsync(prompt, imagePath, context).join();
+    }
 
-        return chatResponse.firstContent();
+    public CompletableFuture<String> generateWithChatGPTFromLocalImageAsync(String prompt, String imagePath,
+                                                                           String context) {
+        // Lecture, réduction et encodage de l'image hors du thread appelant
+        return CompletableFuture.supplyAsync(() -> visionPreprocessor.prepare(Path.of(imagePath)), generationExecutor)
+                .thenCompose(image -> describeImage(prompt, image, context));
     }
 
     public String generateWithChatGPTFromLocalImageRaw(String prompt, byte[] imageBytes, String context) {
+        return generateWithChatGPTFromLocalImageRawAsync(prompt, imageBytes, context).join();
+    }
 
-        // Encode the image bytes to Base64
-        String base64Image = Base64.getEncoder().encodeToString(imageBytes);
+    public CompletableFuture<String> generateWithChatGPTFromLocalImageRawAsync(String prompt, byte[] imageBytes,
+                                                                              String context) {
+        return CompletableFuture.supplyAsync(() -> visionPreprocessor.prepare(imageBytes), generationExecutor)
+                .thenCompose(image -> describeImage(prompt, image, context));
+    }
 
+    // La clé de cache porte sur l'empreinte du contenu de l'image, pas sur sa data URL de plusieurs centaines de Ko
+    private CompletableFuture<String> describeImage(String prompt, VisionImagePreprocessor.PreparedImage image,
+                                                   String context) {
         var chatRequest = ChatRequest.builder()
-                .model("gpt-4o-mini")
+                .model(CHAT_MODEL)
                 .messages(List.of(
                         UserMessage.of(List.of(
                                 ContentPartText.of(context),
                                 ContentPartText.of(prompt),
-                                ContentPartImageUrl.of(
-                                        ImageUrl.of(base64Image)
-                                )))))
+                                ContentPartImageUrl.of(ImageUrl.of(image.dataUrl()))))))
                 .temperature(0.0)
                 .maxCompletionTokens(500)
                 .build();
-        var futureChat = openAI.chatCompletions().create(chatRequest);
-        var chatResponse = futureChat.join();
+        return cachedChat(ChatCompletionCacheService.key(CHAT_MODEL, 500, context, prompt, "image:" + image.cacheKey()),
+                chatRequest);
+    }
+
+    /**
+     * Génère un texte en streaming : chaque morceau est transmis à onToken dès sa réception
+     * @param onToken Reçoit les morceaux de texte dans l'ordre (le texte entier d'un coup si la réponse est en cache)
+     * @return Le texte complet une fois le flux terminé
+     */
+    public CompletableFuture<String> streamWithChatGPT(String prompt, String context, Consumer<String> onToken) {
+        return cachedStream(ChatCompletionCacheService.key(CHAT_MODEL, 300, context, prompt),
+                promptChatRequest(prompt, context, true), onToken);
+    }
 
-        return chatResponse.firstContent();
+    public CompletableFuture<String> streamWithChatGPTFromImageURL(String prompt, String imageURL, String context,
+                                                                   Consumer<String> onToken) {
+        return cachedStream(ChatCompletionCacheService.key(CHAT_MODEL, 300, context, prompt, imageURL),
+                imageUrlChatRequest(prompt, imageURL, context, true), onToken);
+    }
+
+    // Même clé que la version non streamée : un texte déjà généré est renvoyé d'un bloc
+    private CompletableFuture<String> cachedStream(String cacheKey, ChatRequest chatRequest, Consumer<String> onToken) {
+        AtomicBoolean streamed = new AtomicBoolean(false);
+        return completionCache.getOrCompute(cacheKey, CHAT_MODEL,
+                        () -> resilience.execute("chat.stream", OpenAIResilience.Policy.STREAM,
+                                () -> circuitBreakers.forModel(CHAT_MODEL).execute(
+                                        () -> rateLimiters.chat().submit(() -> metrics.timeCall(CHAT_MODEL, "chat.stream", () -> {
+                                            long startedAt = System.nanoTime();
+                                            return openAI.chatCompletions().createStream(chatRequest)
+                                                    .thenCompose(stream -> consumeStreamAsync(stream, onToken, streamed, startedAt));
+                                        })))))
+                .thenApply(text -> {
+                    if (!streamed.get() && text != null) {
+                        onToken.accept(text);
+                    }
+                    return text;
+                });
+    }
+
+    // supplyAsync plutôt que thenApplyAsync : un refus de l'exécuteur fait échouer le future au lieu de le laisser en suspens
+    private CompletableFuture<String> consumeStreamAsync(Stream<Chat> stream, Consumer<String> onToken,
+                                                         AtomicBoolean streamed, long startedAt) {
+        try {
+            return CompletableFuture.supplyAsync(() -> consumeStream(stream, onToken, streamed, startedAt), streamExecutor);
+        } catch (RejectedExecutionException e) {
+            // Plus de thread de lecture disponible : on libère la connexion
+            stream.close();
+            throw e;
+        }
+    }
+
+    // Bloquant : lit le flux SSE d'OpenAI jusqu'au bout, sur l'exécuteur dédié aux flux
+    private String consumeStream(Stream<Chat> stream, Consumer<String> onToken, AtomicBoolean streamed,
+                                 long startedAt) {
+        StringBuilder fullText = new StringBuilder();
+        try (stream) {
+            // Le dernier morceau porte l'usage (stream_options.include_usage), sans choices
+            stream.peek(chunk -> metrics.recordUsage(CHAT_MODEL, chunk.getUsage()))
+                    .filter(chunk -> chunk.getChoices() != null && !chunk.getChoices().isEmpty()
+                            && chunk.firstContent() != null)
+                    .map(Chat::firstContent)
+                    .forEach(token -> {
+                        if (streamed.compareAndSet(false, true)) {
+                            meterRegistry.timer("aikea.openai.stream.time.to.first.token", "model", CHAT_MODEL)
+                                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                        }
+                        fullText.append(token);
+                        try {
+                            onToken.accept(token);
+                        } catch (RuntimeException e) {
+                            // Client déconnecté : on arrête la lecture (la connexion est fermée avec le flux)
+                            // sans que l'échec soit compté contre OpenAI par le disjoncteur et les métriques
+                            throw new StreamAbortedException("Stream consumer is gone", e);
+                        }
+                    });
+        }
+        meterRegistry.timer("aikea.openai.stream.duration", "model", CHAT_MODEL)
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        return fullText.toString();
+    }
+
+    // Toutes les requêtes chat sont à température 0 : même entrée, même réponse, on la sert depuis le cache
+    private CompletableFuture<String> cachedChat(String cacheKey, ChatRequest chatRequest) {
+        return completionCache.getOrCompute(cacheKey, CHAT_MODEL,
+                        () -> resilience.execute("chat", OpenAIResilience.Policy.CHAT,
+                                () -> circuitBreakers.forModel(CHAT_MODEL).execute(() -> callChat(chatRequest))))
+                .exceptionallyCompose(error -> staleFallback(cacheKey, error));
+    }
+
+    private CompletableFuture<String> callChat(ChatRequest chatRequest) {
+        return rateLimiters.chat().submit(() -> metrics.timeCall(CHAT_MODEL, "chat",
+                        () -> openAI.chatCompletions().create(chatRequest)))
+                .thenApply(chat -> {
+                    metrics.recordUsage(CHAT_MODEL, chat.getUsage());
+                    return chat.firstContent();
+                });
+    }
+
+    // Mode dégradé : circuit ouvert, on sert une réponse expirée du cache persistant si elle existe encore
+    private CompletableFuture<String> staleFallback(String cacheKey, Throwable error) {
+        if (!degradedModeEnabled || OpenAIErrorType.classify(error) != OpenAIErrorType.CIRCUIT_OPEN) {
+            return CompletableFuture.failedFuture(AsyncUtils.unwrap(error));
+        }
+        return completionCache.findStaleAsync(cacheKey).thenCompose(staleText -> {
+            if (staleText == null) {
+                return CompletableFuture.failedFuture(AsyncUtils.unwrap(error));
+            }
+            meterRegistry.counter("aikea.generation.degraded", "type", "text", "source", "stale-cache").increment();
+            return CompletableFuture.completedFuture(staleText);
+        });
     }
 }
@@ -0,0 +1,46 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Un disjoncteur par modèle OpenAI : une panne de dall-e-3 ne coupe ni dall-e-2 ni le chat,
+ * ce qui permet de se replier sur la qualité LOW
+ */
+@Service
+@RequiredArgsConstructor
+public class OpenAICircuitBreakers {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    @Value("${app.openai.circuit.window-size:20}")
+    private int windowSize;
+
+    @Value("${app.openai.circuit.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${app.openai.circuit.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${app.openai.circuit.open-duration-ms:30000}")
+    private long openDurationMs;
+
+    @Value("${app.openai.circuit.half-open-calls:3}")
+    private int halfOpenCalls;
+
+    public CircuitBreaker forModel(String model) {
+        return breakers.computeIfAbsent(model, name -> new CircuitBreaker(name, windowSize, minimumCalls,
+                failureRateThreshold, openDurationMs, halfOpenCalls, meterRegistry));
+    }
+
+    public boolean isAvailable(String model) {
+        return forModel(model).isCallPermitted();
+    }
+}
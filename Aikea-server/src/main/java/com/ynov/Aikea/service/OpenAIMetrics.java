@@ -0,0 +1,142 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.OpenAIErrorType;
+import com.ynov.Aikea.atools.QualityEnum;
+import io.github.sashirestela.openai.common.Usage;
+import io.github.sashirestela.openai.domain.image.ImageRequest;
+import io.github.sashirestela.openai.domain.image.Size;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Métriques des appels OpenAI, exposées sur /actuator/prometheus :
+ * latence par modèle, jetons consommés, images par qualité, erreurs par type
+ * et dépense estimée en dollars (tarifs publics, surchargeables par configuration).
+ */
+@Service
+@RequiredArgsConstructor
+public class OpenAIMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.openai.pricing.gpt-4o-mini.input-per-million:0.15}")
+    private double chatInputPerMillion;
+
+    @Value("${app.openai.pricing.gpt-4o-mini.output-per-million:0.60}")
+    private double chatOutputPerMillion;
+
+    @Value("${app.openai.pricing.dall-e-2.image:0.016}")
+    private double dalle2ImagePrice;
+
+    @Value("${app.openai.pricing.dall-e-3.image:0.040}")
+    private double dalle3ImagePrice;
+
+    // HD ou format large (1792 px)
+    @Value("${app.openai.pricing.dall-e-3.image-large:0.080}")
+    private double dalle3LargeImagePrice;
+
+    // HD et format large
+    @Value("${app.openai.pricing.dall-e-3.image-hd-wide:0.120}")
+    private double dalle3HdWideImagePrice;
+
+    /**
+     * Chronomètre un appel réel au fournisseur (une tentative : relances et hedging comptent chacun)
+     * @param model Le modèle appelé
+     * @param operation images, chat ou chat.stream
+     * @param call L'appel, lancé une fois le permis du limiteur obtenu
+     */
+    public <T> CompletableFuture<T> timeCall(String model, String operation, Supplier<CompletableFuture<T>> call) {
+        long startedAt = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, error) -> {
+            // Flux interrompu par le client : ni succès ni erreur du fournisseur
+            boolean aborted = error != null && OpenAIErrorType.classify(error) == OpenAIErrorType.ABORTED;
+            callTimer(model, operation, error == null ? "success" : aborted ? "aborted" : "error")
+                    .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            if (error != null && !aborted) {
+                recordError(model, operation, error);
+            }
+        });
+    }
+
+    public void recordError(String model, String operation, Throwable error) {
+        meterRegistry.counter("aikea.openai.errors",
+                "model", model, "operation", operation, "type", OpenAIErrorType.classify(error).name()).increment();
+    }
+
+    /**
+     * Jetons du bloc usage d'une réponse chat, et dépense correspondante
+     */
+    public void recordUsage(String model, Usage usage) {
+        if (usage == null) {
+            return;
+        }
+        long promptTokens = usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+        long completionTokens = usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0;
+        meterRegistry.counter("aikea.openai.tokens", "model", model, "type", "prompt").increment(promptTokens);
+        meterRegistry.counter("aikea.openai.tokens", "model", model, "type", "completion").increment(completionTokens);
+        recordCost(model, "chat",
+                (promptTokens * chatInputPerMillion + completionTokens * chatOutputPerMillion) / 1_000_000);
+    }
+
+    /**
+     * Une image générée (et facturée), comptée selon la qualité applicative correspondante
+     */
+    public void recordImage(ImageRequest imageRequest) {
+        String model = imageRequest.getModel();
+        meterRegistry.counter("aikea.openai.images",
+                "model", model, "quality", qualityOf(imageRequest).name()).increment();
+        recordCost(model, "images", imagePrice(imageRequest));
+    }
+
+    // Inverse de ImageGenerationService.buildImageRequest
+    static QualityEnum qualityOf(ImageRequest imageRequest) {
+        if ("dall-e-2".equals(imageRequest.getModel())) {
+            return QualityEnum.LOW;
+        }
+        return imageRequest.getQuality() == ImageRequest.Quality.HD ? QualityEnum.HIGH : QualityEnum.MEDIUM;
+    }
+
+    private double imagePrice(ImageRequest imageRequest) {
+        if ("dall-e-2".equals(imageRequest.getModel())) {
+            return dalle2ImagePrice;
+        }
+        boolean wide = imageRequest.getSize() != null && imageRequest.getSize() != Size.X1024;
+        boolean hd = imageRequest.getQuality() == ImageRequest.Quality.HD;
+        if (hd && wide) {
+            return dalle3HdWideImagePrice;
+        }
+        return hd || wide ? dalle3LargeImagePrice : dalle3ImagePrice;
+    }
+
+    private void recordCost(String model, String operation, double usd) {
+        if (usd > 0) {
+            meterRegistry.counter("aikea.openai.cost.usd", "model", model, "operation", operation).increment(usd);
+        }
+    }
+
+    private Timer callTimer(String model, String operation, String outcome) {
+        // Histogramme publié pour calculer les percentiles côté Prometheus, par modèle
+        return Timer.builder("aikea.openai.call.duration")
+                .tag("model", model)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(50))
+                .maximumExpectedValue(Duration.ofMinutes(2))
+                .register(meterRegistry);
+    }
+}
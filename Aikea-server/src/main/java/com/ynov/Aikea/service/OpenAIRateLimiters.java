@@ -0,0 +1,146 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.AdaptiveRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Limiteurs de débit OpenAI, un par famille d'endpoints (images / chat)
+ * car OpenAI applique des limites séparées par modèle.
+ */
+@Service
+@RequiredArgsConstructor
+public class OpenAIRateLimiters {
+
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.openai.limiter.images.requests-per-minute:50}")
+    private int imagesRequestsPerMinute;
+
+    @Value("${app.openai.limiter.images.burst:10}")
+    private int imagesBurst;
+
+    @Value("${app.openai.limiter.images.initial-concurrency:4}")
+    private int imagesInitialConcurrency;
+
+    @Value("${app.openai.limiter.images.max-concurrency:16}")
+    private int imagesMaxConcurrency;
+
+    @Value("${app.openai.limiter.chat.requests-per-minute:500}")
+    private int chatRequestsPerMinute;
+
+    @Value("${app.openai.limiter.chat.burst:50}")
+    private int chatBurst;
+
+    @Value("${app.openai.limiter.chat.initial-concurrency:16}")
+    private int chatInitialConcurrency;
+
+    @Value("${app.openai.limiter.chat.max-concurrency:64}")
+    private int chatMaxConcurrency;
+
+    @Value("${app.openai.limiter.max-queue-size:200}")
+    private int maxQueueSize;
+
+    @Value("${app.openai.limiter.max-wait-ms:60000}")
+    private long maxWaitMillis;
+
+    @Value("${app.openai.limiter.throttle-cooldown-ms:2000}")
+    private long throttleCooldownMillis;
+
+    private ScheduledExecutorService scheduler;
+    private AdaptiveRateLimiter imagesLimiter;
+    private AdaptiveRateLimiter chatLimiter;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "openai-limiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        imagesLimiter = new AdaptiveRateLimiter("images", imagesRequestsPerMinute, imagesBurst,
+                imagesInitialConcurrency, 1, imagesMaxConcurrency,
+                maxQueueSize, maxWaitMillis, throttleCooldownMillis, scheduler, meterRegistry);
+        chatLimiter = new AdaptiveRateLimiter("chat", chatRequestsPerMinute, chatBurst,
+                chatInitialConcurrency, 2, chatMaxConcurrency,
+                maxQueueSize, maxWaitMillis, throttleCooldownMillis, scheduler, meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public AdaptiveRateLimiter images() {
+        return imagesLimiter;
+    }
+
+    public AdaptiveRateLimiter chat() {
+        return chatLimiter;
+    }
+
+    /**
+     * Transmet les en-têtes de limite d'une réponse OpenAI au limiteur concerné
+     * @param path Le chemin de la requête (ex: /v1/images/generations)
+     * @param headers Les en-têtes de la réponse
+     */
+    public void onResponseHeaders(String path, HttpHeaders headers) {
+        AdaptiveRateLimiter limiter = path.contains("/images/") ? imagesLimiter
+                : path.contains("/chat/") ? chatLimiter
+                : null;
+        if (limiter == null) {
+            return;
+        }
+
+        Integer remaining = headers.firstValue("x-ratelimit-remaining-requests")
+                .map(OpenAIRateLimiters::parseInteger)
+                .orElse(null);
+        Duration resetAfter = headers.firstValue("retry-after")
+                .map(value -> parseDuration(value + "s"))
+                .or(() -> headers.firstValue("x-ratelimit-reset-requests").map(OpenAIRateLimiters::parseDuration))
+                .orElse(null);
+
+        if (remaining != null || resetAfter != null) {
+            limiter.onRateLimitHeaders(remaining, resetAfter);
+        }
+    }
+
+    private static Integer parseInteger(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Format OpenAI : "20ms", "1s", "6m0s", "1h30m5.5s"
+    static Duration parseDuration(String value) {
+        Matcher matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        boolean found = false;
+        while (matcher.find()) {
+            found = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "ms" -> amount;
+                case "s" -> amount * 1_000;
+                case "m" -> amount * 60_000;
+                default -> amount * 3_600_000;
+            };
+        }
+        return found ? Duration.ofMillis((long) Math.ceil(millis)) : null;
+    }
+}
@@ -0,0 +1,271 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.AsyncUtils;
+import com.ynov.Aikea.atools.Deadline;
+import com.ynov.Aikea.atools.LatencyWindow;
+import com.ynov.Aikea.atools.OpenAIErrorType;
+import com.ynov.Aikea.atools.RateLimitExceededException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Échéance, relances et requêtes doublées (hedging) autour des appels OpenAI.
+ * <ul>
+ *     <li>chaque tentative est bornée par l'échéance de la requête HTTP (voir DeadlineFilter)</li>
+ *     <li>relances avec backoff exponentiel et jitter, seulement quand l'appel peut être rejoué sans risque</li>
+ *     <li>chat : une seconde requête est lancée si la première dépasse le p95 récent, dans la limite d'un budget</li>
+ * </ul>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OpenAIResilience {
+
+    public enum Policy {
+        /** Chat à température 0 : rejouable, relances sur 429 / timeout / réseau / 5xx, hedging possible */
+        CHAT,
+        /** DALL·E : chaque image est facturée, relance seulement si la requête n'a pas été traitée (429, connexion) */
+        IMAGE,
+        /** Chat streamé : des morceaux ont pu partir chez le client, seule l'échéance s'applique */
+        STREAM
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.openai.deadline.default-ms:120000}")
+    private long defaultDeadlineMs;
+
+    @Value("${app.openai.retry.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.openai.retry.base-delay-ms:500}")
+    private long baseDelayMs;
+
+    @Value("${app.openai.retry.max-delay-ms:8000}")
+    private long maxDelayMs;
+
+    @Value("${app.openai.attempt-timeout.chat-ms:30000}")
+    private long chatAttemptTimeoutMs;
+
+    @Value("${app.openai.attempt-timeout.image-ms:90000}")
+    private long imageAttemptTimeoutMs;
+
+    @Value("${app.openai.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+
+    @Value("${app.openai.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${app.openai.hedge.min-delay-ms:500}")
+    private long hedgeMinDelayMs;
+
+    @Value("${app.openai.hedge.min-samples:20}")
+    private int hedgeMinSamples;
+
+    // Part maximale de requêtes doublées : borne le surcoût à quelques pourcents
+    @Value("${app.openai.hedge.max-ratio:0.05}")
+    private double hedgeMaxRatio;
+
+    @Value("${app.openai.hedge.window-size:200}")
+    private int latencyWindowSize;
+
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private double hedgeBudget;
+
+    /**
+     * Exécute un appel OpenAI avec la politique donnée
+     * @param operation Nom de l'opération pour les métriques (ex: "chat", "images")
+     * @param policy Ce qui peut être rejoué ou doublé
+     * @param call Lance une tentative (passage par le limiteur de débit compris)
+     * @return Le résultat de la première tentative réussie, ou la dernière erreur
+     */
+    public <T> CompletableFuture<T> execute(String operation, Policy policy, Supplier<CompletableFuture<T>> call) {
+        Deadline deadline = Deadline.currentOr(Duration.ofMillis(defaultDeadlineMs));
+        if (policy == Policy.CHAT) {
+            creditHedgeBudget();
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(operation, policy, call, deadline, 1, result);
+        return result;
+    }
+
+    private <T> void attempt(String operation, Policy policy, Supplier<CompletableFuture<T>> call,
+                             Deadline deadline, int attempt, CompletableFuture<T> result) {
+        if (deadline.isExpired()) {
+            meterRegistry.counter("aikea.openai.deadline.exceeded", "operation", operation).increment();
+            result.completeExceptionally(new TimeoutException("Deadline exceeded before OpenAI " + operation + " call"));
+            return;
+        }
+
+        Deadline attemptDeadline = switch (policy) {
+            case CHAT -> deadline.atMost(Duration.ofMillis(chatAttemptTimeoutMs));
+            case IMAGE -> deadline.atMost(Duration.ofMillis(imageAttemptTimeoutMs));
+            case STREAM -> deadline;
+        };
+        CompletableFuture<T> future = policy == Policy.CHAT && hedgeEnabled
+                ? hedged(operation, call, attemptDeadline)
+                : timed(operation, call, attemptDeadline);
+
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = AsyncUtils.unwrap(error);
+            OpenAIErrorType type = OpenAIErrorType.classify(cause);
+            long delayMs = backoffMillis(attempt);
+            if (attempt >= maxAttempts || !isRetryable(policy, cause, type)
+                    || delayMs >= deadline.remainingMillis()) {
+                if (type == OpenAIErrorType.TIMEOUT && deadline.isExpired()) {
+                    meterRegistry.counter("aikea.openai.deadline.exceeded", "operation", operation).increment();
+                }
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            meterRegistry.counter("aikea.openai.retries", "operation", operation, "reason", type.name()).increment();
+            log.warn("Retrying OpenAI {} call (attempt {}) in {} ms after {}: {}",
+                    operation, attempt + 1, delayMs, type, cause.getMessage());
+            // Pas besoin de lire retry-after ici : le limiteur suspend déjà l'envoi jusqu'au reset annoncé
+            CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS)
+                    .execute(() -> attempt(operation, policy, call, deadline, attempt + 1, result));
+        });
+    }
+
+    private boolean isRetryable(Policy policy, Throwable cause, OpenAIErrorType type) {
+        // Le limiteur local a déjà fait attendre la requête jusqu'à son maximum
+        if (cause instanceof RateLimitExceededException) {
+            return false;
+        }
+        return switch (policy) {
+            case CHAT -> type == OpenAIErrorType.RATE_LIMIT || type == OpenAIErrorType.TIMEOUT
+                    || type == OpenAIErrorType.NETWORK || type == OpenAIErrorType.SERVER;
+            // Un timeout ou une 5xx peut survenir après la génération (et la facturation) de l'image
+            case IMAGE -> type == OpenAIErrorType.RATE_LIMIT || type == OpenAIErrorType.NETWORK;
+            case STREAM -> false;
+        };
+    }
+
+    // Backoff exponentiel avec "equal jitter" : entre la moitié et la totalité du palier
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    private <T> CompletableFuture<T> timed(String operation, Supplier<CompletableFuture<T>> call, Deadline deadline) {
+        long startedAt = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        // thenApply crée un nouveau future : le timeout ne complète pas celui du limiteur
+        return deadline.bound(future.thenApply(value -> {
+            latencyWindow(operation).record(System.nanoTime() - startedAt);
+            return value;
+        }));
+    }
+
+    private <T> CompletableFuture<T> hedged(String operation, Supplier<CompletableFuture<T>> call, Deadline deadline) {
+        long hedgeDelayNanos = hedgeDelayNanos(operation);
+        if (hedgeDelayNanos < 0 || hedgeDelayNanos >= deadline.remainingNanos()) {
+            return timed(operation, call, deadline);
+        }
+
+        HedgedCall<T> hedgedCall = new HedgedCall<>();
+        hedgedCall.start();
+        timed(operation, call, deadline).whenComplete((value, error) -> hedgedCall.settle(value, error));
+
+        CompletableFuture.delayedExecutor(hedgeDelayNanos, TimeUnit.NANOSECONDS).execute(() -> {
+            if (hedgedCall.result.isDone()) {
+                return;
+            }
+            if (!tryConsumeHedgeBudget()) {
+                countHedge(operation, "skipped");
+                return;
+            }
+            if (!hedgedCall.start()) {
+                return;
+            }
+            countHedge(operation, "launched");
+            timed(operation, call, deadline).whenComplete((value, error) -> {
+                if (hedgedCall.settle(value, error)) {
+                    countHedge(operation, "won");
+                }
+            });
+        });
+        return hedgedCall.result;
+    }
+
+    private long hedgeDelayNanos(String operation) {
+        LatencyWindow window = latencyWindow(operation);
+        if (window.count() < hedgeMinSamples) {
+            return -1;
+        }
+        return Math.max(window.percentile(hedgePercentile), TimeUnit.MILLISECONDS.toNanos(hedgeMinDelayMs));
+    }
+
+    private LatencyWindow latencyWindow(String operation) {
+        return latencies.computeIfAbsent(operation, key -> new LatencyWindow(latencyWindowSize));
+    }
+
+    private synchronized void creditHedgeBudget() {
+        // Plafonné pour qu'une longue période calme n'autorise pas une rafale de doublons
+        hedgeBudget = Math.min(10, hedgeBudget + hedgeMaxRatio);
+    }
+
+    private synchronized boolean tryConsumeHedgeBudget() {
+        if (hedgeBudget < 1) {
+            return false;
+        }
+        hedgeBudget -= 1;
+        return true;
+    }
+
+    private void countHedge(String operation, String outcome) {
+        meterRegistry.counter("aikea.openai.hedges", "operation", operation, "outcome", outcome).increment();
+    }
+
+    // La première réponse réussie l'emporte ; l'échec n'est remonté que si toutes les tentatives ont échoué
+    private static final class HedgedCall<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private int outstanding;
+        private Throwable firstError;
+
+        private synchronized boolean start() {
+            if (result.isDone()) {
+                return false;
+            }
+            outstanding++;
+            return true;
+        }
+
+        private synchronized boolean settle(T value, Throwable error) {
+            outstanding--;
+            if (error == null) {
+                return result.complete(value);
+            }
+            if (firstError == null) {
+                firstError = error;
+            }
+            if (outstanding == 0) {
+                result.completeExceptionally(firstError);
+            }
+            return false;
+        }
+    }
+}
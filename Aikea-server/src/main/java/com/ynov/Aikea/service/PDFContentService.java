@@ -4,13 +4,21 @@ import com.lowagie.text.Document;
 import com.lowagie.text.Image;
 import com.lowagie.text.Paragraph;
 import com.lowagie.text.pdf.PdfWriter;
+import com.ynov.Aikea.atools.AsyncUtils;
+import com.ynov.Aikea.atools.IngestedFile;
 import com.ynov.Aikea.atools.QualityEnum;
+import com.ynov.Aikea.atools.TeeOutputStream;
 import com.ynov.Aikea.config.JwtTokenProvider;
 import com.ynov.Aikea.dto.*;
+import com.ynov.Aikea.entity.Upload;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
@@ -22,6 +30,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -34,8 +45,27 @@ public class PDFContentService {
     private final ImageGenerationService imageGenerationService;
     private final TextGenerationService textGenerationService;
     private final UploadService uploadService;
+    private final BlobStoreService blobStoreService;
+    private final RenderedPdfCacheService renderedPdfCache;
+    @Qualifier("generationExecutor")
+    private final Executor generationExecutor;
+    private final MeterRegistry meterRegistry;
     private static final Logger logger = LogManager.getLogger();
 
+    // Mode pipeline : la description part du prompt en même temps que la génération d'image,
+    // la latence devient celle de l'étape la plus longue au lieu de leur somme.
+    // Désactivé par défaut : le texte par défaut reste la description de l'image générée
+    @Value("${app.pdf.pipeline.enabled:false}")
+    private boolean pipelineEnabled;
+
+    // Seconde passe à partir de l'image une fois générée (description plus fidèle, meubles visibles),
+    // retenue seulement si elle aboutit dans le délai ; sinon le brouillon issu du prompt est utilisé
+    @Value("${app.pdf.pipeline.refine.enabled:true}")
+    private boolean refineEnabled;
+
+    @Value("${app.pdf.pipeline.refine.timeout-ms:10000}")
+    private long refineTimeoutMs;
+
 
     @PostConstruct
     public void init() {
@@ -64,21 +94,106 @@ public class PDFContentService {
 
 
     public PDFContentDTO generatePDFContent(ImageGenerationRequest imageGenerationRequest) throws Exception {
+        return AsyncUtils.await(generatePDFContentAsync(imageGenerationRequest));
+    }
 
-        GeneratedImageDTO generatedImage = imageGenerationService.generateAndSaveImage(
-                imageGenerationRequest.getPrompt(), QualityEnum.valueOf(
-                        imageGenerationRequest.getQuality().toUpperCase()
-                )
-        );
-        GeneratedTextDTO generatedText = textGenerationService.generateTextFromImageUrl(generatedImage.getUrl());
+    public CompletableFuture<PDFContentDTO> generatePDFContentAsync(ImageGenerationRequest imageGenerationRequest) {
+        QualityEnum quality;
+        try {
+            quality = QualityEnum.valueOf(imageGenerationRequest.getQuality().toUpperCase());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        if (pipelineEnabled) {
+            return generatePipelinedAsync(imageGenerationRequest, quality);
+        }
+
+        return imageGenerationService.generateAndSaveImageAsync(
+                        imageGenerationRequest.getPrompt(), quality, imageGenerationRequest.getReuse())
+                .thenCompose(generatedImage -> describeImageAsync(generatedImage)
+                        .thenApply(generatedText -> toPdfContent(generatedImage, generatedText)));
+    }
+
+    private CompletableFuture<PDFContentDTO> generatePipelinedAsync(ImageGenerationRequest request, QualityEnum quality) {
+        long startedAt = System.nanoTime();
+        CompletableFuture<GeneratedImageDTO> image = timed("image", imageGenerationService.generateAndSaveImageAsync(
+                request.getPrompt(), quality, request.getReuse()));
+        CompletableFuture<GeneratedTextDTO> draft = timed("draft", textGenerationService.generateTextAsync(request.getPrompt()));
 
+        CompletableFuture<GeneratedTextDTO> text = refineEnabled
+                ? image.thenCompose(generatedImage -> refine(generatedImage, draft))
+                : draft;
+
+        return timed("total", image.thenCombine(text, this::toPdfContent), startedAt);
+    }
+
+    // Le brouillon sert de repli si la passe sur l'image échoue ou dépasse son délai
+    private CompletableFuture<GeneratedTextDTO> refine(GeneratedImageDTO generatedImage,
+                                                       CompletableFuture<GeneratedTextDTO> draft) {
+        return timed("refine", describeImageAsync(generatedImage).copy())
+                .completeOnTimeout(null, refineTimeoutMs, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    logger.warn("Image-based description failed, using the prompt-based draft: {}",
+                            AsyncUtils.unwrap(e).getMessage());
+                    return null;
+                })
+                .thenCompose(refined -> {
+                    boolean useRefined = refined != null && !refined.isDegraded();
+                    meterRegistry.counter("aikea.pdf.pipeline.text", "source", useRefined ? "refined" : "draft")
+                            .increment();
+                    return useRefined ? CompletableFuture.completedFuture(refined) : draft;
+                });
+    }
+
+    private PDFContentDTO toPdfContent(GeneratedImageDTO generatedImage, GeneratedTextDTO generatedText) {
         PDFContentDTO pdfContent = new PDFContentDTO();
         pdfContent.setGeneratedText(generatedText);
         pdfContent.setGeneratedImage(generatedImage);
-
         return pdfContent;
     }
 
+    private <T> CompletableFuture<T> timed(String stage, CompletableFuture<T> future) {
+        return timed(stage, future, System.nanoTime());
+    }
+
+    // Durée de chaque étape du pipeline, mesurée depuis son lancement
+    private <T> CompletableFuture<T> timed(String stage, CompletableFuture<T> future, long startedAt) {
+        return future.whenComplete((value, error) -> Timer.builder("aikea.pdf.pipeline.stage")
+                .tag("stage", stage)
+                .tag("outcome", error == null ? "success" : "error")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS));
+    }
+
+    // Sans URL OpenAI (image réutilisée ou reçue en b64_json), on décrit le fichier enregistré
+    public CompletableFuture<GeneratedTextDTO> describeImageAsync(GeneratedImageDTO generatedImage) {
+        if (generatedImage.getUrl() != null) {
+            return textGenerationService.generateTextFromImageUrlAsync(generatedImage.getUrl());
+        }
+        return textGenerationService.generateTextFromLocalImageAsync(generatedImage.getStorageURL());
+    }
+
+    // Le rendu OpenPDF et l'enregistrement sont bloquants : on les sort du thread appelant
+    public CompletableFuture<MultipartFile> createPDFAsync(PDFContentDTO pdfContent) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return createPDF(pdfContent);
+            } catch (FileNotFoundException e) {
+                throw AsyncUtils.wrap(e);
+            }
+        }, generationExecutor);
+    }
+
+    /**
+     * @param pdfName Le nom d'un PDF produit par createPDF (getOriginalFilename du fichier renvoyé)
+     * @return Son chemin sur le disque
+     */
+    public Path resolvePdf(String pdfName) {
+        return Paths.get(basePath, pdfName);
+    }
+
     public String extractFilenameFromUrl(String url) {
         Pattern pattern = Pattern.compile("[^/]+$");
         Matcher matcher = pattern.matcher(url.split("\\?")[0]);
@@ -89,53 +204,15 @@ public class PDFContentService {
     }
 
     public MultipartFile createPDF(PDFContentDTO pdfContent) throws FileNotFoundException {
-        String externalID = pdfContent.getGeneratedImage().getExternalID();
-        String pdfName = externalID.substring(externalID.lastIndexOf('/') + 1) + ".pdf";
-        String pdfPath = basePath + "/" + pdfName;
-        File pdfFile = null;
+        String pdfName = pdfNameFor(pdfContent);
 
         try {
-            // Créer le dossier si besoin
-            Files.createDirectories(Path.of(basePath));
-
-            // Générer le PDF localement
-            Document document = new Document();
-            pdfFile = new File(pdfPath);
-            PdfWriter.getInstance(document, new FileOutputStream(pdfFile));
-            document.open();
-            document.add(new Paragraph(pdfContent.getGeneratedText().getText()));
-            Image image = Image.getInstance(pdfContent.getGeneratedImage().getStorageURL());
-            image.scaleAbsolute(300f, 200f); // largeur: 300 points, hauteur: 200 points
-            image.scalePercent(50); // 50% de la taille originale
-            image.scalePercent(75, 50); // 75% de largeur, 50% de hauteur
-
-            float maxWidth = document.getPageSize().getWidth() - document.leftMargin() - document.rightMargin();
-            float maxHeight = 300f;
-            image.scaleToFit(maxWidth, maxHeight);
-
-            float fixedWidth = 400f;
-            image.scaleToFit(fixedWidth, 10000); // hauteur très grande pour ne pas contraindre
-            image.setAlignment(Image.ALIGN_CENTER);
-            document.add(image);
-            document.close();
-
-            // Convertir le fichier PDF en MultipartFile pour uploadService
-            MultipartFile multipartFile = convertToMultipartFile(pdfFile, pdfName);
-
-            // Appel au service d'upload avec tous les paramètres requis
-            uploadService.saveFile(
-                    multipartFile,
-                    "pdf",                                  // fileType
-                    extractFilenameFromUrl(pdfContent.getGeneratedImage().getStorageURL()), // description
-                    "application/pdf",                      // contentType
-                    null,                                   // url (peut-être null si c'est local)
-                    null,                                   // bucketUrl (peut-être null si c'est local)
-                    true,                                   // isPublic (ajustez selon vos besoins)
-                    null,                                   // userId
-                    null                                    // categoryId (ajustez selon vos besoins)
-            );
-
-            return multipartFile;
+            // Le PDF est écrit une seule fois, dans le stockage par contenu ; pdf/<nom>.pdf en est un lien physique
+            File pdfFile = resolvePdf(pdfName).toFile();
+            blobStoreService.linkAlias(storePDF(pdfContent), pdfFile.toPath());
+
+            // Convertir le fichier PDF en MultipartFile pour les appelants
+            return convertToMultipartFile(pdfFile, pdfName);
         } catch (Exception e) {
             logger.info("Exception occurred while creating PDF", e );
 
@@ -143,6 +220,127 @@ public class PDFContentService {
         }
     }
 
+    /**
+     * Rend le PDF dans le stockage par contenu, sans créer l'alias pdf/<nom>.pdf : cet alias est partagé
+     * par tous les PDF d'une même image et recréé à chaque rendu, le blob ne change jamais de contenu. Bloquant.
+     * @return Le chemin du blob
+     */
+    public Path storePDF(PDFContentDTO pdfContent) throws IOException {
+        // Même texte, même image : le PDF déjà rendu est resservi, sans rendu ni nouvel enregistrement
+        String cacheKey = cacheKeyFor(pdfContent);
+        Path cached = renderedPdfCache.find(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        IngestedFile rendered = uploadService.ingest(output -> render(pdfContent, output, true));
+        Path blob = storeRendered(pdfContent, rendered, pdfNameFor(pdfContent));
+        renderedPdfCache.put(cacheKey, rendered.sha256(), rendered.size());
+        return blob;
+    }
+
+    /**
+     * Mode flux : le PDF est écrit directement dans le flux fourni (la réponse HTTP) au fil du rendu,
+     * sans fichier intermédiaire ni copie complète en mémoire. Bloquant.
+     * @param output Le flux de destination, laissé ouvert
+     * @param store true pour garder aussi le PDF dans le stockage par contenu (les mêmes octets sont écrits
+     *              en parallèle dans un fichier temporaire, enregistré une fois le rendu terminé)
+     * @return Le nom du PDF enregistré (cf. resolvePdf), ou null sans enregistrement
+     */
+    public String writePDF(PDFContentDTO pdfContent, OutputStream output, boolean store) throws IOException {
+        String cacheKey = cacheKeyFor(pdfContent);
+        Path cached = renderedPdfCache.find(cacheKey);
+        if (cached != null) {
+            Files.copy(cached, output);
+            if (!store) {
+                return null;
+            }
+            String pdfName = pdfNameFor(pdfContent);
+            blobStoreService.linkAlias(cached, resolvePdf(pdfName));
+            return pdfName;
+        }
+
+        if (!store) {
+            render(pdfContent, output, false);
+            return null;
+        }
+
+        String pdfName = pdfNameFor(pdfContent);
+        IngestedFile rendered = uploadService.ingest(file -> {
+            TeeOutputStream tee = new TeeOutputStream(output, file);
+            render(pdfContent, tee, false);
+            tee.flush();
+        });
+        try {
+            blobStoreService.linkAlias(storeRendered(pdfContent, rendered, pdfName), resolvePdf(pdfName));
+            renderedPdfCache.put(cacheKey, rendered.sha256(), rendered.size());
+            return pdfName;
+        } catch (Exception e) {
+            // Le client a déjà reçu le PDF complet : seul l'enregistrement est perdu
+            logger.warn("Streamed PDF {} could not be stored", pdfName, e);
+            Files.deleteIfExists(rendered.path());
+            return null;
+        }
+    }
+
+    // L'image est identifiée par son contenu : les jobs repris n'ont que son chemin, qui est celui d'un blob
+    private String cacheKeyFor(PDFContentDTO pdfContent) {
+        GeneratedImageDTO image = pdfContent.getGeneratedImage();
+        String imageHash = image.getContentHash();
+        if (imageHash == null && image.getStorageURL() != null) {
+            imageHash = blobStoreService.hashOf(Paths.get(image.getStorageURL()));
+        }
+        return RenderedPdfCacheService.key(pdfContent.getGeneratedText().getText(), imageHash);
+    }
+
+    private String pdfNameFor(PDFContentDTO pdfContent) {
+        String externalID = pdfContent.getGeneratedImage().getExternalID();
+        return externalID.substring(externalID.lastIndexOf('/') + 1) + ".pdf";
+    }
+
+    // Renvoie le chemin du blob
+    private Path storeRendered(PDFContentDTO pdfContent, IngestedFile rendered, String pdfName) throws IOException {
+        // Appel au service d'upload avec tous les paramètres requis
+        Upload savedUpload = uploadService.saveIngestedFile(
+                rendered,
+                pdfName,
+                "application/pdf",
+                "pdf",                                  // fileType
+                extractFilenameFromUrl(pdfContent.getGeneratedImage().getStorageURL()), // description
+                "application/pdf",                      // contentType
+                null,                                   // url (peut-être null si c'est local)
+                null,                                   // bucketUrl (peut-être null si c'est local)
+                true,                                   // isPublic (ajustez selon vos besoins)
+                null,                                   // userId
+                null                                    // categoryId (ajustez selon vos besoins)
+        );
+
+        return Paths.get(savedUpload.getFilePath());
+    }
+
+    // closeStream=false laisse le flux ouvert à la fin du document (flux de réponse géré par Spring)
+    private void render(PDFContentDTO pdfContent, OutputStream output, boolean closeStream) throws IOException {
+        Document document = new Document();
+        PdfWriter writer = PdfWriter.getInstance(document, output);
+        writer.setCloseStream(closeStream);
+        document.open();
+        document.add(new Paragraph(pdfContent.getGeneratedText().getText()));
+        Image image = Image.getInstance(pdfContent.getGeneratedImage().getStorageURL());
+        image.scaleAbsolute(300f, 200f); // largeur: 300 points, hauteur: 200 points
+        image.scalePercent(50); // 50% de la taille originale
+        image.scalePercent(75, 50); // 75% de largeur, 50% de hauteur
+
+        float maxWidth = document.getPageSize().getWidth() - document.leftMargin() - document.rightMargin();
+        float maxHeight = 300f;
+        image.scaleToFit(maxWidth, maxHeight);
+
+        float fixedWidth = 400f;
+        image.scaleToFit(fixedWidth, 10000); // hauteur très grande pour ne pas contraindre
+        image.setAlignment(Image.ALIGN_CENTER);
+        document.add(image);
+        document.close();
+    }
+
     // Méthode helper pour convertir un File en MultipartFile
     private MultipartFile convertToMultipartFile(File file, String filename) throws IOException {
         return new MultipartFile() {
@@ -0,0 +1,215 @@
+package com.ynov.Aikea.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ynov.Aikea.atools.AsyncUtils;
+import com.ynov.Aikea.atools.BoundedFanOut;
+import com.ynov.Aikea.atools.Deadline;
+import com.ynov.Aikea.dto.ImageGenerationRequest;
+import com.ynov.Aikea.dto.PdfBatchItemResultDTO;
+import com.ynov.Aikea.dto.PdfBatchManifestDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Génération de PDF par lot (catalogue de pièces) rendue sous forme d'archive ZIP écrite au fil de l'eau :
+ * chaque PDF entre dans l'archive dès qu'il est prêt, manifest.json la termine avec le résultat de chaque élément.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PdfBatchService {
+
+    public static final String MANIFEST_ENTRY = "manifest.json";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final PDFContentService pdfContentService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    // Les images passent par l'ordonnanceur OpenAI : par défaut, autant d'éléments en cours que d'images
+    // qu'il laisse partir en même temps. Le débit suit la concurrence autorisée, pas les allers-retours du client
+    @Value("${app.pdf.batch.parallelism:${app.image.scheduler.max-concurrency:8}}")
+    private int parallelism;
+
+    @Value("${app.pdf.batch.max-items:50}")
+    private int maxItems;
+
+    // Échéance propre à chaque élément : celle de la requête, recopiée sur les threads qui lancent
+    // les éléments suivants, expirerait au milieu d'un lot de plusieurs vagues
+    @Value("${app.pdf.batch.item-timeout-ms:${app.openai.deadline.default-ms:120000}}")
+    private long itemTimeoutMs;
+
+    /**
+     * À appeler avant d'ouvrir la réponse, pour qu'une requête invalide donne encore une erreur 400
+     * @throws IllegalArgumentException Lot vide ou trop grand
+     */
+    public void validate(List<ImageGenerationRequest> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Batch must contain at least one item");
+        }
+        if (items.size() > maxItems) {
+            throw new IllegalArgumentException("Batch cannot contain more than " + maxItems + " items");
+        }
+    }
+
+    /**
+     * Génère les PDF du lot et les écrit dans une archive ZIP, dans l'ordre où ils sont prêts
+     * (entrées "001_nom.pdf", numérotées selon la position dans la requête), puis ajoute manifest.json.
+     * Un élément en échec est noté dans le manifeste sans interrompre le lot ;
+     * une erreur d'écriture (client déconnecté) arrête le lancement des éléments suivants.
+     * Chaque élément a sa propre échéance (app.pdf.batch.item-timeout-ms), indépendante de celle de la requête.
+     * @param output Le flux de destination, laissé ouvert
+     * @return Le manifeste une fois l'archive terminée, ou un échec si elle n'a pas pu être écrite
+     */
+    public CompletableFuture<PdfBatchManifestDTO> writeZipAsync(List<ImageGenerationRequest> items, OutputStream output) {
+        try {
+            validate(items);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long start = System.nanoTime();
+        ZipArchive archive = new ZipArchive(output);
+        return BoundedFanOut.run(items, parallelism, (index, item) -> launchItem(item)
+                        .handle((pdf, error) -> {
+                            PdfBatchItemResultDTO result = error == null
+                                    ? addPdf(archive, index, item, pdf)
+                                    : failed(index, item, AsyncUtils.unwrap(error));
+                            meterRegistry.counter("aikea.pdf.batch.items", "status", result.getStatus()).increment();
+                            return result;
+                        }))
+                .thenApply(results -> {
+                    int succeeded = (int) results.stream().filter(result -> "SUCCESS".equals(result.getStatus())).count();
+                    PdfBatchManifestDTO manifest = PdfBatchManifestDTO.builder()
+                            .results(results)
+                            .succeeded(succeeded)
+                            .failed(results.size() - succeeded)
+                            .build();
+                    try {
+                        archive.finish(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(manifest));
+                    } catch (IOException e) {
+                        throw AsyncUtils.wrap(e);
+                    }
+                    meterRegistry.timer("aikea.pdf.batch.time").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    log.info("PDF batch done: {} succeeded, {} failed", succeeded, results.size() - succeeded);
+                    return manifest;
+                });
+    }
+
+    // Les tâches lancées ici recopient l'échéance courante : elle n'est remplacée que le temps du lancement
+    private CompletableFuture<MultipartFile> launchItem(ImageGenerationRequest item) {
+        Deadline previous = Deadline.current();
+        Deadline.set(Deadline.after(Duration.ofMillis(itemTimeoutMs)));
+        try {
+            return generateItemAsync(item);
+        } finally {
+            Deadline.set(previous);
+        }
+    }
+
+    private CompletableFuture<MultipartFile> generateItemAsync(ImageGenerationRequest item) {
+        if (item == null || item.getPrompt() == null || item.getPrompt().isBlank()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Item must have a prompt"));
+        }
+        return pdfContentService.generatePDFContentAsync(item)
+                .thenCompose(pdfContentService::createPDFAsync);
+    }
+
+    // Une erreur ici vient de l'archive, pas de la génération : elle fait échouer tout le lot
+    private PdfBatchItemResultDTO addPdf(ZipArchive archive, int index, ImageGenerationRequest item, MultipartFile pdf) {
+        String entryName = String.format("%03d_%s", index + 1, pdf.getOriginalFilename());
+        try (InputStream input = pdf.getInputStream()) {
+            archive.add(entryName, input);
+        } catch (IOException e) {
+            throw AsyncUtils.wrap(e);
+        }
+        return PdfBatchItemResultDTO.builder()
+                .index(index)
+                .prompt(item.getPrompt())
+                .status("SUCCESS")
+                .entryName(entryName)
+                .build();
+    }
+
+    private PdfBatchItemResultDTO failed(int index, ImageGenerationRequest item, Throwable error) {
+        log.warn("PDF batch item {} failed: {}", index, error.getMessage());
+        return PdfBatchItemResultDTO.builder()
+                .index(index)
+                .prompt(item != null ? item.getPrompt() : null)
+                .status("FAILED")
+                .error(String.valueOf(error.getMessage()))
+                .build();
+    }
+
+    /**
+     * Les éléments se terminent sur des threads différents : les écritures dans l'archive sont sérialisées.
+     * Après une erreur d'écriture, l'archive est inutilisable et toute écriture suivante échoue aussitôt.
+     */
+    private static final class ZipArchive {
+        private final ZipOutputStream zip;
+        private final OutputStream buffered;
+        private boolean broken;
+
+        private ZipArchive(OutputStream output) {
+            this.buffered = new BufferedOutputStream(output, BUFFER_SIZE);
+            this.zip = new ZipOutputStream(buffered);
+            // Les PDF contiennent surtout des images déjà compressées : compression rapide
+            this.zip.setLevel(Deflater.BEST_SPEED);
+        }
+
+        private synchronized void add(String entryName, InputStream content) throws IOException {
+            write(() -> {
+                zip.putNextEntry(new ZipEntry(entryName));
+                content.transferTo(zip);
+                zip.closeEntry();
+                // L'entrée complète part tout de suite dans la réponse
+                zip.flush();
+            });
+        }
+
+        private synchronized void finish(byte[] manifest) throws IOException {
+            write(() -> {
+                zip.putNextEntry(new ZipEntry(MANIFEST_ENTRY));
+                zip.write(manifest);
+                zip.closeEntry();
+                // finish() et non close() : le flux de destination reste à l'appelant
+                zip.finish();
+                buffered.flush();
+            });
+        }
+
+        private void write(ZipWrite operation) throws IOException {
+            if (broken) {
+                throw new IOException("Archive is no longer writable");
+            }
+            try {
+                operation.run();
+            } catch (IOException | RuntimeException e) {
+                broken = true;
+                throw e;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ZipWrite {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,96 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.QualityEnum;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Baisse de qualité sous charge : quand la file d'une qualité est profonde ou que sa latence récente
+ * dépasse l'objectif, mieux vaut servir tout de suite une image de qualité inférieure qu'une HD plusieurs minutes plus tard.
+ * Désactivée par défaut, bornée par une qualité minimale et un nombre maximal de crans.
+ */
+@Service
+@RequiredArgsConstructor
+public class QualityDegradationPolicy {
+
+    private final ImageGenerationScheduler imageScheduler;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.image.degradation.enabled:false}")
+    private boolean enabled;
+
+    // Demandes en attente dans la file de la qualité demandée à partir desquelles on descend d'un cran
+    @Value("${app.image.degradation.queue-depth:20}")
+    private int queueDepthThreshold;
+
+    // Objectif de latence (p95, attente comprise) de chaque génération
+    @Value("${app.image.degradation.latency-slo-ms:30000}")
+    private long latencySloMs;
+
+    @Value("${app.image.degradation.latency-percentile:0.95}")
+    private double latencyPercentile;
+
+    @Value("${app.image.degradation.min-samples:10}")
+    private int minSamples;
+
+    @Value("${app.image.degradation.min-quality:LOW}")
+    private QualityEnum minQuality;
+
+    @Value("${app.image.degradation.max-steps:1}")
+    private int maxSteps;
+
+    public record Decision(QualityEnum requested, QualityEnum effective, String reason) {
+        public boolean isDegraded() {
+            return requested != effective;
+        }
+    }
+
+    /**
+     * @param requested La qualité demandée par le client
+     * @return La qualité à générer, et la raison d'une éventuelle baisse (queue-depth ou latency)
+     */
+    public Decision decide(QualityEnum requested) {
+        if (!enabled) {
+            return new Decision(requested, requested, null);
+        }
+        QualityEnum effective = requested;
+        String reason = null;
+        for (int step = 0; step < maxSteps && effective.ordinal() > minQuality.ordinal(); step++) {
+            String overload = overloadReason(effective);
+            if (overload == null) {
+                break;
+            }
+            reason = reason == null ? overload : reason;
+            effective = QualityEnum.values()[effective.ordinal() - 1];
+        }
+
+        Decision decision = new Decision(requested, effective, reason);
+        if (decision.isDegraded()) {
+            meterRegistry.counter("aikea.image.quality.degraded",
+                    "requested", requested.name(), "effective", effective.name(), "reason", reason).increment();
+        }
+        return decision;
+    }
+
+    /**
+     * @return true si la qualité peut être générée sans baisse (utilisé pour les améliorations en arrière-plan)
+     */
+    public boolean hasCapacity(QualityEnum quality) {
+        return overloadReason(quality) == null;
+    }
+
+    private String overloadReason(QualityEnum quality) {
+        if (imageScheduler.queueDepth(quality) >= queueDepthThreshold) {
+            return "queue-depth";
+        }
+        // Une file inactive n'a plus de latence récente pertinente : la prochaine génération rafraîchit la mesure
+        boolean busy = imageScheduler.queueDepth(quality) + imageScheduler.inFlight(quality) > 0;
+        long latencyMs = imageScheduler.recentLatencyMillis(quality, latencyPercentile, minSamples);
+        if (busy && latencyMs > latencySloMs) {
+            return "latency";
+        }
+        return null;
+    }
+}
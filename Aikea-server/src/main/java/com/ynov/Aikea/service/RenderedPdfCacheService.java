@@ -0,0 +1,165 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.HashUtils;
+import com.ynov.Aikea.entity.RenderedPdfCacheEntry;
+import com.ynov.Aikea.repository.RenderedPdfCacheRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache des PDF rendus : un même texte avec une même image donne toujours le même document,
+ * il n'est donc rendu qu'une fois. Le contenu est dans le stockage par contenu (une référence par entrée),
+ * la table rendered_pdf_cache ne garde que la clé et l'ordre d'accès, avec éviction LRU au-delà d'une taille totale.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RenderedPdfCacheService {
+
+    // À incrémenter à chaque changement du rendu (mise en page, polices, taille de l'image) : invalide tout le cache
+    public static final String LAYOUT_VERSION = "1";
+
+    private final RenderedPdfCacheRepository cacheRepository;
+    private final BlobStoreService blobStoreService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.pdf.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.pdf.cache.max-bytes:536870912}")
+    private long maxBytes;
+
+    // Entrées évincées par passe, pour borner la durée d'une purge
+    @Value("${app.pdf.cache.eviction-batch-size:100}")
+    private int evictionBatchSize;
+
+    private final AtomicLong cachedBytes = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("aikea.pdf.cache.bytes", cachedBytes, AtomicLong::get)
+                .description("Taille totale des PDF en cache (mise à jour à chaque purge)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param text Le texte du PDF
+     * @param imageHash L'empreinte SHA-256 du contenu de l'image
+     * @return La clé de cache, ou null si l'image n'a pas d'empreinte (pas de mise en cache)
+     */
+    public static String key(String text, String imageHash) {
+        if (imageHash == null) {
+            return null;
+        }
+        return HashUtils.sha256Hex("pdf", LAYOUT_VERSION, text, imageHash);
+    }
+
+    /**
+     * @return Le chemin du PDF en cache, ou null (cache désactivé, absent ou blob disparu)
+     */
+    public Path find(String cacheKey) {
+        if (!enabled || cacheKey == null) {
+            return null;
+        }
+        try {
+            RenderedPdfCacheEntry entry = cacheRepository.findById(cacheKey).orElse(null);
+            Path path = entry != null ? blobStoreService.pathFor(entry.getBlobSha256()) : null;
+            if (path == null || !Files.isReadable(path)) {
+                countLookup("miss");
+                return null;
+            }
+            cacheRepository.touch(cacheKey, LocalDateTime.now());
+            countLookup("hit");
+            return path;
+        } catch (Exception e) {
+            log.warn("Rendered PDF cache lookup failed, rendering: {}", e.getMessage());
+            countLookup("error");
+            return null;
+        }
+    }
+
+    /**
+     * Mémorise un PDF déjà présent dans le stockage par contenu. Une erreur n'empêche jamais la réponse.
+     * @param sha256 L'empreinte du blob du PDF
+     */
+    public void put(String cacheKey, String sha256, long size) {
+        if (!enabled || cacheKey == null || sha256 == null) {
+            return;
+        }
+        try {
+            if (cacheRepository.existsById(cacheKey) || !blobStoreService.retain(sha256)) {
+                return;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            try {
+                cacheRepository.save(RenderedPdfCacheEntry.builder()
+                        .cacheKey(cacheKey)
+                        .blobSha256(sha256)
+                        .size(size)
+                        .createdAt(now)
+                        .lastAccess(now)
+                        .build());
+            } catch (DataIntegrityViolationException e) {
+                // Même PDF rendu en parallèle et déjà mis en cache : la référence prise est rendue
+                blobStoreService.release(sha256);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to cache rendered PDF: {}", e.getMessage());
+        }
+    }
+
+    private void countLookup(String result) {
+        meterRegistry.counter("aikea.pdf.cache.requests", "result", result).increment();
+    }
+
+    /**
+     * Éviction LRU au-delà de la taille maximale ; le blob n'est supprimé que si plus rien ne le référence
+     */
+    @Scheduled(fixedDelayString = "${app.pdf.cache.purge-interval-ms:600000}")
+    public void evict() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long total = cacheRepository.totalSize();
+            int evicted = 0;
+            while (total > maxBytes) {
+                List<RenderedPdfCacheEntry> oldest = cacheRepository.findLeastRecentlyUsed(
+                        PageRequest.of(0, evictionBatchSize));
+                if (oldest.isEmpty()) {
+                    break;
+                }
+                for (RenderedPdfCacheEntry entry : oldest) {
+                    if (total <= maxBytes) {
+                        break;
+                    }
+                    cacheRepository.delete(entry);
+                    blobStoreService.release(entry.getBlobSha256());
+                    total -= entry.getSize();
+                    evicted++;
+                }
+            }
+            cachedBytes.set(total);
+            if (evicted > 0) {
+                log.info("Rendered PDF cache purge: {} evicted, {} bytes left", evicted, total);
+                meterRegistry.counter("aikea.pdf.cache.evictions").increment(evicted);
+            }
+        } catch (Exception e) {
+            log.warn("Rendered PDF cache purge failed: {}", e.getMessage());
+        }
+    }
+}
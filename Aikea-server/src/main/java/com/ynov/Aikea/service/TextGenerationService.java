@@ -1,31 +1,174 @@
 package com.ynov.Aikea.service;
 
+import com.ynov.Aikea.atools.AsyncUtils;
+import com.ynov.Aikea.atools.BoundedFanOut;
+import com.ynov.Aikea.atools.HashUtils;
+import com.ynov.Aikea.atools.OpenAIErrorType;
+import com.ynov.Aikea.atools.SingleFlight;
 import com.ynov.Aikea.dto.GeneratedTextDTO;
+import com.ynov.Aikea.dto.TextBatchItemDTO;
+import com.ynov.Aikea.dto.TextBatchItemResultDTO;
+import com.ynov.Aikea.dto.TextBatchResponseDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 @Service
 @RequiredArgsConstructor
 public class TextGenerationService {
 
     private final OpenAICallsService openAICallsService ;
+    private final MeterRegistry meterRegistry;
+    private SingleFlight<String, GeneratedTextDTO> inFlightGenerations;
+
+    // Les appels passent de toute façon par le limiteur chat : cette borne évite qu'un seul lot monopolise la file
+    @Value("${app.text.batch.parallelism:4}")
+    private int batchParallelism;
+
+    @Value("${app.text.batch.max-items:50}")
+    private int batchMaxItems;
+
+    @Value("${app.openai.degraded.enabled:true}")
+    private boolean degradedModeEnabled;
+
+    @Value("${app.openai.degraded.text:Description momentanément indisponible, elle sera générée dès que le service sera rétabli.}")
+    private String degradedText;
+
     String genrationContext = "Tu es agent immobilier et tu t'exprime de la sorte";
     String basePrompt = "Génère la description d'une piece de vie en te basant sur l'image envoyée (en priorité), ou sur le prompt suivant (si tu ne reçois pas d'image): ";
     String basePromptImage = "Génère la description d'une piece (salon, chambre, cuisine, etc.) en te basant sur l'image envoyée. Ensuite, génère une liste de référence de meubles ressemblants à ceux de l'image, en te basant sur les meubles visibles dans l'image. Tu peux utiliser des sites comme IKEA, Conforama, etc. pour trouver des meubles similaires.";
 
+    @PostConstruct
+    public void init() {
+        inFlightGenerations = new SingleFlight<>(
+                () -> meterRegistry.counter("aikea.generation.coalesced", "type", "text").increment());
+    }
+
     public GeneratedTextDTO generateText(String prompt) {
-        prompt = basePrompt + prompt;
-        String generatedText = openAICallsService.generateWithChatGPT(prompt, genrationContext);
-        return GeneratedTextDTO.builder().text(generatedText).build();
+        return generateTextAsync(prompt).join();
+    }
+
+    public CompletableFuture<GeneratedTextDTO> generateTextAsync(String prompt) {
+        String originalPrompt = prompt == null ? "" : prompt;
+        // Seule la clé de regroupement ignore les espaces de bord : le prompt est envoyé tel que saisi
+        return inFlightGenerations.execute(HashUtils.sha256Hex("prompt", originalPrompt.strip()),
+                () -> openAICallsService.generateWithChatGPTAsync(basePrompt + originalPrompt, genrationContext)
+                        .thenApply(this::toDTO)
+                        .exceptionallyCompose(this::degradedText))
+                .thenApply(this::copyOf);
     }
 
     public GeneratedTextDTO generateTextFromImageUrl(String imageUrl) {
-        String generatedText = openAICallsService.generateWithChatGPTFromImageURL(basePromptImage, imageUrl, genrationContext);
-        return GeneratedTextDTO.builder().text(generatedText).build();
+        return generateTextFromImageUrlAsync(imageUrl).join();
+    }
+
+    public CompletableFuture<GeneratedTextDTO> generateTextFromImageUrlAsync(String imageUrl) {
+        return inFlightGenerations.execute(HashUtils.sha256Hex("image-url", imageUrl),
+                () -> openAICallsService.generateWithChatGPTFromImageURLAsync(basePromptImage, imageUrl, genrationContext)
+                        .thenApply(this::toDTO)
+                        .exceptionallyCompose(this::degradedText))
+                .thenApply(this::copyOf);
     }
 
     public GeneratedTextDTO generateTextFromLocalImage(String imagePath) {
-        String generatedText = openAICallsService.generateWithChatGPTFromLocalImage(basePromptImage, imagePath, genrationContext);
+        return generateTextFromLocalImageAsync(imagePath).join();
+    }
+
+    public CompletableFuture<GeneratedTextDTO> generateTextFromLocalImageAsync(String imagePath) {
+        return inFlightGenerations.execute(HashUtils.sha256Hex("image-path", imagePath),
+                () -> openAICallsService.generateWithChatGPTFromLocalImageAsync(basePromptImage, imagePath, genrationContext)
+                        .thenApply(this::toDTO)
+                        .exceptionallyCompose(this::degradedText))
+                .thenApply(this::copyOf);
+    }
+
+    // Les appels regroupés partagent le même DTO : chaque appelant reçoit sa copie
+    private GeneratedTextDTO copyOf(GeneratedTextDTO shared) {
+        return shared.toBuilder().build();
+    }
+
+    /**
+     * Version streamée de generateText : pas de regroupement des doublons,
+     * chaque client doit recevoir ses propres morceaux
+     */
+    public CompletableFuture<GeneratedTextDTO> streamTextAsync(String prompt, Consumer<String> onToken) {
+        String originalPrompt = prompt == null ? "" : prompt;
+        return openAICallsService.streamWithChatGPT(basePrompt + originalPrompt, genrationContext, onToken)
+                .thenApply(this::toDTO);
+    }
+
+    public CompletableFuture<GeneratedTextDTO> streamTextFromImageUrlAsync(String imageUrl, Consumer<String> onToken) {
+        return openAICallsService.streamWithChatGPTFromImageURL(basePromptImage, imageUrl, genrationContext, onToken)
+                .thenApply(this::toDTO);
+    }
+
+    /**
+     * Génère les textes d'un lot en parallèle, au plus app.text.batch.parallelism à la fois
+     * @param items Prompts ou URLs d'images
+     * @param onResult Appelé dès qu'un élément est terminé (ordre de complétion) ; une exception
+     *                 levée ici interrompt le lot (ex: client SSE déconnecté)
+     * @return Les résultats dans l'ordre des éléments, un échec d'élément n'interrompt pas le lot
+     */
+    public CompletableFuture<TextBatchResponseDTO> generateBatchAsync(List<TextBatchItemDTO> items,
+                                                                     Consumer<TextBatchItemResultDTO> onResult) {
+        if (items == null || items.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Batch must contain at least one item"));
+        }
+        if (items.size() > batchMaxItems) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Batch cannot contain more than " + batchMaxItems + " items"));
+        }
+
+        return BoundedFanOut.run(items, batchParallelism, (index, item) -> generateBatchItemAsync(item)
+                        .handle((generatedText, error) -> {
+                            TextBatchItemResultDTO result = error == null
+                                    ? TextBatchItemResultDTO.builder()
+                                            .index(index).status("SUCCESS").text(generatedText.getText()).build()
+                                    : TextBatchItemResultDTO.builder()
+                                            .index(index).status("FAILED")
+                                            .error(String.valueOf(AsyncUtils.unwrap(error).getMessage())).build();
+                            onResult.accept(result);
+                            return result;
+                        }))
+                .thenApply(results -> {
+                    int succeeded = (int) results.stream().filter(result -> "SUCCESS".equals(result.getStatus())).count();
+                    return TextBatchResponseDTO.builder()
+                            .results(results)
+                            .succeeded(succeeded)
+                            .failed(results.size() - succeeded)
+                            .build();
+                });
+    }
+
+    private CompletableFuture<GeneratedTextDTO> generateBatchItemAsync(TextBatchItemDTO item) {
+        if (item == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Item cannot be null"));
+        }
+        if (item.getImageUrl() != null && !item.getImageUrl().isBlank()) {
+            return generateTextFromImageUrlAsync(item.getImageUrl().strip());
+        }
+        if (item.getPrompt() != null && !item.getPrompt().isBlank()) {
+            return generateTextAsync(item.getPrompt());
+        }
+        return CompletableFuture.failedFuture(new IllegalArgumentException("Item must have a prompt or an imageUrl"));
+    }
+
+    // Circuit OpenAI ouvert et aucune réponse en cache (même expirée) : texte de remplacement plutôt qu'une erreur
+    private CompletableFuture<GeneratedTextDTO> degradedText(Throwable error) {
+        if (!degradedModeEnabled || OpenAIErrorType.classify(error) != OpenAIErrorType.CIRCUIT_OPEN) {
+            return CompletableFuture.failedFuture(AsyncUtils.unwrap(error));
+        }
+        meterRegistry.counter("aikea.generation.degraded", "type", "text", "source", "placeholder").increment();
+        return CompletableFuture.completedFuture(GeneratedTextDTO.builder().text(degradedText).degraded(true).build());
+    }
+
+    private GeneratedTextDTO toDTO(String generatedText) {
         return GeneratedTextDTO.builder().text(generatedText).build();
     }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.ynov.Aikea.service;
 
+import com.ynov.Aikea.atools.IngestedFile;
+import com.ynov.Aikea.atools.StreamingIngest;
 import com.ynov.Aikea.entity.Upload;
 import com.ynov.Aikea.repository.UploadRepository;
 import org.slf4j.Logger;
@@ -10,10 +12,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
@@ -26,58 +28,64 @@ public class UploadService {
     @Value("${app.upload.directory:uploads}")
     private String uploadDirectory;
 
+    @Value("${app.upload.max-ingest-bytes:52428800}")
+    private long maxIngestBytes;
+
     @Autowired
     private UploadRepository uploadRepository;
 
+    @Autowired
+    private BlobStoreService blobStoreService;
+
     /**
-     * Enregistre un fichier téléchargé sur le serveur et dans la base de données
-     * @param file Fichier téléchargé
-     * @param idExterne Identifiant externe associé (par exemple, ID du groupe ou de l'utilisateur)
-     * @param tag1 Premier tag pour la catégorisation
-     * @param tag2 Deuxième tag pour la catégorisation
-     * @param tag3 Troisième tag pour la catégorisation
-     * @param description Description du fichier
-     * @param isPublic Indique si le fichier est public
-     * @param uploaderId ID de l'utilisateur qui télécharge
-     * @param uploaderName Nom de l'utilisateur qui télécharge
-     * @return L'entité Upload créée
-     * @throws IOException Si une erreur survient pendant le téléchargement
+     * Écrit un flux dans un fichier temporaire du répertoire d'upload, sans le charger en mémoire
+     * @param input Le flux à enregistrer (fermé à la fin)
+     * @return Le fichier temporaire, avec sa taille et son empreinte SHA-256
+     * @throws IOException Si l'écriture échoue ou si le contenu dépasse la taille maximale
      */
-    public Upload saveFile(MultipartFile file, String idExterne,
-                           String tag1, String tag2, String tag3,
-                           String description, Boolean isPublic,
-                           Long uploaderId, String uploaderName) throws IOException {
+    public IngestedFile ingest(InputStream input) throws IOException {
+        return StreamingIngest.toTempFile(input, ingestDirectory(), maxIngestBytes);
+    }
 
-        // Valider le type de fichier
-        String mimeType = file.getContentType();
+    /**
+     * Comme {@link #ingest(InputStream)}, pour un contenu que le producteur écrit lui-même (PDF)
+     */
+    public IngestedFile ingest(StreamingIngest.ContentWriter writer) throws IOException {
+        return StreamingIngest.writeTempFile(ingestDirectory(), writer);
+    }
+
+    private Path ingestDirectory() {
+        return Paths.get(uploadDirectory, ".ingest");
+    }
+
+    /**
+     * Enregistre un fichier déjà écrit par {@link #ingest} : il est rangé dans le stockage par contenu, pas recopié.
+     * Un contenu déjà enregistré n'est pas réécrit, l'upload pointe vers le même blob.
+     * @param file Le fichier ingéré
+     * @param originalFilename Nom d'origine (pour l'extension)
+     * @param mimeType Type MIME (PDF ou image)
+     * @return L'entité Upload créée, dont filePath est le chemin du blob
+     * @throws IOException Si le déplacement échoue
+     */
+    public Upload saveIngestedFile(IngestedFile file, String originalFilename, String mimeType, String idExterne,
+                                   String tag1, String tag2, String tag3,
+                                   String description, Boolean isPublic,
+                                   Long uploaderId, String uploaderName) throws IOException {
         if (mimeType == null || !isPdfOrImage(mimeType)) {
+            Files.deleteIfExists(file.path());
             throw new IllegalArgumentException("Format de fichier non supporté. Seuls les PDF et images sont acceptés.");
         }
 
-        // Création du répertoire si nécessaire
-        Path uploadPath = Paths.get(uploadDirectory);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-
-        // Génération d'un nom de fichier unique
-        String originalFilename = file.getOriginalFilename();
-        String fileExtension = getFileExtension(originalFilename);
-        String uniqueFilename = UUID.randomUUID().toString() + "." + fileExtension;
+        String uniqueFilename = UUID.randomUUID().toString() + "." + getFileExtension(originalFilename);
+        Path filePath = blobStoreService.store(file, mimeType);
 
-        // Chemin complet du fichier
-        Path filePath = uploadPath.resolve(uniqueFilename);
-
-        // Sauvegarde du fichier
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-        // Création de l'entité Upload
         Upload upload = Upload.builder()
                 .fileName(uniqueFilename)
                 .originalName(originalFilename)
                 .mimeType(mimeType)
-                .fileSize(file.getSize())
+                .fileSize(file.size())
                 .filePath(filePath.toString())
+                .contentHash(file.sha256())
                 .idExterne(idExterne)
                 .tag1(tag1)
                 .tag2(tag2)
@@ -90,13 +98,49 @@ public class UploadService {
                 .uploadDate(LocalDateTime.now())
                 .build();
 
-        // Sauvegarde dans la base de données
-        Upload savedUpload = uploadRepository.save(upload);
-        logger.info("Fichier sauvegardé avec succès: {}", savedUpload.getFileName());
-
+        Upload savedUpload;
+        try {
+            savedUpload = uploadRepository.save(upload);
+        } catch (RuntimeException e) {
+            blobStoreService.release(file.sha256());
+            throw e;
+        }
+        logger.info("Fichier sauvegardé avec succès: {} ({} octets, sha256 {})",
+                savedUpload.getFileName(), file.size(), file.sha256());
         return savedUpload;
     }
 
+    /**
+     * Enregistre un fichier téléchargé sur le serveur et dans la base de données
+     * @param file Fichier téléchargé
+     * @param idExterne Identifiant externe associé (par exemple, ID du groupe ou de l'utilisateur)
+     * @param tag1 Premier tag pour la catégorisation
+     * @param tag2 Deuxième tag pour la catégorisation
+     * @param tag3 Troisième tag pour la catégorisation
+     * @param description Description du fichier
+     * @param isPublic Indique si le fichier est public
+     * @param uploaderId ID de l'utilisateur qui télécharge
+     * @param uploaderName Nom de l'utilisateur qui télécharge
+     * @return L'entité Upload créée
+     * @throws IOException Si une erreur survient pendant le téléchargement
+     */
+    public Upload saveFile(MultipartFile file, String idExterne,
+                           String tag1, String tag2, String tag3,
+                           String description, Boolean isPublic,
+                           Long uploaderId, String uploaderName) throws IOException {
+
+        // Valider le type de fichier
+        String mimeType = file.getContentType();
+        if (mimeType == null || !isPdfOrImage(mimeType)) {
+            throw new IllegalArgumentException("Format de fichier non supporté. Seuls les PDF et images sont acceptés.");
+        }
+
+        // Le contenu passe par le stockage par contenu : un fichier déjà envoyé n'est pas réécrit
+        IngestedFile ingested = ingest(file.getInputStream());
+        return saveIngestedFile(ingested, file.getOriginalFilename(), mimeType, idExterne,
+                tag1, tag2, tag3, description, isPublic, uploaderId, uploaderName);
+    }
+
     /**
      * Récupère un fichier par son ID
      * @param id L'ID du fichier
@@ -115,10 +159,14 @@ public class UploadService {
         Upload upload = uploadRepository.findById(id).orElse(null);
 
         if (upload != null) {
-            // Suppression du fichier physique
-            Path filePath = Paths.get(upload.getFilePath());
-            if (Files.exists(filePath)) {
-                Files.delete(filePath);
+            // Suppression du fichier physique : le blob n'est effacé qu'à sa dernière référence
+            if (upload.getContentHash() != null) {
+                blobStoreService.release(upload.getContentHash());
+            } else {
+                Path filePath = Paths.get(upload.getFilePath());
+                if (Files.exists(filePath)) {
+                    Files.delete(filePath);
+                }
             }
 
             // Suppression de l'enregistrement en base
@@ -0,0 +1,148 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.HashUtils;
+import com.ynov.Aikea.atools.ImageResizing;
+import com.ynov.Aikea.atools.LruCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Prépare les images envoyées aux modèles de vision : réduction à la résolution
+ * réellement exploitée par le modèle, ré-encodage JPEG et data URL Base64.
+ * Une image HD de 1792 px passe ainsi de plusieurs Mo à une centaine de Ko.
+ */
+@Service
+@RequiredArgsConstructor
+public class VisionImagePreprocessor {
+
+    private static final String DATA_URL_PREFIX = "data:image/jpeg;base64,";
+
+    private final MeterRegistry meterRegistry;
+
+    // En mode "high", OpenAI ramène l'image dans 2048 x 2048 puis son plus petit côté à 768 px :
+    // au-delà, les pixels envoyés sont perdus
+    @Value("${app.vision.max-short-side:768}")
+    private int maxShortSide;
+
+    @Value("${app.vision.max-long-side:2048}")
+    private int maxLongSide;
+
+    @Value("${app.vision.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    @Value("${app.vision.cache.max-bytes:33554432}")
+    private long cacheMaxBytes;
+
+    @Value("${app.vision.buffer-pool-size:8}")
+    private int bufferPoolSize;
+
+    // Au-delà, un tampon n'est pas rendu au pool pour ne pas garder de gros tableaux en mémoire
+    @Value("${app.vision.buffer-max-retained-bytes:1048576}")
+    private int bufferMaxRetainedBytes;
+
+    private LruCache<String, PreparedImage> preparedImages;
+    private BlockingQueue<ByteArrayOutputStream> buffers;
+
+    /**
+     * Image prête pour un appel vision
+     * @param cacheKey Empreinte du contenu d'origine et des réglages de préparation
+     * @param dataUrl data:image/jpeg;base64,...
+     */
+    public record PreparedImage(String cacheKey, String dataUrl) {
+    }
+
+    @PostConstruct
+    public void init() {
+        preparedImages = new LruCache<>(cacheMaxBytes, prepared -> prepared.dataUrl().length());
+        buffers = new ArrayBlockingQueue<>(Math.max(1, bufferPoolSize));
+        Gauge.builder("aikea.vision.cache.bytes", this, processor -> processor.preparedImages.weight())
+                .register(meterRegistry);
+    }
+
+    public PreparedImage prepare(Path imagePath) {
+        try {
+            return prepare(Files.readAllBytes(imagePath));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read image " + imagePath, e);
+        }
+    }
+
+    /**
+     * Bloquant (décodage et encodage d'image) : à appeler hors des threads de requête
+     * @param imageBytes Le contenu de l'image (PNG, JPEG...)
+     * @return L'image réduite, en cache par empreinte de contenu
+     */
+    public PreparedImage prepare(byte[] imageBytes) {
+        String cacheKey = HashUtils.sha256Hex(HashUtils.sha256Hex(imageBytes),
+                String.valueOf(maxShortSide), String.valueOf(maxLongSide), String.valueOf(jpegQuality));
+        PreparedImage cached = preparedImages.get(cacheKey);
+        if (cached != null) {
+            meterRegistry.counter("aikea.vision.preprocess", "result", "hit").increment();
+            return cached;
+        }
+
+        PreparedImage prepared = new PreparedImage(cacheKey, encode(imageBytes));
+        preparedImages.put(cacheKey, prepared);
+        meterRegistry.counter("aikea.vision.preprocess", "result", "miss").increment();
+        meterRegistry.summary("aikea.vision.payload.bytes", "stage", "original").record(imageBytes.length);
+        meterRegistry.summary("aikea.vision.payload.bytes", "stage", "encoded").record(prepared.dataUrl().length());
+        return prepared;
+    }
+
+    private String encode(byte[] imageBytes) {
+        BufferedImage source;
+        try {
+            source = ImageIO.read(new ByteArrayInputStream(imageBytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot decode image", e);
+        }
+        if (source == null) {
+            throw new IllegalArgumentException("Unsupported image format");
+        }
+
+        ByteArrayOutputStream buffer = acquireBuffer();
+        try {
+            buffer.writeBytes(DATA_URL_PREFIX.getBytes(StandardCharsets.US_ASCII));
+            // Le JPEG est écrit directement dans l'encodeur Base64 : pas de copie intermédiaire des octets bruts.
+            // Fermer l'encodeur écrit le padding final ; close() ne fait rien sur un ByteArrayOutputStream
+            try (OutputStream base64 = Base64.getEncoder().wrap(buffer)) {
+                ImageResizing.writeJpeg(ImageResizing.downscale(source, maxShortSide, maxLongSide), base64, jpegQuality);
+            }
+            return buffer.toString(StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot encode image", e);
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    private ByteArrayOutputStream acquireBuffer() {
+        ByteArrayOutputStream buffer = buffers.poll();
+        return buffer != null ? buffer : new ByteArrayOutputStream(256 * 1024);
+    }
+
+    private void releaseBuffer(ByteArrayOutputStream buffer) {
+        if (buffer.size() <= bufferMaxRetainedBytes) {
+            buffer.reset();
+            buffers.offer(buffer);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+CREATE TABLE IF NOT EXISTS chat_completion_cache (
+    cache_key VARCHAR(64) NOT NULL,
+    model VARCHAR(100),
+    response MEDIUMTEXT NOT NULL,
+    created_at DATETIME NOT NULL,
+    expires_at DATETIME NOT NULL,
+    last_access DATETIME NOT NULL,
+    hit_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (cache_key),
+    INDEX idx_expires_at (expires_at),
+    INDEX idx_last_access (last_access)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
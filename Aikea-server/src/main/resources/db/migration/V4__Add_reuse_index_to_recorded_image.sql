@@ -0,0 +1,5 @@
+# Index de réutilisation des images déjà générées (prompt normalisé + qualité)
+ALTER TABLE recorded_image
+    ADD COLUMN quality VARCHAR(20),
+    ADD COLUMN prompt_key VARCHAR(64),
+    ADD INDEX idx_prompt_key_quality (prompt_key, quality);
@@ -0,0 +1,27 @@
+# Jobs de génération PDF asynchrones : état, étape courante, horodatage de chaque étape et résultats
+CREATE TABLE IF NOT EXISTS generation_jobs (
+    id VARCHAR(36) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    stage VARCHAR(20),
+    prompt TEXT NOT NULL,
+    quality VARCHAR(20) NOT NULL,
+    reuse_image BIT(1),
+    attempts INT NOT NULL DEFAULT 0,
+    worker_id VARCHAR(100),
+    image_id INT,
+    image_path VARCHAR(500),
+    generated_text MEDIUMTEXT,
+    pdf_path VARCHAR(500),
+    pdf_size BIGINT,
+    error_message TEXT,
+    created_at DATETIME NOT NULL,
+    started_at DATETIME,
+    image_completed_at DATETIME,
+    text_completed_at DATETIME,
+    pdf_completed_at DATETIME,
+    completed_at DATETIME,
+    updated_at DATETIME NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_status_created_at (status, created_at),
+    INDEX idx_status_updated_at (status, updated_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
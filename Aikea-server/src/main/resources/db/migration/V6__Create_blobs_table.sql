@@ -0,0 +1,17 @@
+# Stockage adressé par contenu : un fichier par empreinte SHA-256, partagé par tous les uploads identiques
+CREATE TABLE IF NOT EXISTS blobs (
+    sha256 VARCHAR(64) NOT NULL,
+    size BIGINT NOT NULL,
+    mime_type VARCHAR(100),
+    path VARCHAR(500) NOT NULL,
+    ref_count INT NOT NULL DEFAULT 0,
+    created_at DATETIME NOT NULL,
+    last_access DATETIME NOT NULL,
+    PRIMARY KEY (sha256),
+    INDEX idx_ref_count (ref_count)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+# Les uploads pointent vers leur blob (NULL pour les fichiers enregistrés avant le stockage par contenu)
+ALTER TABLE uploads
+    ADD COLUMN content_hash VARCHAR(64),
+    ADD INDEX idx_content_hash (content_hash);
@@ -0,0 +1,11 @@
+# Cache des PDF rendus : clé = empreinte (version de mise en page, texte, image), contenu dans le stockage par contenu
+CREATE TABLE IF NOT EXISTS rendered_pdf_cache (
+    cache_key VARCHAR(64) NOT NULL,
+    blob_sha256 VARCHAR(64) NOT NULL,
+    size BIGINT NOT NULL,
+    created_at DATETIME NOT NULL,
+    last_access DATETIME NOT NULL,
+    hit_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (cache_key),
+    INDEX idx_last_access (last_access)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
@@ -0,0 +1,3 @@
+# Verrouillage optimiste des jobs : un worker remplacé (job remis en file puis réclamé ailleurs) ne peut plus l'écraser
+ALTER TABLE generation_jobs
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,116 @@
+package com.ynov.Aikea.atools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveRateLimiterTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private AdaptiveRateLimiter limiter(int concurrency, int maxQueueSize, long maxWaitMillis) {
+        return new AdaptiveRateLimiter("test", 6_000, 100, concurrency, 1, 16,
+                maxQueueSize, maxWaitMillis, 0, scheduler, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void queuesCallsBeyondConcurrencyLimitUntilOneFinishes() {
+        AdaptiveRateLimiter limiter = limiter(2, 10, 5_000);
+        AtomicInteger started = new AtomicInteger();
+        CompletableFuture<String> first = new CompletableFuture<>();
+
+        limiter.submit(() -> {
+            started.incrementAndGet();
+            return first;
+        });
+        limiter.submit(() -> {
+            started.incrementAndGet();
+            return new CompletableFuture<String>();
+        });
+        CompletableFuture<String> third = limiter.submit(() -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("third");
+        });
+
+        assertEquals(2, started.get());
+        assertEquals(1, limiter.queueDepth());
+        assertEquals(2, limiter.inFlight());
+
+        first.complete("first");
+
+        assertEquals("third", third.join());
+        assertEquals(3, started.get());
+        assertEquals(0, limiter.queueDepth());
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        AdaptiveRateLimiter limiter = limiter(1, 1, 5_000);
+        limiter.submit(CompletableFuture<String>::new);
+        limiter.submit(CompletableFuture<String>::new);
+
+        CompletableFuture<String> rejected = limiter.submit(() -> CompletableFuture.completedFuture("never"));
+
+        CompletionException error = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(RateLimitExceededException.class, error.getCause());
+    }
+
+    @Test
+    void expiresCallsWaitingLongerThanMaxWait() {
+        AdaptiveRateLimiter limiter = limiter(1, 10, 50);
+        limiter.submit(CompletableFuture<String>::new);
+
+        CompletableFuture<String> waiting = limiter.submit(() -> CompletableFuture.completedFuture("never"));
+
+        CompletionException error = assertThrows(CompletionException.class, waiting::join);
+        assertInstanceOf(RateLimitExceededException.class, error.getCause());
+        assertEquals(0, limiter.queueDepth());
+    }
+
+    @Test
+    void rateLimitErrorHalvesConcurrencyAndSuccessGrowsItBack() {
+        AdaptiveRateLimiter limiter = limiter(8, 10, 5_000);
+
+        limiter.submit(() -> CompletableFuture.<String>failedFuture(new RateLimitExceededException("429")));
+        assertEquals(4.0, limiter.concurrencyLimit(), 0.001);
+
+        limiter.submit(() -> CompletableFuture.completedFuture("ok"));
+        assertEquals(4.25, limiter.concurrencyLimit(), 0.001);
+    }
+
+    @Test
+    void otherErrorsLeaveConcurrencyUnchanged() {
+        AdaptiveRateLimiter limiter = limiter(8, 10, 5_000);
+
+        limiter.submit(() -> CompletableFuture.<String>failedFuture(new IllegalStateException("boom")));
+
+        assertEquals(8.0, limiter.concurrencyLimit(), 0.001);
+    }
+
+    @Test
+    void exhaustedRemainingRequestsPausesUntilReset() {
+        AdaptiveRateLimiter limiter = limiter(4, 10, 5_000);
+        limiter.onRateLimitHeaders(0, Duration.ofMillis(200));
+
+        CompletableFuture<String> paused = limiter.submit(() -> CompletableFuture.completedFuture("sent"));
+
+        assertFalse(paused.isDone());
+        assertEquals(1, limiter.queueDepth());
+        assertEquals("sent", paused.orTimeout(5, TimeUnit.SECONDS).join());
+    }
+}
@@ -0,0 +1,54 @@
+package com.ynov.Aikea.atools;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncUtilsTest {
+
+    @Test
+    void applyAsyncRunsFunctionOnExecutor() {
+        Executor direct = Runnable::run;
+
+        assertEquals(4, AsyncUtils.applyAsync(CompletableFuture.completedFuture("four"), String::length, direct).join());
+    }
+
+    @Test
+    void applyAsyncFailsWhenExecutorRejects() {
+        Executor saturated = task -> {
+            throw new RejectedExecutionException("queue full");
+        };
+        CompletableFuture<String> source = new CompletableFuture<>();
+
+        CompletableFuture<Integer> result = AsyncUtils.applyAsync(source, String::length, saturated);
+        source.complete("value");
+
+        assertTrue(result.isDone());
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(RejectedExecutionException.class, error.getCause());
+    }
+
+    @Test
+    void unwrapRemovesFutureWrappers() {
+        IOException original = new IOException("boom");
+
+        assertSame(original, AsyncUtils.unwrap(new CompletionException(new ExecutionException(original))));
+        assertSame(original, AsyncUtils.unwrap(original));
+    }
+
+    @Test
+    void awaitRethrowsOriginalException() {
+        IOException original = new IOException("boom");
+
+        IOException thrown = assertThrows(IOException.class,
+                () -> AsyncUtils.await(CompletableFuture.failedFuture(original)));
+        assertSame(original, thrown);
+    }
+}
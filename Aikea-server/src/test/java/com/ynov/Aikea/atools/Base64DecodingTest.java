@@ -0,0 +1,47 @@
+package com.ynov.Aikea.atools;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Base64DecodingTest {
+
+    @Test
+    void decodesLikeJdkForEveryPaddingLength() {
+        Random random = new Random(42);
+        for (int size = 0; size <= 64; size++) {
+            byte[] original = new byte[size];
+            random.nextBytes(original);
+
+            assertArrayEquals(original, Base64Decoding.decode(Base64.getEncoder().encodeToString(original)));
+        }
+    }
+
+    @Test
+    void decodesContentWithoutPadding() {
+        byte[] original = {1, 2, 3, 4, 5};
+        String unpadded = Base64.getEncoder().withoutPadding().encodeToString(original);
+
+        assertArrayEquals(original, Base64Decoding.decode(unpadded));
+    }
+
+    @Test
+    void streamsDecodedBytes() throws Exception {
+        byte[] original = new byte[10_000];
+        new Random(7).nextBytes(original);
+
+        try (InputStream input = Base64Decoding.stream(new StringBuilder(Base64.getEncoder().encodeToString(original)))) {
+            assertArrayEquals(original, input.readAllBytes());
+        }
+    }
+
+    @Test
+    void rejectsInvalidCharacters() {
+        assertThrows(UncheckedIOException.class, () -> Base64Decoding.decode("ab$d"));
+    }
+}
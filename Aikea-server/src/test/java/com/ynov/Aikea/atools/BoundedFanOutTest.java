@@ -0,0 +1,83 @@
+package com.ynov.Aikea.atools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedFanOutTest {
+
+    @Test
+    void emptyInputCompletesImmediately() {
+        assertEquals(List.of(), BoundedFanOut.run(List.<String>of(), 4,
+                (index, input) -> CompletableFuture.completedFuture(input)).join());
+    }
+
+    @Test
+    void keepsAtMostParallelismTasksInFlight() {
+        List<CompletableFuture<Integer>> pending = new ArrayList<>();
+        CompletableFuture<List<Integer>> result = BoundedFanOut.run(List.of(0, 1, 2, 3, 4), 2, (index, input) -> {
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        });
+
+        assertEquals(2, pending.size());
+        pending.get(0).complete(0);
+        assertEquals(3, pending.size());
+        pending.get(1).complete(1);
+        pending.get(2).complete(2);
+        assertEquals(5, pending.size());
+        assertFalse(result.isDone());
+
+        pending.get(4).complete(4);
+        pending.get(3).complete(3);
+        assertEquals(List.of(0, 1, 2, 3, 4), result.join());
+    }
+
+    @Test
+    void returnsResultsInInputOrderWhateverTheCompletionOrder() {
+        List<CompletableFuture<String>> pending = new ArrayList<>();
+        CompletableFuture<List<String>> result = BoundedFanOut.run(List.of("a", "b", "c"), 3, (index, input) -> {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        });
+
+        pending.get(2).complete("C");
+        pending.get(0).complete("A");
+        pending.get(1).complete("B");
+
+        assertEquals(List.of("A", "B", "C"), result.join());
+    }
+
+    @Test
+    void firstFailureFailsResultAndStopsLaunching() {
+        AtomicInteger launched = new AtomicInteger();
+        CompletableFuture<List<String>> result = BoundedFanOut.run(List.of("a", "b", "c", "d"), 1, (index, input) -> {
+            launched.incrementAndGet();
+            return index == 1
+                    ? CompletableFuture.failedFuture(new IllegalStateException("boom"))
+                    : CompletableFuture.completedFuture(input);
+        });
+
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertEquals(2, launched.get());
+    }
+
+    @Test
+    void taskThrowingSynchronouslyFailsResult() {
+        CompletableFuture<List<String>> result = BoundedFanOut.run(List.of("a"), 1, (index, input) -> {
+            throw new IllegalArgumentException("bad input");
+        });
+
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(IllegalArgumentException.class, error.getCause());
+    }
+}
@@ -0,0 +1,108 @@
+package com.ynov.Aikea.atools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private static CircuitBreaker breaker(long openDurationMillis) {
+        // Fenêtre de 4 appels, ouverture dès 50 % d'échecs sur au moins 4 appels, 1 appel d'essai
+        return new CircuitBreaker("test", 4, 4, 0.5, openDurationMillis, 1, new SimpleMeterRegistry());
+    }
+
+    private static void call(CircuitBreaker breaker, Throwable error) {
+        breaker.execute(() -> error == null
+                ? CompletableFuture.completedFuture("ok")
+                : CompletableFuture.failedFuture(error));
+    }
+
+    private static OpenAIHttpException serverError() {
+        return new OpenAIHttpException(500, "server_error", null, "boom");
+    }
+
+    @Test
+    void opensOnceTheFailureRateReachesTheThreshold() {
+        CircuitBreaker breaker = breaker(60_000);
+        call(breaker, null);
+        call(breaker, serverError());
+        call(breaker, null);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+        call(breaker, serverError());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.isCallPermitted());
+    }
+
+    @Test
+    void rejectsWithoutCallingWhileOpen() {
+        CircuitBreaker breaker = breaker(60_000);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, serverError());
+        }
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> result = breaker.execute(() -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("ok");
+        });
+
+        assertEquals(0, calls.get());
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(CircuitOpenException.class, error.getCause());
+    }
+
+    @Test
+    void clientErrorsAbortedStreamsAndUnknownErrorsDoNotCount() {
+        CircuitBreaker breaker = breaker(60_000);
+        for (int i = 0; i < 10; i++) {
+            call(breaker, new OpenAIHttpException(400, "invalid_request_error", null, "bad"));
+            call(breaker, new OpenAIHttpException(429, null, "rate_limit_exceeded", "slow down"));
+            call(breaker, new StreamAbortedException("gone", new UncheckedIOException(new IOException("reset"))));
+            call(breaker, new IllegalStateException("unexpected"));
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(0.0, breaker.failureRate(), 0.0);
+    }
+
+    @Test
+    void halfOpenTrialSuccessClosesTheCircuit() throws InterruptedException {
+        CircuitBreaker breaker = breaker(1);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, serverError());
+        }
+        Thread.sleep(5);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+
+        call(breaker, null);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertEquals(0.0, breaker.failureRate(), 0.0);
+    }
+
+    @Test
+    void halfOpenTrialFailureReopensTheCircuit() throws InterruptedException {
+        CircuitBreaker breaker = breaker(1);
+        for (int i = 0; i < 4; i++) {
+            call(breaker, serverError());
+        }
+        Thread.sleep(5);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+
+        CompletableFuture<String> trial = new CompletableFuture<>();
+        breaker.execute(() -> trial);
+        // Un seul appel d'essai à la fois
+        assertFalse(breaker.isCallPermitted());
+        trial.completeExceptionally(serverError());
+
+        assertNotEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+}
@@ -0,0 +1,84 @@
+package com.ynov.Aikea.atools;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineTest {
+
+    @AfterEach
+    void tearDown() {
+        Deadline.clear();
+    }
+
+    @Test
+    void remainingTimeCountsDownToExpiry() {
+        Deadline deadline = Deadline.after(Duration.ofMinutes(1));
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.remainingMillis() > 50_000);
+
+        Deadline expired = Deadline.after(Duration.ofMillis(-10));
+        assertTrue(expired.isExpired());
+        assertEquals(0, expired.remainingNanos());
+    }
+
+    @Test
+    void currentOrFallsBackToDefaultTimeout() {
+        assertNull(Deadline.current());
+        assertTrue(Deadline.currentOr(Duration.ofMinutes(1)).remainingMillis() > 50_000);
+
+        Deadline deadline = Deadline.after(Duration.ofSeconds(5));
+        Deadline.set(deadline);
+        assertSame(deadline, Deadline.currentOr(Duration.ofMinutes(1)));
+
+        Deadline.set(null);
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    void atMostKeepsTheEarliestDeadline() {
+        Deadline deadline = Deadline.after(Duration.ofSeconds(5));
+
+        assertSame(deadline, deadline.atMost(Duration.ofMinutes(1)));
+        assertTrue(deadline.atMost(Duration.ofMillis(100)).remainingMillis() <= 100);
+    }
+
+    @Test
+    void propagateCopiesDeadlineToTaskThreadThenRestoresIt() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Deadline deadline = Deadline.after(Duration.ofSeconds(5));
+            Deadline.set(deadline);
+            AtomicReference<Deadline> seen = new AtomicReference<>();
+
+            executor.submit(Deadline.propagate(() -> seen.set(Deadline.current()))).get();
+            Deadline.clear();
+            AtomicReference<Deadline> after = new AtomicReference<>(deadline);
+            executor.submit(() -> after.set(Deadline.current())).get();
+
+            assertSame(deadline, seen.get());
+            assertNull(after.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void boundFailsFutureWithTimeoutAtDeadline() {
+        CompletableFuture<String> bounded = Deadline.after(Duration.ofMillis(20)).bound(new CompletableFuture<>());
+        CompletionException error = assertThrows(CompletionException.class, bounded::join);
+        assertInstanceOf(TimeoutException.class, error.getCause());
+
+        CompletableFuture<String> expired = Deadline.after(Duration.ZERO).bound(new CompletableFuture<>());
+        assertTrue(expired.isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,28 @@
+package com.ynov.Aikea.atools;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashUtilsTest {
+
+    @Test
+    void hashesBytesAsLowercaseHex() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                HashUtils.sha256Hex("abc".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void partsAreLengthPrefixedSoBoundariesMatter() {
+        assertNotEquals(HashUtils.sha256Hex("ab", "c"), HashUtils.sha256Hex("a", "bc"));
+        assertEquals(HashUtils.sha256Hex("ab", "c"), HashUtils.sha256Hex("ab", "c"));
+    }
+
+    @Test
+    void nullDiffersFromEmptyString() {
+        assertNotEquals(HashUtils.sha256Hex((String) null), HashUtils.sha256Hex(""));
+        assertNotEquals(HashUtils.sha256Hex("a", null), HashUtils.sha256Hex("a", "null"));
+    }
+}
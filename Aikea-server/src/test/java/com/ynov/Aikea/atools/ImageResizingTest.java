@@ -0,0 +1,66 @@
+package com.ynov.Aikea.atools;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageResizingTest {
+
+    @Test
+    void capsLongestSideKeepingAspectRatio() {
+        BufferedImage resized = ImageResizing.downscale(image(1792, 1024), 256);
+
+        assertEquals(256, resized.getWidth());
+        assertEquals(146, resized.getHeight());
+    }
+
+    @Test
+    void neverUpscales() {
+        BufferedImage resized = ImageResizing.downscale(image(100, 50), 256);
+
+        assertEquals(100, resized.getWidth());
+        assertEquals(50, resized.getHeight());
+    }
+
+    @Test
+    void capsShortestSideWithinLongestSideLimit() {
+        // Mode "high" d'OpenAI : plus petit côté 768, plus grand côté 2048 au maximum
+        BufferedImage wide = ImageResizing.downscale(image(1792, 1024), 768, 2048);
+        assertEquals(1344, wide.getWidth());
+        assertEquals(768, wide.getHeight());
+
+        BufferedImage panorama = ImageResizing.downscale(image(4096, 1024), 768, 2048);
+        assertEquals(2048, panorama.getWidth());
+        assertEquals(512, panorama.getHeight());
+    }
+
+    @Test
+    void flattensTransparencyOnWhite() {
+        BufferedImage transparent = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+
+        BufferedImage resized = ImageResizing.downscale(transparent, 10);
+
+        assertFalse(resized.getColorModel().hasAlpha());
+        assertEquals(0xFFFFFF, resized.getRGB(5, 5) & 0xFFFFFF);
+    }
+
+    @Test
+    void writesReadableJpeg() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        ImageResizing.writeJpeg(ImageResizing.downscale(image(64, 32), 64), output, 0.8f);
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(64, decoded.getWidth());
+        assertEquals(32, decoded.getHeight());
+    }
+
+    private static BufferedImage image(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+}
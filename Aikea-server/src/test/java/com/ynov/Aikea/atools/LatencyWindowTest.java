@@ -0,0 +1,38 @@
+package com.ynov.Aikea.atools;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyWindowTest {
+
+    @Test
+    void emptyWindowHasNoPercentile() {
+        assertEquals(-1, new LatencyWindow(10).percentile(0.95));
+    }
+
+    @Test
+    void computesNearestRankPercentile() {
+        LatencyWindow window = new LatencyWindow(100);
+        for (int i = 1; i <= 100; i++) {
+            window.record(i);
+        }
+
+        assertEquals(50, window.percentile(0.5));
+        assertEquals(95, window.percentile(0.95));
+        assertEquals(100, window.percentile(1.0));
+        assertEquals(1, window.percentile(0.0));
+    }
+
+    @Test
+    void keepsOnlyTheMostRecentSamples() {
+        LatencyWindow window = new LatencyWindow(3);
+        window.record(1_000);
+        window.record(1);
+        window.record(2);
+        window.record(3);
+
+        assertEquals(3, window.count());
+        assertEquals(3, window.percentile(1.0));
+    }
+}
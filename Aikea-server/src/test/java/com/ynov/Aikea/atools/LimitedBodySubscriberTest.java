@@ -0,0 +1,90 @@
+package com.ynov.Aikea.atools;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LimitedBodySubscriberTest {
+
+    @Test
+    void collectsBodyUnderLimit() {
+        LimitedBodySubscriber subscriber = new LimitedBodySubscriber(10, -1);
+        RecordingSubscription subscription = new RecordingSubscription();
+
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(List.of(ByteBuffer.wrap(new byte[]{1, 2, 3}), ByteBuffer.wrap(new byte[]{4})));
+        subscriber.onNext(List.of(ByteBuffer.wrap(new byte[]{5, 6})));
+        subscriber.onComplete();
+
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6}, subscriber.getBody().toCompletableFuture().join());
+        assertFalse(subscription.cancelled);
+    }
+
+    @Test
+    void rejectsDeclaredLengthOverLimitWithoutReading() {
+        LimitedBodySubscriber subscriber = new LimitedBodySubscriber(10, 11);
+        RecordingSubscription subscription = new RecordingSubscription();
+
+        subscriber.onSubscribe(subscription);
+
+        assertTrue(subscription.cancelled);
+        assertEquals(0, subscription.requested);
+        assertTooLarge(subscriber.getBody().toCompletableFuture());
+    }
+
+    @Test
+    void cancelsOnceReceivedBytesExceedLimit() {
+        LimitedBodySubscriber subscriber = new LimitedBodySubscriber(4, -1);
+        RecordingSubscription subscription = new RecordingSubscription();
+
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(List.of(ByteBuffer.wrap(new byte[]{1, 2, 3})));
+        subscriber.onNext(List.of(ByteBuffer.wrap(new byte[]{4, 5})));
+        // Morceaux déjà en route après l'annulation : ignorés
+        subscriber.onNext(List.of(ByteBuffer.wrap(new byte[]{6})));
+        subscriber.onComplete();
+
+        assertTrue(subscription.cancelled);
+        assertTooLarge(subscriber.getBody().toCompletableFuture());
+    }
+
+    @Test
+    void propagatesTransportErrors() {
+        LimitedBodySubscriber subscriber = new LimitedBodySubscriber(10, -1);
+        subscriber.onSubscribe(new RecordingSubscription());
+
+        subscriber.onError(new IOException("connection reset"));
+
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> subscriber.getBody().toCompletableFuture().join());
+        assertEquals("connection reset", error.getCause().getMessage());
+    }
+
+    private static void assertTooLarge(CompletableFuture<byte[]> body) {
+        CompletionException error = assertThrows(CompletionException.class, body::join);
+        assertInstanceOf(IOException.class, error.getCause());
+        assertTrue(error.getCause().getMessage().startsWith("Response body too large"));
+    }
+
+    private static final class RecordingSubscription implements Flow.Subscription {
+        private long requested;
+        private boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
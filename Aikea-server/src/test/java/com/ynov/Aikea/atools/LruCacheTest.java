@@ -0,0 +1,82 @@
+package com.ynov.Aikea.atools;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LruCacheTest {
+
+    @Test
+    void evictsLeastRecentlyUsedEntryWhenFull() {
+        LruCache<String, String> cache = new LruCache<>(2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        // Lire "a" en fait l'entrée la plus récente : "b" part à l'ajout suivant
+        assertEquals("1", cache.get("a"));
+
+        cache.put("c", "3");
+
+        assertEquals(2, cache.size());
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+    }
+
+    @Test
+    void evictsByWeightUntilUnderLimit() {
+        LruCache<String, String> cache = new LruCache<>(10, String::length);
+        cache.put("a", "xxxx");
+        cache.put("b", "xxxx");
+        cache.put("c", "xxxxxxx");
+
+        // 4 + 4 + 7 : retirer "a" ne suffit pas, "b" part aussi
+        assertNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("xxxxxxx", cache.get("c"));
+        assertEquals(7, cache.weight());
+    }
+
+    @Test
+    void ignoresValueHeavierThanWholeCache() {
+        LruCache<String, String> cache = new LruCache<>(4, String::length);
+        cache.put("a", "xx");
+
+        cache.put("b", "xxxxx");
+
+        assertNull(cache.get("b"));
+        assertEquals("xx", cache.get("a"));
+        assertEquals(2, cache.weight());
+    }
+
+    @Test
+    void heavierReplacementDropsStaleValue() {
+        LruCache<String, String> cache = new LruCache<>(4, String::length);
+        cache.put("a", "xx");
+        cache.put("b", "x");
+
+        cache.put("a", "xxxxx");
+
+        assertNull(cache.get("a"));
+        assertEquals("x", cache.get("b"));
+        assertEquals(1, cache.weight());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void replacingOrRemovingUpdatesWeight() {
+        LruCache<String, String> cache = new LruCache<>(100, String::length);
+        cache.put("a", "xxx");
+        cache.put("a", "x");
+        assertEquals(1, cache.weight());
+        assertEquals(1, cache.size());
+
+        assertEquals("x", cache.remove("a"));
+        assertNull(cache.remove("a"));
+        assertEquals(0, cache.weight());
+
+        cache.put("b", "xx");
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+}
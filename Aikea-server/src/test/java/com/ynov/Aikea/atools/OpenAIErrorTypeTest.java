@@ -0,0 +1,65 @@
+package com.ynov.Aikea.atools;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenAIErrorTypeTest {
+
+    @Test
+    void classifiesHttpErrorsByStatus() {
+        assertEquals(OpenAIErrorType.RATE_LIMIT, classify(429, null, "rate_limit_exceeded"));
+        assertEquals(OpenAIErrorType.AUTHENTICATION, classify(401, "invalid_request_error", "invalid_api_key"));
+        assertEquals(OpenAIErrorType.AUTHENTICATION, classify(403, null, null));
+        assertEquals(OpenAIErrorType.TIMEOUT, classify(408, null, null));
+        assertEquals(OpenAIErrorType.SERVER, classify(500, "server_error", null));
+        assertEquals(OpenAIErrorType.SERVER, classify(503, null, null));
+        assertEquals(OpenAIErrorType.BAD_REQUEST, classify(400, "invalid_request_error", null));
+        assertEquals(OpenAIErrorType.BAD_REQUEST, classify(404, null, null));
+    }
+
+    @Test
+    void structuredCodesTakePrecedenceOverStatus() {
+        assertEquals(OpenAIErrorType.QUOTA, classify(429, "insufficient_quota", "insufficient_quota"));
+        assertEquals(OpenAIErrorType.QUOTA, classify(400, null, "billing_hard_limit_reached"));
+        assertEquals(OpenAIErrorType.CONTENT_POLICY, classify(400, "image_generation_user_error", "content_policy_violation"));
+    }
+
+    @Test
+    void messagesAreNeverParsed() {
+        assertEquals(OpenAIErrorType.UNKNOWN,
+                OpenAIErrorType.classify(new IllegalStateException("failed after 1500 ms, id 4290, quota 503")));
+        assertEquals(OpenAIErrorType.BAD_REQUEST,
+                OpenAIErrorType.classify(new OpenAIHttpException(400, null, null, "rate limit 429 quota 500")));
+    }
+
+    @Test
+    void classifiesLocalAndTransportErrorsByType() {
+        assertEquals(OpenAIErrorType.RATE_LIMIT, OpenAIErrorType.classify(new RateLimitExceededException("full")));
+        assertEquals(OpenAIErrorType.CIRCUIT_OPEN, OpenAIErrorType.classify(new CircuitOpenException("open")));
+        assertEquals(OpenAIErrorType.TIMEOUT, OpenAIErrorType.classify(new TimeoutException()));
+        assertEquals(OpenAIErrorType.TIMEOUT, OpenAIErrorType.classify(new HttpTimeoutException("timed out")));
+        assertEquals(OpenAIErrorType.NETWORK, OpenAIErrorType.classify(new ConnectException("refused")));
+        assertEquals(OpenAIErrorType.ABORTED, OpenAIErrorType.classify(new StreamAbortedException("gone",
+                new UncheckedIOException(new IOException("Broken pipe")))));
+        assertEquals(OpenAIErrorType.UNKNOWN, OpenAIErrorType.classify(new IOException("Broken pipe")));
+    }
+
+    @Test
+    void walksTheCauseChain() {
+        Throwable wrapped = new CompletionException(new RuntimeException(new OpenAIHttpException(502, null, null, null)));
+        assertEquals(OpenAIErrorType.SERVER, OpenAIErrorType.classify(wrapped));
+        assertEquals(OpenAIErrorType.UNKNOWN, OpenAIErrorType.classify(null));
+    }
+
+    private static OpenAIErrorType classify(int status, String type, String code) {
+        return OpenAIErrorType.classify(new CompletionException(new OpenAIHttpException(status, type, code, "message")));
+    }
+}
@@ -0,0 +1,108 @@
+package com.ynov.Aikea.atools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentCallsWithSameKeyShareOneExecution() {
+        AtomicInteger coalesced = new AtomicInteger();
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(coalesced::incrementAndGet);
+        AtomicInteger executions = new AtomicInteger();
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.execute("key", () -> {
+            executions.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<String> second = singleFlight.execute("key", () -> {
+            executions.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+
+        assertEquals(1, executions.get());
+        assertEquals(1, coalesced.get());
+        assertEquals(1, singleFlight.inFlightCount());
+
+        pending.complete("result");
+        assertEquals("result", first.join());
+        assertEquals("result", second.join());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void differentKeysRunIndependently() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger executions = new AtomicInteger();
+
+        singleFlight.execute("a", () -> {
+            executions.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+        singleFlight.execute("b", () -> {
+            executions.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+
+        assertEquals(2, executions.get());
+        assertEquals(2, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void callAfterCompletionStartsANewExecution() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger executions = new AtomicInteger();
+
+        assertEquals(1, singleFlight.execute("key",
+                () -> CompletableFuture.completedFuture(executions.incrementAndGet())).join());
+        assertEquals(2, singleFlight.execute("key",
+                () -> CompletableFuture.completedFuture(executions.incrementAndGet())).join());
+    }
+
+    @Test
+    void failureIsSharedAndReleasesTheKey() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.execute("key", () -> pending);
+        CompletableFuture<String> second = singleFlight.execute("key", () -> pending);
+        pending.completeExceptionally(new IllegalStateException("boom"));
+
+        assertThrows(CompletionException.class, first::join);
+        CompletionException error = assertThrows(CompletionException.class, second::join);
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void supplierThrowingFailsTheCallWithoutLeakingTheKey() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+        CompletableFuture<String> result = singleFlight.execute("key", () -> {
+            throw new IllegalArgumentException("bad input");
+        });
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void cancellingOneCallerDoesNotCancelTheSharedCall() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.execute("key", () -> pending);
+        CompletableFuture<String> second = singleFlight.execute("key", () -> pending);
+        first.cancel(true);
+        pending.complete("result");
+
+        assertFalse(pending.isCancelled());
+        assertEquals("result", second.join());
+    }
+}
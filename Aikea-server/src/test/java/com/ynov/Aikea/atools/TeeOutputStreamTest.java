@@ -0,0 +1,76 @@
+package com.ynov.Aikea.atools;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TeeOutputStreamTest {
+
+    @Test
+    void writesSameBytesToBothStreams() throws IOException {
+        ByteArrayOutputStream primary = new ByteArrayOutputStream();
+        ByteArrayOutputStream secondary = new ByteArrayOutputStream();
+
+        try (TeeOutputStream tee = new TeeOutputStream(primary, secondary)) {
+            tee.write('>');
+            tee.write("--pdf--".getBytes(StandardCharsets.US_ASCII), 2, 3);
+        }
+
+        assertEquals(">pdf", primary.toString(StandardCharsets.US_ASCII));
+        assertEquals(">pdf", secondary.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void closesSecondaryEvenWhenPrimaryCloseFails() {
+        TrackingStream primary = new TrackingStream(true);
+        TrackingStream secondary = new TrackingStream(false);
+
+        assertThrows(IOException.class, () -> new TeeOutputStream(primary, secondary).close());
+
+        assertTrue(primary.closed);
+        assertTrue(secondary.closed);
+    }
+
+    @Test
+    void flushesBothStreams() throws IOException {
+        TrackingStream primary = new TrackingStream(false);
+        TrackingStream secondary = new TrackingStream(false);
+
+        new TeeOutputStream(primary, secondary).flush();
+
+        assertTrue(primary.flushed);
+        assertTrue(secondary.flushed);
+    }
+
+    private static final class TrackingStream extends OutputStream {
+        private final boolean failOnClose;
+        private boolean closed;
+        private boolean flushed;
+
+        private TrackingStream(boolean failOnClose) {
+            this.failOnClose = failOnClose;
+        }
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void flush() {
+            flushed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (failOnClose) {
+                throw new IOException("client gone");
+            }
+        }
+    }
+}
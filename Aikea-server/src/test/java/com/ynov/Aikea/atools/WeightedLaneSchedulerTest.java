@@ -0,0 +1,135 @@
+package com.ynov.Aikea.atools;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeightedLaneSchedulerTest {
+
+    private enum Priority { HIGH, MEDIUM, LOW }
+
+    @AfterEach
+    void tearDown() {
+        Deadline.clear();
+    }
+
+    private static WeightedLaneScheduler<Priority> scheduler(Map<Priority, Integer> laneConcurrency,
+                                                             int maxConcurrency, int maxQueueSize) {
+        return new WeightedLaneScheduler<>("test", Priority.class,
+                Map.of(Priority.HIGH, 6, Priority.MEDIUM, 3, Priority.LOW, 1),
+                laneConcurrency, maxConcurrency, maxQueueSize, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void sharesSlotsByWeightWhenAllLanesAreBacklogged() {
+        WeightedLaneScheduler<Priority> scheduler = scheduler(Map.of(), 1, 100);
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.submit(Priority.HIGH, () -> blocker);
+
+        List<Priority> started = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            for (Priority priority : Priority.values()) {
+                scheduler.submit(priority, () -> {
+                    started.add(priority);
+                    return CompletableFuture.completedFuture("done");
+                });
+            }
+        }
+        blocker.complete("done");
+
+        // Sur 20 créneaux, toutes files pleines : 12 / 6 / 2, le premier créneau HIGH étant celui du bloqueur
+        List<Priority> firstSlots = started.subList(0, 19);
+        assertEquals(11, count(firstSlots, Priority.HIGH));
+        assertEquals(6, count(firstSlots, Priority.MEDIUM));
+        assertEquals(2, count(firstSlots, Priority.LOW));
+        assertEquals(60, started.size());
+    }
+
+    @Test
+    void idleLaneGetsNoCreditWhenItWakesUp() {
+        WeightedLaneScheduler<Priority> scheduler = scheduler(Map.of(), 1, 100);
+        // Seule la file LOW travaille un moment : le temps virtuel avance
+        for (int i = 0; i < 5; i++) {
+            scheduler.submit(Priority.LOW, () -> CompletableFuture.completedFuture("done"));
+        }
+
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.submit(Priority.LOW, () -> blocker);
+        List<Priority> started = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            scheduler.submit(Priority.HIGH, () -> {
+                started.add(Priority.HIGH);
+                return CompletableFuture.completedFuture("done");
+            });
+        }
+        scheduler.submit(Priority.LOW, () -> {
+            started.add(Priority.LOW);
+            return CompletableFuture.completedFuture("done");
+        });
+        blocker.complete("done");
+
+        // HIGH repart du temps virtuel courant : LOW passe après environ 6 tâches HIGH, pas après les 10
+        int firstLow = started.indexOf(Priority.LOW);
+        assertTrue(firstLow >= 5 && firstLow <= 7, "LOW started at " + firstLow);
+        assertEquals(11, started.size());
+    }
+
+    @Test
+    void laneConcurrencyCapLeavesRoomForOtherLanes() {
+        WeightedLaneScheduler<Priority> scheduler = scheduler(Map.of(Priority.HIGH, 1), 2, 100);
+        scheduler.submit(Priority.HIGH, CompletableFuture<String>::new);
+        scheduler.submit(Priority.HIGH, CompletableFuture<String>::new);
+        CompletableFuture<String> low = scheduler.submit(Priority.LOW, () -> CompletableFuture.completedFuture("low"));
+
+        assertEquals(1, scheduler.inFlight(Priority.HIGH));
+        assertEquals(1, scheduler.queueDepth(Priority.HIGH));
+        assertEquals("low", low.join());
+    }
+
+    @Test
+    void rejectsWhenLaneQueueIsFull() {
+        WeightedLaneScheduler<Priority> scheduler = scheduler(Map.of(), 1, 1);
+        scheduler.submit(Priority.HIGH, CompletableFuture<String>::new);
+        scheduler.submit(Priority.HIGH, CompletableFuture<String>::new);
+
+        CompletableFuture<String> rejected = scheduler.submit(Priority.HIGH,
+                () -> CompletableFuture.completedFuture("never"));
+
+        CompletionException error = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(RateLimitExceededException.class, error.getCause());
+    }
+
+    @Test
+    void waiterWhoseDeadlineExpiredInQueueIsNotStarted() {
+        WeightedLaneScheduler<Priority> scheduler = scheduler(Map.of(), 1, 10);
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.submit(Priority.HIGH, () -> blocker);
+
+        Deadline.set(Deadline.after(Duration.ZERO));
+        List<String> started = new ArrayList<>();
+        CompletableFuture<String> late = scheduler.submit(Priority.HIGH, () -> {
+            started.add("late");
+            return CompletableFuture.completedFuture("late");
+        });
+        Deadline.clear();
+        blocker.complete("done");
+
+        CompletionException error = assertThrows(CompletionException.class, late::join);
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        assertTrue(started.isEmpty());
+    }
+
+    private static long count(List<Priority> started, Priority priority) {
+        return started.stream().filter(priority::equals).count();
+    }
+}
@@ -0,0 +1,124 @@
+package com.ynov.Aikea.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.ynov.Aikea.atools.IngestedFile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ImageDownloadServiceTest {
+
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private HttpServer server;
+    private ImageDownloadService imageDownloadService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/image/", this::handleImage);
+        server.createContext("/missing", exchange -> respond(exchange, 404, new byte[0]));
+        server.createContext("/large", exchange -> respond(exchange, 200, new byte[2048]));
+        server.start();
+
+        UploadService uploadService = mock(UploadService.class);
+        when(uploadService.ingest(any(InputStream.class))).thenAnswer(invocation -> {
+            byte[] content = invocation.<InputStream>getArgument(0).readAllBytes();
+            return new IngestedFile(Path.of("ingested"), content.length, "sha256");
+        });
+        imageDownloadService = new ImageDownloadService(HttpClient.newHttpClient(), uploadService,
+                new SimpleMeterRegistry(), executor);
+        ReflectionTestUtils.setField(imageDownloadService, "requestTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(imageDownloadService, "bodyTimeoutMs", 5_000L);
+        ReflectionTestUtils.setField(imageDownloadService, "maxInMemoryBytes", 1_024L);
+        ReflectionTestUtils.setField(imageDownloadService, "maxParallel", 2);
+        imageDownloadService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void downloadAllKeepsOrderReportsFailuresAndBoundsParallelism() throws Exception {
+        List<String> urls = List.of(url("/image/10"), url("/missing"), url("/image/20"), url("/image/30"),
+                url("/image/40"));
+
+        List<ImageDownloadService.DownloadResult> results = imageDownloadService.downloadAllAsync(urls)
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals(5, results.size());
+        for (int i = 0; i < urls.size(); i++) {
+            assertEquals(urls.get(i), results.get(i).url());
+        }
+        assertFalse(results.get(1).isSuccess());
+        assertInstanceOf(IOException.class, results.get(1).error());
+        assertEquals(10, results.get(0).file().size());
+        assertEquals(40, results.get(4).file().size());
+        assertTrue(maxConcurrent.get() <= 2, "max concurrent downloads: " + maxConcurrent.get());
+    }
+
+    @Test
+    void fetchBytesRejectsBodiesOverTheLimit() {
+        CompletionException error = assertThrows(CompletionException.class,
+                () -> imageDownloadService.fetchBytesAsync(url("/large")).join());
+        assertInstanceOf(IOException.class, error.getCause());
+    }
+
+    @Test
+    void fetchBytesReturnsSmallBodies() {
+        assertEquals(30, imageDownloadService.fetchBytesAsync(url("/image/30")).join().length);
+    }
+
+    // /image/<taille> : un corps de <taille> octets, après une courte attente pour que les téléchargements se chevauchent
+    private void handleImage(HttpExchange exchange) throws IOException {
+        maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Avant la réponse : le client peut lancer le téléchargement suivant dès qu'il l'a reçue
+            concurrent.decrementAndGet();
+        }
+        String size = exchange.getRequestURI().getPath().substring("/image/".length());
+        respond(exchange, 200, new byte[Integer.parseInt(size)]);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private String url(String path) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+    }
+}
@@ -0,0 +1,45 @@
+package com.ynov.Aikea.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageReuseIndexTest {
+
+    @Test
+    void promptKeyIgnoresCaseAccentsAndPunctuation() {
+        assertEquals(ImageReuseIndex.promptKey("un salon scandinave"),
+                ImageReuseIndex.promptKey("Un  Salon scandinave !"));
+        assertEquals(ImageReuseIndex.promptKey("chaise en chene"),
+                ImageReuseIndex.promptKey("Chaise en chêne"));
+    }
+
+    @Test
+    void promptKeyKeepsNonLatinPromptsDistinct() {
+        String chinese = ImageReuseIndex.promptKey("北欧风格的客厅");
+        String russian = ImageReuseIndex.promptKey("Скандинавская гостиная");
+        String hindi = ImageReuseIndex.promptKey("स्कैंडिनेवियाई बैठक");
+
+        assertNotNull(chinese);
+        assertNotNull(russian);
+        assertNotNull(hindi);
+        assertNotEquals(chinese, ImageReuseIndex.promptKey("日式风格的卧室"));
+        assertNotEquals(russian, ImageReuseIndex.promptKey("Японская спальня"));
+        assertNotEquals(chinese, russian);
+        assertEquals(russian, ImageReuseIndex.promptKey("скандинавская  ГОСТИНАЯ."));
+    }
+
+    @Test
+    void promptKeyFoldsCompatibilityCharacters() {
+        // Chiffres pleine chasse et ligatures : même clé que leur forme usuelle
+        assertEquals(ImageReuseIndex.promptKey("salon 2 places"), ImageReuseIndex.promptKey("salon ２ places"));
+        assertEquals(ImageReuseIndex.promptKey("office"), ImageReuseIndex.promptKey("oﬃce"));
+    }
+
+    @Test
+    void promptKeyIsNullWithoutLettersOrDigits() {
+        assertNull(ImageReuseIndex.promptKey(null));
+        assertNull(ImageReuseIndex.promptKey(""));
+        assertNull(ImageReuseIndex.promptKey("?!… 🙂"));
+    }
+}
@@ -0,0 +1,30 @@
+package com.ynov.Aikea.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenAIRateLimitersTest {
+
+    @Test
+    void parsesOpenAIResetDurations() {
+        assertEquals(Duration.ofMillis(20), OpenAIRateLimiters.parseDuration("20ms"));
+        assertEquals(Duration.ofSeconds(1), OpenAIRateLimiters.parseDuration("1s"));
+        assertEquals(Duration.ofMillis(500), OpenAIRateLimiters.parseDuration("0.5s"));
+        assertEquals(Duration.ofMinutes(6), OpenAIRateLimiters.parseDuration("6m0s"));
+        assertEquals(Duration.ofMillis(5_405_500), OpenAIRateLimiters.parseDuration("1h30m5.5s"));
+    }
+
+    @Test
+    void roundsFractionalMillisecondsUp() {
+        assertEquals(Duration.ofMillis(2), OpenAIRateLimiters.parseDuration("1.5ms"));
+    }
+
+    @Test
+    void returnsNullWhenNothingParses() {
+        assertNull(OpenAIRateLimiters.parseDuration(""));
+        assertNull(OpenAIRateLimiters.parseDuration("soon"));
+    }
+}
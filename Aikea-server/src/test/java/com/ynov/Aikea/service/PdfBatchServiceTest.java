@@ -0,0 +1,92 @@
+package com.ynov.Aikea.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ynov.Aikea.atools.Deadline;
+import com.ynov.Aikea.dto.ImageGenerationRequest;
+import com.ynov.Aikea.dto.PDFContentDTO;
+import com.ynov.Aikea.dto.PdfBatchManifestDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PdfBatchServiceTest {
+
+    private static final long ITEM_TIMEOUT_MS = 60_000;
+
+    private final PDFContentService pdfContentService = mock(PDFContentService.class);
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private PdfBatchService pdfBatchService;
+
+    @BeforeEach
+    void setUp() {
+        pdfBatchService = new PdfBatchService(pdfContentService, new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(pdfBatchService, "parallelism", 2);
+        ReflectionTestUtils.setField(pdfBatchService, "maxItems", 50);
+        ReflectionTestUtils.setField(pdfBatchService, "itemTimeoutMs", ITEM_TIMEOUT_MS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        Deadline.clear();
+    }
+
+    @Test
+    void itemsOfLaterWavesDoNotInheritTheRequestDeadline() throws Exception {
+        List<Deadline> launchDeadlines = new CopyOnWriteArrayList<>();
+        when(pdfContentService.generatePDFContentAsync(any())).thenAnswer(invocation -> {
+            launchDeadlines.add(Deadline.current());
+            // Comme le generationExecutor : l'échéance du lanceur est recopiée sur le thread qui termine l'élément,
+            // celui qui lance ensuite l'élément suivant
+            return CompletableFuture.supplyAsync(PDFContentDTO::new,
+                    command -> executor.execute(Deadline.propagate(command)));
+        });
+        when(pdfContentService.createPDFAsync(any())).thenReturn(CompletableFuture.completedFuture(
+                new MockMultipartFile("file", "piece.pdf", "application/pdf", new byte[]{1, 2, 3})));
+
+        // Requête déjà au-delà de son échéance : un lot de plusieurs vagues y arrive forcément
+        Deadline requestDeadline = Deadline.after(Duration.ZERO);
+        Deadline.set(requestDeadline);
+
+        PdfBatchManifestDTO manifest = pdfBatchService.writeZipAsync(items(5), new ByteArrayOutputStream())
+                .get(10, TimeUnit.SECONDS);
+
+        assertSame(requestDeadline, Deadline.current());
+        assertEquals(5, manifest.getSucceeded());
+        assertEquals(0, manifest.getFailed());
+        assertEquals(5, launchDeadlines.size());
+        for (Deadline deadline : launchDeadlines) {
+            assertNotNull(deadline);
+            assertNotSame(requestDeadline, deadline);
+            assertTrue(deadline.remainingMillis() > ITEM_TIMEOUT_MS / 2);
+        }
+    }
+
+    private static List<ImageGenerationRequest> items(int count) {
+        List<ImageGenerationRequest> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ImageGenerationRequest item = new ImageGenerationRequest();
+            item.setPrompt("Pièce " + i);
+            items.add(item);
+        }
+        return items;
+    }
+}
@@ -0,0 +1,37 @@
+package com.ynov.Aikea.service;
+
+import com.ynov.Aikea.atools.HashUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderedPdfCacheServiceTest {
+
+    private static final String IMAGE_HASH = HashUtils.sha256Hex(new byte[]{1, 2, 3});
+
+    @Test
+    void keyIsStableForSameTextAndImage() {
+        assertEquals(RenderedPdfCacheService.key("Chaise en chêne", IMAGE_HASH),
+                RenderedPdfCacheService.key("Chaise en chêne", IMAGE_HASH));
+        assertEquals(64, RenderedPdfCacheService.key("Chaise en chêne", IMAGE_HASH).length());
+    }
+
+    @Test
+    void keyChangesWithTextOrImage() {
+        String key = RenderedPdfCacheService.key("Chaise en chêne", IMAGE_HASH);
+
+        assertNotEquals(key, RenderedPdfCacheService.key("Table en chêne", IMAGE_HASH));
+        assertNotEquals(key, RenderedPdfCacheService.key("Chaise en chêne", HashUtils.sha256Hex(new byte[]{4})));
+    }
+
+    @Test
+    void keyIncludesLayoutVersion() {
+        assertEquals(HashUtils.sha256Hex("pdf", RenderedPdfCacheService.LAYOUT_VERSION, "texte", IMAGE_HASH),
+                RenderedPdfCacheService.key("texte", IMAGE_HASH));
+    }
+
+    @Test
+    void imageWithoutHashIsNotCached() {
+        assertNull(RenderedPdfCacheService.key("texte", null));
+    }
+}